@@ -0,0 +1,451 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.binary;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converters;
+import net.imglib2.algorithm.stats.ComputeMinMax;
+import net.imglib2.algorithm.stats.Histogram;
+import net.imglib2.algorithm.stats.HistogramBinMapper;
+import net.imglib2.algorithm.stats.RealBinMapper;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Automatic global threshold selection from a {@link Histogram}.
+ * <p>
+ * Each {@link Method} selects a bin index {@code t} of the histogram such that
+ * the foreground is made of bins {@code > t}. The corresponding threshold
+ * value is the boundary between bins {@code t} and {@code t + 1}, so that
+ * {@link Thresholder#threshold(RandomAccessibleInterval, RandomAccessibleInterval, double, boolean, ExecutorService, int)}
+ * with {@code above = true} yields the foreground.
+ */
+public class AutoThreshold
+{
+
+	/**
+	 * Default number of histogram bins for non-integer images.
+	 */
+	public static final int DEFAULT_NUM_BINS = 256;
+
+	public static enum Method
+	{
+		/**
+		 * Maximizes the between-class variance. N. Otsu, "A threshold
+		 * selection method from gray-level histograms", IEEE Transactions on
+		 * Systems, Man, and Cybernetics 9(1), 1979.
+		 */
+		OTSU,
+		/**
+		 * Iterative minimum cross entropy. C. H. Li and P. K. S. Tam, "An
+		 * iterative algorithm for minimum cross entropy thresholding",
+		 * Pattern Recognition Letters 19(8), 1998.
+		 */
+		LI,
+		/**
+		 * Maximal distance between the histogram and the line from its peak
+		 * to its farthest end. G. W. Zack, W. E. Rogers and S. A. Latt,
+		 * "Automatic measurement of sister chromatid exchange frequency",
+		 * Journal of Histochemistry and Cytochemistry 25(7), 1977.
+		 */
+		TRIANGLE,
+		/**
+		 * Iterative intermeans. T. W. Ridler and S. Calvard, "Picture
+		 * thresholding using an iterative selection method", IEEE
+		 * Transactions on Systems, Man, and Cybernetics 8(8), 1978.
+		 */
+		ISODATA,
+		/**
+		 * Maximizes the sum of the entropies of both classes. J. N. Kapur, P.
+		 * K. Sahoo and A. K. C. Wong, "A new method for gray-level picture
+		 * thresholding using the entropy of the histogram", Computer Vision,
+		 * Graphics, and Image Processing 29(3), 1985.
+		 */
+		MAX_ENTROPY,
+		/**
+		 * The mean bin.
+		 */
+		MEAN
+	}
+
+	/**
+	 * Selects a threshold bin from histogram counts.
+	 *
+	 * @param method
+	 *            the selection method.
+	 * @param histogram
+	 *            the histogram counts.
+	 * @return the bin {@code t} such that the foreground is made of bins
+	 *         {@code > t}.
+	 */
+	public static int getThresholdBin( final Method method, final int[] histogram )
+	{
+		switch ( method )
+		{
+		case OTSU:
+			return otsu( histogram );
+		case LI:
+			return li( histogram );
+		case TRIANGLE:
+			return triangle( histogram );
+		case ISODATA:
+			return isoData( histogram );
+		case MAX_ENTROPY:
+			return maxEntropy( histogram );
+		case MEAN:
+			return ( int ) Math.floor( mean( histogram, 0, histogram.length - 1 ) );
+		default:
+			throw new IllegalArgumentException( "Unknown method " + method + "." );
+		}
+	}
+
+	/**
+	 * Selects a threshold value from a {@link Histogram}.
+	 *
+	 * @param method
+	 *            the selection method.
+	 * @param histogram
+	 *            the processed histogram.
+	 * @return the threshold value: the foreground is made of values above it.
+	 */
+	public static < T extends RealType< T > > double getThreshold( final Method method, final Histogram< T > histogram )
+	{
+		return binBoundary( histogram.getBinMapper(), getThresholdBin( method, histogram.getHistogram() ) );
+	}
+
+	/**
+	 * Selects a threshold value for an image. The histogram spans the range
+	 * of the image with {@link #DEFAULT_NUM_BINS} bins, and is computed in
+	 * parallel.
+	 *
+	 * @param method
+	 *            the selection method.
+	 * @param source
+	 *            the image.
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            number of tasks/parallelism.
+	 * @return the threshold value: the foreground is made of values above it.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < T extends RealType< T > > double getThreshold( final Method method, final RandomAccessibleInterval< T > source, final ExecutorService es, final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		return getThreshold( method, source, DEFAULT_NUM_BINS, es, nTasks );
+	}
+
+	/**
+	 * Selects a threshold value for an image. The histogram spans the range
+	 * of the image with {@code numBins} bins, and is computed in parallel.
+	 * Integer images whose range has at most {@code numBins} values get one
+	 * bin per value.
+	 *
+	 * @param method
+	 *            the selection method.
+	 * @param source
+	 *            the image.
+	 * @param numBins
+	 *            the number of histogram bins.
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            number of tasks/parallelism.
+	 * @return the threshold value: the foreground is made of values above it.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < T extends RealType< T > > double getThreshold( final Method method, final RandomAccessibleInterval< T > source, final int numBins, final ExecutorService es, final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		final T min = Util.getTypeFromInterval( source ).createVariable();
+		final T max = min.createVariable();
+		final ComputeMinMax< T > minMax = new ComputeMinMax<>( Views.flatIterable( source ), min, max );
+		minMax.setNumThreads( nTasks );
+		minMax.process();
+
+		final double lo = min.getRealDouble();
+		final double hi = max.getRealDouble();
+		if ( hi <= lo )
+			return lo;
+
+		/*
+		 * RealBinMapper centers bin i on min + i * ( 1 + maxBin - min ) /
+		 * numBins. Integer ranges that fit get one bin per value, otherwise
+		 * maxBin is chosen so that the first and last bin centers are the
+		 * minimum and the maximum of the image. maxBin may exceed the range of
+		 * T and must not be rounded, so bins are computed in double.
+		 */
+		final int bins;
+		final double maxBin;
+		if ( min instanceof IntegerType && hi - lo < numBins )
+		{
+			bins = ( int ) ( hi - lo ) + 1;
+			maxBin = hi;
+		}
+		else
+		{
+			bins = numBins;
+			maxBin = lo + numBins * ( hi - lo ) / ( numBins - 1 ) - 1;
+		}
+		final RandomAccessibleInterval< DoubleType > values = Converters.convert( source, ( s, t ) -> t.set( s.getRealDouble() ), new DoubleType() );
+		final Histogram< DoubleType > histogram = new Histogram<>( new RealBinMapper<>( new DoubleType( lo ), new DoubleType( maxBin ), bins ), Views.flatIterable( values ) );
+		histogram.process( es, nTasks );
+		return getThreshold( method, histogram );
+	}
+
+	/**
+	 * Selects a threshold value for an image and thresholds it into a
+	 * caller-provided target.
+	 *
+	 * @param method
+	 *            the selection method.
+	 * @param source
+	 *            the image.
+	 * @param target
+	 *            the boolean image to write the foreground into.
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            number of tasks/parallelism.
+	 * @return the threshold value.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < T extends RealType< T >, B extends BooleanType< B > > double threshold( final Method method, final RandomAccessibleInterval< T > source, final RandomAccessibleInterval< B > target, final ExecutorService es, final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		final double threshold = getThreshold( method, source, es, nTasks );
+		Thresholder.threshold( source, target, threshold, true, es, nTasks );
+		return threshold;
+	}
+
+	/**
+	 * Value halfway between the centers of bins {@code t} and {@code t + 1}.
+	 */
+	private static < T extends RealType< T > > double binBoundary( final HistogramBinMapper< T > mapper, final int t )
+	{
+		return 0.5 * ( mapper.invMap( t ).getRealDouble() + mapper.invMap( t + 1 ).getRealDouble() );
+	}
+
+	private static double mean( final int[] h, final int from, final int to )
+	{
+		double sum = 0;
+		double count = 0;
+		for ( int i = from; i <= to; ++i )
+		{
+			sum += ( double ) i * h[ i ];
+			count += h[ i ];
+		}
+		return count == 0 ? 0 : sum / count;
+	}
+
+	private static int otsu( final int[] h )
+	{
+		double total = 0;
+		double sumAll = 0;
+		for ( int i = 0; i < h.length; ++i )
+		{
+			total += h[ i ];
+			sumAll += ( double ) i * h[ i ];
+		}
+
+		int best = 0;
+		double bestVariance = -1;
+		double w0 = 0;
+		double sum0 = 0;
+		for ( int t = 0; t < h.length; ++t )
+		{
+			w0 += h[ t ];
+			sum0 += ( double ) t * h[ t ];
+			final double w1 = total - w0;
+			if ( w0 == 0 || w1 == 0 )
+				continue;
+			final double diff = sum0 / w0 - ( sumAll - sum0 ) / w1;
+			final double variance = w0 * w1 * diff * diff;
+			if ( variance > bestVariance )
+			{
+				bestVariance = variance;
+				best = t;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Intensities are taken as bin index + 1, so that they are positive as
+	 * required by the logarithms.
+	 */
+	private static int li( final int[] h )
+	{
+		final double tolerance = 0.5;
+		double newThreshold = mean( h, 0, h.length - 1 ) + 1;
+		double oldThreshold;
+		int threshold;
+		int iterations = 0;
+		do
+		{
+			oldThreshold = newThreshold;
+			threshold = ( int ) ( oldThreshold + 0.5 );
+			// intensities up to threshold (bins up to threshold - 1)
+			final double meanBack = mean( h, 0, Math.min( threshold - 1, h.length - 1 ) ) + 1;
+			final double meanObj = mean( h, Math.max( threshold, 0 ), h.length - 1 ) + 1;
+			if ( meanBack == meanObj )
+				break;
+			final double temp = ( meanBack - meanObj ) / ( Math.log( meanBack ) - Math.log( meanObj ) );
+			newThreshold = temp < -2.220446049250313E-16 ? ( int ) ( temp - 0.5 ) : ( int ) ( temp + 0.5 );
+		}
+		while ( Math.abs( newThreshold - oldThreshold ) > tolerance && ++iterations < 1000 );
+		return Math.max( 0, Math.min( threshold - 1, h.length - 1 ) );
+	}
+
+	private static int triangle( final int[] histogram )
+	{
+		final int n = histogram.length;
+		int min = 0;
+		while ( min < n - 1 && histogram[ min ] == 0 )
+			++min;
+		if ( min > 0 )
+			--min;
+		int min2 = n - 1;
+		while ( min2 > 0 && histogram[ min2 ] == 0 )
+			--min2;
+		if ( min2 < n - 1 )
+			++min2;
+		int max = 0;
+		for ( int i = 0; i < n; ++i )
+			if ( histogram[ i ] > histogram[ max ] )
+				max = i;
+
+		// work on the longer side of the peak, mirrored to lie left of it
+		final boolean inverted = ( max - min ) < ( min2 - max );
+		final int[] h = new int[ n ];
+		for ( int i = 0; i < n; ++i )
+			h[ i ] = inverted ? histogram[ n - 1 - i ] : histogram[ i ];
+		if ( inverted )
+		{
+			min = n - 1 - min2;
+			max = n - 1 - max;
+		}
+		if ( min == max )
+			return inverted ? n - 1 - min : min;
+
+		double nx = h[ max ];
+		double ny = min - max;
+		final double norm = Math.sqrt( nx * nx + ny * ny );
+		nx /= norm;
+		ny /= norm;
+		final double d = nx * min + ny * h[ min ];
+
+		int split = min;
+		double splitDistance = 0;
+		for ( int i = min + 1; i <= max; ++i )
+		{
+			final double distance = nx * i + ny * h[ i ] - d;
+			if ( distance > splitDistance )
+			{
+				split = i;
+				splitDistance = distance;
+			}
+		}
+		--split;
+
+		// mirrored bins <= split are the original bins > n - 2 - split
+		return inverted ? n - 2 - split : split;
+	}
+
+	private static int isoData( final int[] h )
+	{
+		int t = ( int ) mean( h, 0, h.length - 1 );
+		for ( int iterations = 0; iterations < 1000; ++iterations )
+		{
+			final int next = ( int ) ( 0.5 * ( mean( h, 0, t ) + mean( h, t + 1, h.length - 1 ) ) );
+			if ( next == t )
+				break;
+			t = next;
+		}
+		return Math.max( 0, Math.min( t, h.length - 1 ) );
+	}
+
+	private static int maxEntropy( final int[] h )
+	{
+		final int n = h.length;
+		double total = 0;
+		for ( final int c : h )
+			total += c;
+		final double[] p = new double[ n ];
+		final double[] cumulative = new double[ n ];
+		double sum = 0;
+		for ( int i = 0; i < n; ++i )
+		{
+			p[ i ] = h[ i ] / total;
+			sum += p[ i ];
+			cumulative[ i ] = sum;
+		}
+
+		int best = 0;
+		double bestEntropy = Double.NEGATIVE_INFINITY;
+		for ( int t = 0; t < n - 1; ++t )
+		{
+			final double p0 = cumulative[ t ];
+			final double p1 = 1 - p0;
+			if ( p0 <= 0 || p1 <= 0 )
+				continue;
+			double entropy = 0;
+			for ( int i = 0; i <= t; ++i )
+				if ( p[ i ] > 0 )
+					entropy -= p[ i ] / p0 * Math.log( p[ i ] / p0 );
+			for ( int i = t + 1; i < n; ++i )
+				if ( p[ i ] > 0 )
+					entropy -= p[ i ] / p1 * Math.log( p[ i ] / p1 );
+			if ( entropy > bestEntropy )
+			{
+				bestEntropy = entropy;
+				best = t;
+			}
+		}
+		return best;
+	}
+}
@@ -33,22 +33,59 @@
  */
 package net.imglib2.algorithm.binary;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import net.imglib2.Cursor;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
 import net.imglib2.multithreading.Chunk;
 import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.type.BooleanType;
 import net.imglib2.type.Type;
 import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
 
 /**
  * Collection of static utilities meant to generate {@link BitType} images from
  * {@link Comparable} images.
+ * <p>
+ * The methods taking an {@link ExecutorService} write into a target provided
+ * by the caller, compare primitive values instead of {@link Comparable}s, and
+ * read the primitive array directly when the source is an {@link ArrayImg} of
+ * a standard native type. When the target is an {@link ArrayImg} of
+ * {@link BitType}, the mask is written 64 pixels at a time into its backing
+ * {@code long[]}.
  *
  * @author Jean-Yves Tinevez
  */
@@ -164,4 +201,274 @@ public class Thresholder
 		}
 	}
 
+
+	/**
+	 * Thresholds the values of the source image into a caller-provided
+	 * boolean target.
+	 * <p>
+	 * Values are compared as {@code double}, so {@code long} values beyond
+	 * 2<sup>53</sup> may be rounded.
+	 *
+	 * @param source
+	 *            the image to threshold.
+	 * @param target
+	 *            the boolean image to write into, of same dimensions as the
+	 *            source.
+	 * @param threshold
+	 *            the threshold.
+	 * @param above
+	 *            if {@code true}, the target value will be true for source
+	 *            values above the threshold, otherwise it will be true for
+	 *            source values below the threshold.
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            number of tasks/parallelism.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < T extends RealType< T >, B extends BooleanType< B > > void threshold(
+			final RandomAccessibleInterval< T > source,
+			final RandomAccessibleInterval< B > target,
+			final double threshold,
+			final boolean above,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		if ( !Intervals.equalDimensions( source, target ) )
+			throw new IllegalArgumentException( "Source and target dimensions do not match." );
+
+		final long size = Intervals.numElements( source );
+		final PrimitiveReader reader = primitiveReader( source );
+		final long[] words = bitWords( target );
+
+		if ( reader != null && words != null )
+		{
+			/*
+			 * Both primitive: build the mask 64 pixels at a time.
+			 */
+			final long numWords = ( size + 63 ) / 64;
+			forEachChunk( numWords, 1, nTasks, es, ( start, length ) -> {
+				for ( long w = start; w < start + length; ++w )
+				{
+					final int first = ( int ) ( w * 64 );
+					final int last = ( int ) Math.min( first + 64, size );
+					long word = 0;
+					for ( int i = first; i < last; ++i )
+					{
+						final double v = reader.get( i );
+						if ( above ? v > threshold : v < threshold )
+							word |= 1l << ( i - first );
+					}
+					words[ ( int ) w ] = word;
+				}
+			} );
+			return;
+		}
+
+		/*
+		 * Chunks are aligned to 64 pixels, so that tasks never share a word of
+		 * a bit-packed target.
+		 */
+		forEachChunk( size, 64, nTasks, es, ( start, length ) -> {
+			final Cursor< B > t = Views.flatIterable( target ).cursor();
+			t.jumpFwd( start );
+			if ( reader != null )
+			{
+				for ( long i = start; i < start + length; ++i )
+				{
+					final double v = reader.get( ( int ) i );
+					t.next().set( above ? v > threshold : v < threshold );
+				}
+			}
+			else
+			{
+				final Cursor< T > c = Views.flatIterable( source ).cursor();
+				c.jumpFwd( start );
+				for ( long i = 0; i < length; ++i )
+				{
+					final double v = c.next().getRealDouble();
+					t.next().set( above ? v > threshold : v < threshold );
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Thresholds the values of the source image against several thresholds,
+	 * and writes into a caller-provided integer target the number of
+	 * thresholds each value is above. With thresholds {@code t_0 < t_1 < ...
+	 * < t_(k-1)}, values {@code <= t_0} get label 0, values in
+	 * {@code ]t_(i-1), t_i]} get label i, and values {@code > t_(k-1)} get
+	 * label k.
+	 *
+	 * @param source
+	 *            the image to threshold.
+	 * @param target
+	 *            the label image to write into, of same dimensions as the
+	 *            source.
+	 * @param thresholds
+	 *            the thresholds, in any order.
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            number of tasks/parallelism.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < T extends RealType< T >, L extends IntegerType< L > > void thresholdLevels(
+			final RandomAccessibleInterval< T > source,
+			final RandomAccessibleInterval< L > target,
+			final double[] thresholds,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		if ( !Intervals.equalDimensions( source, target ) )
+			throw new IllegalArgumentException( "Source and target dimensions do not match." );
+
+		final double[] sorted = thresholds.clone();
+		Arrays.sort( sorted );
+		final long size = Intervals.numElements( source );
+		final PrimitiveReader reader = primitiveReader( source );
+
+		forEachChunk( size, 64, nTasks, es, ( start, length ) -> {
+			final Cursor< L > t = Views.flatIterable( target ).cursor();
+			t.jumpFwd( start );
+			final Cursor< T > c = reader == null ? Views.flatIterable( source ).cursor() : null;
+			if ( c != null )
+				c.jumpFwd( start );
+			for ( long i = start; i < start + length; ++i )
+			{
+				final double v = reader == null ? c.next().getRealDouble() : reader.get( ( int ) i );
+				t.next().setInteger( level( sorted, v ) );
+			}
+		} );
+	}
+
+	/**
+	 * Number of thresholds strictly below {@code value}.
+	 */
+	private static int level( final double[] sorted, final double value )
+	{
+		int lo = 0;
+		int hi = sorted.length;
+		while ( lo < hi )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			if ( sorted[ mid ] < value )
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Reads the value at a flat index of an {@link ArrayImg} as
+	 * {@code double}.
+	 */
+	private static interface PrimitiveReader
+	{
+		double get( int index );
+	}
+
+	/**
+	 * Returns a reader over the backing array of {@code source} if it is an
+	 * {@link ArrayImg} of a standard native type, and {@code null} otherwise.
+	 */
+	private static PrimitiveReader primitiveReader( final RandomAccessibleInterval< ? > source )
+	{
+		if ( !( source instanceof ArrayImg ) )
+			return null;
+		final Object type = Util.getTypeFromInterval( source );
+		final Object data = ( ( ArrayImg< ?, ? > ) source ).update( null );
+		if ( data instanceof ByteArray )
+		{
+			final byte[] a = ( ( ByteArray ) data ).getCurrentStorageArray();
+			if ( type instanceof UnsignedByteType )
+				return i -> a[ i ] & 0xff;
+			if ( type instanceof ByteType )
+				return i -> a[ i ];
+		}
+		else if ( data instanceof ShortArray )
+		{
+			final short[] a = ( ( ShortArray ) data ).getCurrentStorageArray();
+			if ( type instanceof UnsignedShortType )
+				return i -> a[ i ] & 0xffff;
+			if ( type instanceof ShortType )
+				return i -> a[ i ];
+		}
+		else if ( data instanceof IntArray )
+		{
+			final int[] a = ( ( IntArray ) data ).getCurrentStorageArray();
+			if ( type instanceof UnsignedIntType )
+				return i -> a[ i ] & 0xffffffffl;
+			if ( type instanceof IntType )
+				return i -> a[ i ];
+		}
+		else if ( data instanceof LongArray )
+		{
+			final long[] a = ( ( LongArray ) data ).getCurrentStorageArray();
+			if ( type instanceof LongType )
+				return i -> a[ i ];
+		}
+		else if ( data instanceof FloatArray )
+		{
+			final float[] a = ( ( FloatArray ) data ).getCurrentStorageArray();
+			if ( type instanceof FloatType )
+				return i -> a[ i ];
+		}
+		else if ( data instanceof DoubleArray )
+		{
+			final double[] a = ( ( DoubleArray ) data ).getCurrentStorageArray();
+			if ( type instanceof DoubleType )
+				return i -> a[ i ];
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the backing {@code long[]} of {@code target} if it is an
+	 * {@link ArrayImg} of {@link BitType}, and {@code null} otherwise.
+	 */
+	private static long[] bitWords( final RandomAccessibleInterval< ? > target )
+	{
+		if ( !( target instanceof ArrayImg ) || !( Util.getTypeFromInterval( target ) instanceof BitType ) )
+			return null;
+		final Object data = ( ( ArrayImg< ?, ? > ) target ).update( null );
+		return data instanceof LongArray ? ( ( LongArray ) data ).getCurrentStorageArray() : null;
+	}
+
+	private static interface ChunkTask
+	{
+		void run( long start, long length );
+	}
+
+	/**
+	 * Splits {@code [0, size[} into at most {@code nTasks} chunks whose
+	 * starts are multiples of {@code alignment}, and runs them on
+	 * {@code es}.
+	 */
+	private static void forEachChunk( final long size, final long alignment, final int nTasks, final ExecutorService es, final ChunkTask task ) throws InterruptedException, ExecutionException
+	{
+		final long step = Math.max( ( size / Math.max( nTasks, 1 ) + alignment - 1 ) / alignment * alignment, alignment );
+		final List< Callable< Void > > tasks = new ArrayList<>();
+		for ( long start = 0; start < size; start += step )
+		{
+			final long s = start;
+			final long length = Math.min( step, size - start );
+			tasks.add( () -> {
+				task.run( s, length );
+				return null;
+			} );
+		}
+		for ( final Future< Void > f : es.invokeAll( tasks ) )
+			f.get();
+	}
 }
@@ -34,26 +34,44 @@
 
 package net.imglib2.algorithm.labeling;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.function.LongFunction;
 import java.util.function.LongUnaryOperator;
 import java.util.function.ToLongBiFunction;
 
+import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.set.hash.TLongHashSet;
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.Localizable;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.lazy.Lazy;
 import net.imglib2.algorithm.neighborhood.DiamondShape;
 import net.imglib2.algorithm.neighborhood.Neighborhood;
 import net.imglib2.algorithm.neighborhood.RectangleNeighborhood;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
 import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.algorithm.util.Grids;
+import net.imglib2.algorithm.util.ParallelizeOverBlocks;
 import net.imglib2.algorithm.util.unionfind.IntArrayRankedUnionFind;
+import net.imglib2.algorithm.util.unionfind.LongHashMapUnionFind;
 import net.imglib2.algorithm.util.unionfind.UnionFind;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.basictypeaccess.AccessFlags;
 import net.imglib2.type.BooleanType;
 import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
 import net.imglib2.util.IntervalIndexer;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
@@ -140,6 +158,11 @@ public class ConnectedComponentAnalysis
 	 * with respect to a neighborhood ({@code shape}) over a binary mask.
 	 * {@code mask}
 	 * and {@code labeling} are expected to have equal min and max.
+	 * <p>
+	 * For the 8-neighborhood in 2D and the 26-neighborhood in 3D
+	 * ({@link RectangleShape} with span 1), a block-based raster scan over
+	 * 2x2 (2x2x2) blocks is used that reads every pixel once and joins
+	 * components once per pair of connected blocks.
 	 *
 	 * @param mask
 	 *            Boolean mask to distinguish foreground ({@code true}) from
@@ -161,6 +184,12 @@ public class ConnectedComponentAnalysis
 			final Shape shape )
 	{
 		assert Intervals.numElements( labeling ) < Integer.MAX_VALUE: "Cannot Image Using array union find.";
+		final int nDim = labeling.numDimensions();
+		if ( shape instanceof RectangleShape && ( ( RectangleShape ) shape ).getSpan() == 1 && ( nDim == 2 || nDim == 3 ) )
+		{
+			connectedComponentsBlockBased( mask, labeling );
+			return;
+		}
 		connectedComponents(
 				mask,
 				labeling,
@@ -216,6 +245,417 @@ public class ConnectedComponentAnalysis
 		UnionFind.relabel( mask, labeling, uf, idForPixel, idForSet );
 	}
 
+	/**
+	 *
+	 * Parallel implementation of connected component analysis over a binary
+	 * mask with respect to a neighborhood ({@code shape}). Blocks of size
+	 * {@code blockSize} are labeled independently, equivalences between
+	 * components of neighboring blocks are collected along the block faces
+	 * and merged with a {@link LongHashMapUnionFind}, and all blocks are
+	 * relabeled in parallel. The result is identical to
+	 * {@link #connectedComponents(RandomAccessibleInterval, RandomAccessibleInterval, Shape)}.
+	 * {@code mask} and {@code labeling} are expected to have equal min and
+	 * max.
+	 *
+	 * @param mask
+	 *            Boolean mask to distinguish foreground ({@code true}) from
+	 *            background ({@code false}).
+	 * @param labeling
+	 *            Output parameter to store labeling: background pixels are
+	 *            labeled zero, foreground pixels are greater than zero: 1, 2,
+	 *            ..., N. Note that initially all pixels are expected to be zero
+	 *            as background values will not be written. Intermediate labels
+	 *            are unique across blocks, so {@code labeling} must be able to
+	 *            represent the number of pixels in {@code labeling}.
+	 * @param shape
+	 *            Connectivity of connected components, e.g. 4-neighborhood
+	 *            ({@link DiamondShape}), 8-neighborhood
+	 *            ({@link RectangleNeighborhood}) and their generalisations for
+	 *            higher dimensions.
+	 * @param blockSize
+	 *            Size of blocks that are labeled independently.
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < B extends BooleanType< B >, L extends IntegerType< L > > void connectedComponents(
+			final RandomAccessibleInterval< B > mask,
+			final RandomAccessibleInterval< L > labeling,
+			final Shape shape,
+			final int[] blockSize,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		assert Intervals.contains( mask, labeling ) && Intervals.contains( labeling, mask ): "Mask and labeling are not the same size.";
+
+		final List< Interval > blocks = Grids.collectAllContainedIntervals( Intervals.minAsLongArray( labeling ), Intervals.maxAsLongArray( labeling ), blockSize );
+
+		// label blocks independently
+		final List< long[] > blockLabels = ParallelizeOverBlocks.parallelizeAndWait(
+				block -> labelBlock( Views.interval( mask, block ), Views.interval( labeling, block ), labeling, shape ),
+				blocks,
+				es,
+				nTasks );
+
+		// collect equivalences across block faces
+		final long[][] offsets = neighborhoodOffsets( mask, shape );
+		final List< TLongArrayList > equivalences = ParallelizeOverBlocks.parallelizeAndWait(
+				block -> blockFaceEquivalences( mask, labeling, block, offsets ),
+				blocks,
+				es,
+				nTasks );
+
+		final TLongLongHashMap finalLabels = mergeEquivalences( blockLabels, equivalences );
+
+		ParallelizeOverBlocks.parallelizeAndWait(
+				ParallelizeOverBlocks.ofConsumer( block -> relabelBlock( mask, labeling, block, finalLabels ) ),
+				blocks,
+				es,
+				nTasks );
+	}
+
+	/**
+	 *
+	 * Out-of-core connected component analysis over a binary mask with
+	 * respect to a neighborhood ({@code shape}), for masks that do not fit
+	 * into memory, e.g. {@link CachedCellImg}s.
+	 * <p>
+	 * Blocks of size {@code blockSize} are labeled independently and lazily
+	 * into a {@link Lazy} {@link CachedCellImg}: each component of a block is
+	 * labeled with the index of its first pixel (in flat iteration order of
+	 * {@code mask}) increased by one, so block labels are unique and can be
+	 * recomputed at any time when evicted from the cache. Equivalences of
+	 * block labels along the block faces are collected in parallel into a
+	 * {@link LongHashMapUnionFind}, which only holds labels of components that
+	 * touch a block face. The returned labeling is a lazy {@link Converter}
+	 * view that maps each block label to the smallest block label of its
+	 * component, i.e. every component is labeled with the index of its first
+	 * pixel increased by one, and background is zero. Labels are not
+	 * consecutive.
+	 * </p>
+	 *
+	 * @param mask
+	 *            Boolean mask to distinguish foreground ({@code true}) from
+	 *            background ({@code false}).
+	 * @param shape
+	 *            Connectivity of connected components, e.g. 4-neighborhood
+	 *            ({@link DiamondShape}), 8-neighborhood
+	 *            ({@link RectangleNeighborhood}) and their generalisations for
+	 *            higher dimensions.
+	 * @param blockSize
+	 *            Size of blocks that are labeled independently, ideally the
+	 *            cell size of {@code mask}.
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @return lazily relabeled connected components with the same interval as
+	 *         {@code mask}
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < B extends BooleanType< B > > RandomAccessibleInterval< UnsignedLongType > lazyConnectedComponents(
+			final RandomAccessibleInterval< B > mask,
+			final Shape shape,
+			final int[] blockSize,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		final long[] min = Intervals.minAsLongArray( mask );
+		final RandomAccessibleInterval< B > zeroMinMask = Views.zeroMin( mask );
+
+		final CachedCellImg< UnsignedLongType, ? > blockLabels = Lazy.process(
+				zeroMinMask,
+				blockSize,
+				new UnsignedLongType(),
+				AccessFlags.setOf( AccessFlags.VOLATILE ),
+				cell -> labelBlock( Views.interval( zeroMinMask, cell ), cell, zeroMinMask, shape ) );
+
+		final long[][] offsets = neighborhoodOffsets( zeroMinMask, shape );
+		final List< TLongArrayList > equivalences = ParallelizeOverBlocks.parallelizeAndWait(
+				block -> blockFaceEquivalences( zeroMinMask, blockLabels, block, offsets ),
+				Grids.collectAllContainedIntervals( Intervals.dimensionsAsLongArray( mask ), blockSize ),
+				es,
+				nTasks );
+
+		// representative is the smallest id of each set
+		final UnionFind uf = new LongHashMapUnionFind();
+		final TLongHashSet ids = new TLongHashSet();
+		for ( final TLongArrayList pairs : equivalences )
+		{
+			for ( int i = 0; i < pairs.size(); i += 2 )
+			{
+				final long id1 = pairs.get( i );
+				final long id2 = pairs.get( i + 1 );
+				ids.add( id1 );
+				ids.add( id2 );
+				final long r1 = uf.findRoot( id1 );
+				final long r2 = uf.findRoot( id2 );
+				if ( r1 != r2 )
+				{
+					uf.join( r1, r2 );
+				}
+			}
+		}
+
+		// read-only assignments that can be shared across threads
+		final TLongLongHashMap assignments = new TLongLongHashMap();
+		ids.forEach( id -> {
+			final long root = uf.findRoot( id );
+			if ( root != id )
+			{
+				assignments.put( id, root );
+			}
+			return true;
+		} );
+
+		final RandomAccessibleInterval< UnsignedLongType > relabeled = Converters.convert(
+				( RandomAccessibleInterval< UnsignedLongType > ) blockLabels,
+				( s, t ) -> {
+					final long id = s.getLong();
+					t.setLong( assignments.containsKey( id ) ? assignments.get( id ) : id );
+				},
+				new UnsignedLongType() );
+		return Views.translate( relabeled, min );
+	}
+
+	/**
+	 * Label connected components within {@code blockLabeling} with the index
+	 * of the first pixel of each component within {@code interval} increased
+	 * by one. Ids are unique across blocks and consistent with flat iteration
+	 * order of {@code interval}.
+	 *
+	 * @return ids of all components in {@code blockLabeling}
+	 */
+	static < B extends BooleanType< B >, L extends IntegerType< L > > long[] labelBlock(
+			final RandomAccessibleInterval< B > blockMask,
+			final RandomAccessibleInterval< L > blockLabeling,
+			final Interval interval,
+			final Shape shape )
+	{
+		final Interval block = blockLabeling;
+		assert Intervals.numElements( block ) <= Integer.MAX_VALUE: "Too many pixels in block for integer based union find.";
+		final UnionFind uf = makeUnion( blockMask, blockLabeling, shape, n -> new IntArrayRankedUnionFind( ( int ) n ), idFromIntervalIndexer( block ) );
+
+		final TLongLongHashMap ids = new TLongLongHashMap();
+		final Cursor< L > label = Views.flatIterable( blockLabeling ).localizingCursor();
+		final Cursor< B > maskCursor = Views.flatIterable( blockMask ).cursor();
+		while ( label.hasNext() )
+		{
+			final B m = maskCursor.next();
+			label.fwd();
+			if ( m.get() )
+			{
+				final long root = uf.findRoot( IntervalIndexer.positionToIndexForInterval( label, block ) );
+				if ( !ids.containsKey( root ) )
+				{
+					ids.put( root, IntervalIndexer.positionToIndexForInterval( label, interval ) + 1 );
+				}
+				label.get().setInteger( ids.get( root ) );
+			}
+		}
+		return ids.values();
+	}
+
+	/**
+	 * Collect pairs of labels of neighboring foreground pixels in
+	 * {@code block} and any other block. Only pixels close to the upper faces
+	 * of {@code block} are considered: each pair of neighboring pixels in
+	 * different blocks is close to an upper face of one of the two blocks.
+	 * <p>
+	 * Pairs are merged into a union find for the block, and only one pair
+	 * {@code (label, representative)} is returned per label that is not the
+	 * representative of its set, instead of one pair per neighboring pixels.
+	 */
+	static < B extends BooleanType< B >, L extends IntegerType< L > > TLongArrayList blockFaceEquivalences(
+			final RandomAccessible< B > mask,
+			final RandomAccessibleInterval< L > labeling,
+			final Interval block,
+			final long[][] offsets )
+	{
+		final int nDim = block.numDimensions();
+		final long[] radius = new long[ nDim ];
+		for ( final long[] offset : offsets )
+		{
+			for ( int d = 0; d < nDim; ++d )
+			{
+				radius[ d ] = Math.max( radius[ d ], Math.abs( offset[ d ] ) );
+			}
+		}
+
+		final UnionFind uf = new LongHashMapUnionFind();
+		final TLongHashSet ids = new TLongHashSet();
+		final RandomAccess< B > neighborMask = mask.randomAccess();
+		final RandomAccess< L > neighborLabel = labeling.randomAccess();
+		final long[] position = new long[ nDim ];
+		final long[] neighbor = new long[ nDim ];
+		for ( int d = 0; d < nDim; ++d )
+		{
+			if ( block.max( d ) >= labeling.max( d ) || radius[ d ] == 0 )
+			{
+				continue;
+			}
+			final long[] faceMin = Intervals.minAsLongArray( block );
+			final long[] faceMax = Intervals.maxAsLongArray( block );
+			faceMin[ d ] = Math.max( faceMin[ d ], faceMax[ d ] - radius[ d ] + 1 );
+			final FinalInterval face = new FinalInterval( faceMin, faceMax );
+			final Cursor< B > m = Views.flatIterable( Views.interval( mask, face ) ).localizingCursor();
+			final Cursor< L > l = Views.flatIterable( Views.interval( labeling, face ) ).cursor();
+			while ( m.hasNext() )
+			{
+				final boolean isForeground = m.next().get();
+				final long label = l.next().getIntegerLong();
+				if ( !isForeground )
+				{
+					continue;
+				}
+				m.localize( position );
+				for ( final long[] offset : offsets )
+				{
+					for ( int k = 0; k < nDim; ++k )
+					{
+						neighbor[ k ] = position[ k ] + offset[ k ];
+					}
+					if ( Intervals.contains( block, Point.wrap( neighbor ) ) || !Intervals.contains( labeling, Point.wrap( neighbor ) ) )
+					{
+						continue;
+					}
+					neighborMask.setPosition( neighbor );
+					if ( neighborMask.get().get() )
+					{
+						neighborLabel.setPosition( neighbor );
+						final long neighborId = neighborLabel.get().getIntegerLong();
+						final long r1 = uf.findRoot( label );
+						final long r2 = uf.findRoot( neighborId );
+						if ( r1 != r2 )
+						{
+							uf.join( r1, r2 );
+							ids.add( label );
+							ids.add( neighborId );
+						}
+					}
+				}
+			}
+		}
+
+		final TLongArrayList equivalences = new TLongArrayList();
+		ids.forEach( id -> {
+			final long root = uf.findRoot( id );
+			if ( root != id )
+			{
+				equivalences.add( id );
+				equivalences.add( root );
+			}
+			return true;
+		} );
+		return equivalences;
+	}
+
+	/**
+	 * Merge equivalent block labels and map them to 1, 2, ..., N ordered by
+	 * their smallest block label, i.e. in flat iteration order.
+	 */
+	static TLongLongHashMap mergeEquivalences(
+			final List< long[] > blockLabels,
+			final List< TLongArrayList > equivalences )
+	{
+		// representative is the smallest id of each set
+		final UnionFind uf = new LongHashMapUnionFind();
+		for ( final TLongArrayList pairs : equivalences )
+		{
+			for ( int i = 0; i < pairs.size(); i += 2 )
+			{
+				final long r1 = uf.findRoot( pairs.get( i ) );
+				final long r2 = uf.findRoot( pairs.get( i + 1 ) );
+				if ( r1 != r2 )
+				{
+					uf.join( r1, r2 );
+				}
+			}
+		}
+
+		final TLongHashSet rootSet = new TLongHashSet();
+		for ( final long[] labels : blockLabels )
+		{
+			for ( final long label : labels )
+			{
+				rootSet.add( uf.findRoot( label ) );
+			}
+		}
+		final long[] roots = rootSet.toArray();
+		Arrays.sort( roots );
+		final TLongLongHashMap rootToId = new TLongLongHashMap();
+		for ( int i = 0; i < roots.length; ++i )
+		{
+			rootToId.put( roots[ i ], i + 1 );
+		}
+
+		final TLongLongHashMap finalLabels = new TLongLongHashMap();
+		for ( final long[] labels : blockLabels )
+		{
+			for ( final long label : labels )
+			{
+				finalLabels.put( label, rootToId.get( uf.findRoot( label ) ) );
+			}
+		}
+		return finalLabels;
+	}
+
+	private static < B extends BooleanType< B >, L extends IntegerType< L > > void relabelBlock(
+			final RandomAccessible< B > mask,
+			final RandomAccessibleInterval< L > labeling,
+			final Interval block,
+			final TLongLongHashMap finalLabels )
+	{
+		final Cursor< B > m = Views.flatIterable( Views.interval( mask, block ) ).cursor();
+		final Cursor< L > l = Views.flatIterable( Views.interval( labeling, block ) ).cursor();
+		while ( m.hasNext() )
+		{
+			final boolean isForeground = m.next().get();
+			final L label = l.next();
+			if ( isForeground )
+			{
+				label.setInteger( finalLabels.get( label.getIntegerLong() ) );
+			}
+		}
+	}
+
+	/**
+	 * @return offsets of all pixels in the neighborhood defined by
+	 *         {@code shape} relative to its center, excluding the center
+	 */
+	static < T > long[][] neighborhoodOffsets( final RandomAccessibleInterval< T > interval, final Shape shape )
+	{
+		final long[] center = Intervals.minAsLongArray( interval );
+		final RandomAccess< Neighborhood< T > > access = shape.neighborhoodsRandomAccessible( Views.extendBorder( interval ) ).randomAccess();
+		access.setPosition( center );
+		final Cursor< T > c = access.get().localizingCursor();
+		final List< long[] > offsets = new ArrayList<>();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final long[] offset = new long[ center.length ];
+			boolean isCenter = true;
+			for ( int d = 0; d < center.length; ++d )
+			{
+				offset[ d ] = c.getLongPosition( d ) - center[ d ];
+				isCenter &= offset[ d ] == 0;
+			}
+			if ( !isCenter )
+			{
+				offsets.add( offset );
+			}
+		}
+		return offsets.toArray( new long[ offsets.size() ][] );
+	}
+
 	private static < B extends BooleanType< B >, L extends IntegerType< L > > UnionFind makeUnion(
 			final RandomAccessibleInterval< B > mask,
 			final RandomAccessibleInterval< L > labeling,
@@ -235,6 +675,217 @@ public class ConnectedComponentAnalysis
 		return uf;
 	}
 
+	/**
+	 * Connected component analysis with respect to the full neighborhood
+	 * ({@link RectangleShape} with span 1) for low dimensional images. All
+	 * foreground pixels of a block of 2<sup>n</sup> pixels are connected, so
+	 * blocks are labeled instead of pixels. Each block is summarized by an
+	 * occupancy bit mask of its foreground pixels, and a block is connected
+	 * to a preceding neighbor block iff both blocks have foreground pixels on
+	 * the facing sides, which is tested with two precomputed bit masks per
+	 * neighbor offset. Provisional block labels are merged with an array
+	 * based union find (the root is the smallest label) and resolved to 1, 2,
+	 * ..., N in flat iteration order of the pixels, i.e. the result is
+	 * identical to {@link #connectedComponentsGeneralShape}.
+	 */
+	private static < B extends BooleanType< B >, L extends IntegerType< L > > void connectedComponentsBlockBased(
+			final RandomAccessibleInterval< B > mask,
+			final RandomAccessibleInterval< L > labeling )
+	{
+		final int nDim = labeling.numDimensions();
+		final long[] dims = Intervals.dimensionsAsLongArray( labeling );
+		final long[] blockDims = new long[ nDim ];
+		Arrays.setAll( blockDims, d -> ( dims[ d ] + 1 ) / 2 );
+		final int[] blockSteps = new int[ nDim ];
+		IntervalIndexer.createAllocationSteps( blockDims, blockSteps );
+		final int numBlocks = ( int ) Intervals.numElements( blockDims );
+
+		// occupancy of each block: bit sum_d ( x_d % 2 ) << d is set for
+		// foreground pixel x
+		final byte[] occupancy = new byte[ numBlocks ];
+		final long[] position = new long[ nDim ];
+		for ( final B m : Views.flatIterable( Views.interval( mask, labeling ) ) )
+		{
+			if ( m.get() )
+			{
+				int bit = 0;
+				for ( int d = 0; d < nDim; ++d )
+				{
+					bit |= ( int ) ( position[ d ] & 1 ) << d;
+				}
+				occupancy[ blockIndex( position, blockSteps ) ] |= 1 << bit;
+			}
+			fwd( position, dims );
+		}
+
+		// offsets to all neighbor blocks that precede a block in flat
+		// iteration order, face neighbors first, and the bits of both blocks
+		// that are adjacent to the other block
+		final List< long[] > offsetList = new ArrayList<>();
+		final long[] offset = new long[ nDim ];
+		Arrays.fill( offset, -1 );
+		for ( int i = 0; i < ( int ) Math.pow( 3, nDim ) / 2; ++i )
+		{
+			offsetList.add( offset.clone() );
+			for ( int d = 0; d < nDim && ++offset[ d ] > 1; ++d )
+			{
+				offset[ d ] = -1;
+			}
+		}
+		offsetList.sort( ( o1, o2 ) -> Long.compare( Arrays.stream( o1 ).filter( o -> o != 0 ).count(), Arrays.stream( o2 ).filter( o -> o != 0 ).count() ) );
+		final long[][] offsets = offsetList.toArray( new long[ offsetList.size() ][] );
+		final int[] neighborSteps = new int[ offsets.length ];
+		final int[] selfBits = new int[ offsets.length ];
+		final int[] neighborBits = new int[ offsets.length ];
+		for ( int i = 0; i < offsets.length; ++i )
+		{
+			for ( int d = 0; d < nDim; ++d )
+			{
+				neighborSteps[ i ] += ( int ) offsets[ i ][ d ] * blockSteps[ d ];
+			}
+			for ( int bit = 0; bit < 1 << nDim; ++bit )
+			{
+				boolean isSelfAdjacent = true;
+				boolean isNeighborAdjacent = true;
+				for ( int d = 0; d < nDim; ++d )
+				{
+					final long x = bit >> d & 1;
+					isSelfAdjacent &= offsets[ i ][ d ] == 0 || x == ( offsets[ i ][ d ] < 0 ? 0 : 1 );
+					isNeighborAdjacent &= offsets[ i ][ d ] == 0 || x == ( offsets[ i ][ d ] < 0 ? 1 : 0 );
+				}
+				selfBits[ i ] |= isSelfAdjacent ? 1 << bit : 0;
+				neighborBits[ i ] |= isNeighborAdjacent ? 1 << bit : 0;
+			}
+		}
+
+		// label blocks
+		final int[] blockLabels = new int[ numBlocks ];
+		final int[] parents = new int[ numBlocks + 1 ];
+		int nextLabel = 1;
+		final long[] blockPosition = new long[ nDim ];
+		for ( int block = 0; block < numBlocks; ++block, fwd( blockPosition, blockDims ) )
+		{
+			final int blockOccupancy = occupancy[ block ] & 0xff;
+			if ( blockOccupancy == 0 )
+			{
+				continue;
+			}
+			int label = 0;
+			for ( int i = 0; i < offsets.length; ++i )
+			{
+				if ( ( blockOccupancy & selfBits[ i ] ) == 0 || !containsNeighbor( blockPosition, offsets[ i ], blockDims ) )
+				{
+					continue;
+				}
+				final int neighbor = block + neighborSteps[ i ];
+				if ( ( occupancy[ neighbor ] & neighborBits[ i ] ) == 0 )
+				{
+					continue;
+				}
+				final int neighborLabel = blockLabels[ neighbor ];
+				if ( label == 0 )
+				{
+					label = neighborLabel;
+				}
+				else if ( label != neighborLabel )
+				{
+					label = join( parents, label, neighborLabel );
+				}
+			}
+			if ( label == 0 )
+			{
+				label = nextLabel++;
+				parents[ label ] = label;
+			}
+			blockLabels[ block ] = label;
+		}
+
+		// parents are always smaller than their children
+		for ( int label = 1; label < nextLabel; ++label )
+		{
+			parents[ label ] = parents[ parents[ label ] ];
+		}
+
+		final int[] ids = new int[ nextLabel ];
+		int numComponents = 0;
+		Arrays.fill( position, 0 );
+		final Cursor< B > m = Views.flatIterable( Views.interval( mask, labeling ) ).cursor();
+		final Cursor< L > l = Views.flatIterable( labeling ).cursor();
+		while ( m.hasNext() )
+		{
+			final boolean isForeground = m.next().get();
+			final L label = l.next();
+			if ( isForeground )
+			{
+				final int root = parents[ blockLabels[ blockIndex( position, blockSteps ) ] ];
+				if ( ids[ root ] == 0 )
+				{
+					ids[ root ] = ++numComponents;
+				}
+				label.setInteger( ids[ root ] );
+			}
+			fwd( position, dims );
+		}
+	}
+
+	private static int blockIndex( final long[] position, final int[] blockSteps )
+	{
+		int index = 0;
+		for ( int d = 0; d < position.length; ++d )
+		{
+			index += ( int ) ( position[ d ] >> 1 ) * blockSteps[ d ];
+		}
+		return index;
+	}
+
+	private static void fwd( final long[] position, final long[] dims )
+	{
+		for ( int d = 0; d < position.length; ++d )
+		{
+			if ( ++position[ d ] < dims[ d ] )
+			{
+				return;
+			}
+			position[ d ] = 0;
+		}
+	}
+
+	private static boolean containsNeighbor( final long[] position, final long[] offset, final long[] dims )
+	{
+		for ( int d = 0; d < position.length; ++d )
+		{
+			final long p = position[ d ] + offset[ d ];
+			if ( p < 0 || p >= dims[ d ] )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int findRoot( final int[] parents, int label )
+	{
+		while ( parents[ label ] != label )
+		{
+			parents[ label ] = parents[ parents[ label ] ];
+			label = parents[ label ];
+		}
+		return label;
+	}
+
+	private static int join( final int[] parents, final int label1, final int label2 )
+	{
+		final int r1 = findRoot( parents, label1 );
+		final int r2 = findRoot( parents, label2 );
+		if ( r1 < r2 )
+		{
+			parents[ r2 ] = r1;
+			return r1;
+		}
+		parents[ r1 ] = r2;
+		return r2;
+	}
+
 	private static < B extends BooleanType< B >, L extends IntegerType< L > > void connectedComponentsDiamondShape(
 			final RandomAccessible< B > mask,
 			final RandomAccessibleInterval< L > labeling,
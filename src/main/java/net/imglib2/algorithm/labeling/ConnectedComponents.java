@@ -65,8 +65,33 @@ public final class ConnectedComponents
 {
 	public static enum StructuringElement
 	{
+		/**
+		 * Face neighbors, i.e. 4-connected in 2D and 6-connected in 3D
+		 * (respectively n-dimensional analog).
+		 */
 		FOUR_CONNECTED( Collect4NeighborLabels.factory ),
-		EIGHT_CONNECTED( Collect8NeighborLabels.factory );
+		/**
+		 * Face, edge, and vertex neighbors, i.e. 8-connected in 2D and
+		 * 26-connected in 3D (respectively n-dimensional analog).
+		 */
+		EIGHT_CONNECTED( Collect8NeighborLabels.factory ),
+		/**
+		 * Face neighbors, i.e. 6-connected in 3D (respectively n-dimensional
+		 * analog, same as {@link #FOUR_CONNECTED}).
+		 */
+		SIX_CONNECTED( Collect4NeighborLabels.factory ),
+		/**
+		 * Face and edge neighbors, i.e. 18-connected in 3D: all neighbors in
+		 * the 3x3x3 neighborhood that differ in at most two coordinates
+		 * (respectively n-dimensional analog, 8-connected in 2D).
+		 */
+		EIGHTEEN_CONNECTED( Collect8NeighborLabels.edgeFactory ),
+		/**
+		 * Face, edge, and vertex neighbors, i.e. 26-connected in 3D
+		 * (respectively n-dimensional analog, same as
+		 * {@link #EIGHT_CONNECTED}).
+		 */
+		TWENTY_SIX_CONNECTED( Collect8NeighborLabels.factory );
 
 		private final CollectNeighborLabelsFactory factory;
 
@@ -573,34 +598,62 @@ public final class ConnectedComponents
 		private final int numPreviousFragmentOffsets;
 
 		private Collect8NeighborLabels( final int n )
+		{
+			this( n, n );
+		}
+
+		/**
+		 * @param maxNonZero
+		 *            maximum number of non-zero coordinates of neighbor
+		 *            offsets, e.g. {@code 2} for 18-connectivity in 3D
+		 */
+		private Collect8NeighborLabels( final int n, final int maxNonZero )
 		{
 			this.n = n;
-			int nOffsets = 0;
-			for ( int d = 0; d < n; ++d )
-				nOffsets = 3 * nOffsets + 1;
-			numPreviousFragmentOffsets = ( int ) Math.pow( 3, n - 1 );
-			offsets = new long[ nOffsets ][];
-			pos = new long[ n ];
-			previousFragmentPos = new long[ n ];
 			final long[] min = new long[ n ];
 			Arrays.fill( min, -1 );
 			final long[] max = new long[ n ];
 			Arrays.fill( max, 1 );
+
+			// all offsets that precede the center in flat iteration order,
+			// offsets into the previous fragment (last coordinate -1) first
+			final ArrayList< long[] > absoluteOffsets = new ArrayList<>();
+			int numPrevious = 0;
 			final IntervalIterator idx = new IntervalIterator( new FinalInterval( min, max ) );
-			for ( int i = 0; i < offsets.length; ++i )
+			while ( idx.hasNext() )
 			{
-				offsets[ i ] = new long[ n ];
-A:				while ( true )
+				idx.fwd();
+				final long[] offset = new long[ n ];
+				idx.localize( offset );
+				int nonZero = 0;
+				int lastNonZero = -1;
+				for ( int d = 0; d < n; ++d )
+				{
+					if ( offset[ d ] != 0 )
+					{
+						++nonZero;
+						lastNonZero = d;
+					}
+				}
+				if ( lastNonZero >= 0 && offset[ lastNonZero ] < 0 && nonZero <= maxNonZero )
 				{
-					idx.fwd();
-					idx.localize( offsets[ i ] );
-					for ( int d = n - 1; d >= 0; --d )
-						if ( offsets[ i ][ d ] < 0 )
-							break A;
+					absoluteOffsets.add( offset );
+					if ( offset[ n - 1 ] < 0 )
+						++numPrevious;
 				}
+			}
+			numPreviousFragmentOffsets = numPrevious;
+
+			// store offsets relative to the previous offset
+			offsets = new long[ absoluteOffsets.size() ][];
+			pos = new long[ n ];
+			previousFragmentPos = new long[ n ];
+			for ( int i = 0; i < offsets.length; ++i )
+			{
+				offsets[ i ] = new long[ n ];
 				for ( int d = 0; d < n; ++d )
 				{
-					offsets[ i ][ d ] -= pos[ d ];
+					offsets[ i ][ d ] = absoluteOffsets.get( i )[ d ] - pos[ d ];
 					pos[ d ] += offsets[ i ][ d ];
 				}
 				if ( i == numPreviousFragmentOffsets - 1 )
@@ -701,5 +754,14 @@ A:			for ( int i = 0; i < numPreviousFragmentOffsets; ++i )
 				return new Collect8NeighborLabels< L >( n );
 			}
 		};
+
+		private static final CollectNeighborLabelsFactory edgeFactory = new CollectNeighborLabelsFactory()
+		{
+			@Override
+			public < L extends IntegerType< L > > CollectNeighborLabels< L > newInstance( final int n )
+			{
+				return new Collect8NeighborLabels< L >( n, 2 );
+			}
+		};
 	}
 }
@@ -0,0 +1,270 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.labeling;
+
+import java.util.Arrays;
+
+import gnu.trove.list.array.TLongArrayList;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Priority queue of flat pixel indices for flooding algorithms such as the
+ * {@link Watershed}. Pixels are popped in order of increasing priority and
+ * pixels with equal priority in the order in which they were pushed. Indices
+ * and priorities are stored in primitive arrays, i.e. no objects are
+ * allocated per pixel.
+ */
+interface PixelQueue
+{
+	/**
+	 * Largest number of distinct intensities for which a
+	 * {@link HierarchicalQueue} is used.
+	 */
+	static final long MAX_NUM_BUCKETS = 1 << 16;
+
+	void push( long index, double priority );
+
+	/**
+	 * @return index of the oldest pixel with the lowest priority
+	 */
+	long pop();
+
+	boolean isEmpty();
+
+	/**
+	 * Create a {@link HierarchicalQueue} for integer valued images with at
+	 * most {@link #MAX_NUM_BUCKETS} distinct intensities between the minimum
+	 * and maximum intensity and a {@link BinaryHeap} otherwise.
+	 */
+	static < T extends RealType< T > > PixelQueue forImage( final RandomAccessibleInterval< T > image )
+	{
+		final T type = Util.getTypeFromInterval( image );
+		if ( type instanceof IntegerType )
+		{
+			if ( type.getMaxValue() - type.getMinValue() < MAX_NUM_BUCKETS )
+			{
+				return new HierarchicalQueue( ( long ) type.getMinValue(), ( long ) type.getMaxValue() );
+			}
+			long min = Long.MAX_VALUE;
+			long max = Long.MIN_VALUE;
+			for ( final T t : Views.iterable( image ) )
+			{
+				final long value = ( long ) t.getRealDouble();
+				min = Math.min( min, value );
+				max = Math.max( max, value );
+			}
+			if ( min <= max && ( double ) max - min < MAX_NUM_BUCKETS )
+			{
+				return new HierarchicalQueue( min, max );
+			}
+		}
+		return new BinaryHeap();
+	}
+
+	/**
+	 * Hierarchical queue for integer priorities within {@code [min, max]}:
+	 * one FIFO bucket of indices per priority.
+	 */
+	static final class HierarchicalQueue implements PixelQueue
+	{
+		private final long min;
+
+		private final TLongArrayList[] buckets;
+
+		private final int[] heads;
+
+		private int current;
+
+		private long size = 0;
+
+		HierarchicalQueue( final long min, final long max )
+		{
+			this.min = min;
+			this.buckets = new TLongArrayList[ ( int ) ( max - min + 1 ) ];
+			this.heads = new int[ buckets.length ];
+			this.current = buckets.length;
+		}
+
+		@Override
+		public void push( final long index, final double priority )
+		{
+			final int bucket = ( int ) ( ( long ) priority - min );
+			if ( buckets[ bucket ] == null )
+			{
+				buckets[ bucket ] = new TLongArrayList();
+			}
+			buckets[ bucket ].add( index );
+			current = Math.min( current, bucket );
+			++size;
+		}
+
+		@Override
+		public long pop()
+		{
+			while ( buckets[ current ] == null || heads[ current ] == buckets[ current ].size() )
+			{
+				if ( buckets[ current ] != null )
+				{
+					buckets[ current ].resetQuick();
+					heads[ current ] = 0;
+				}
+				++current;
+			}
+			--size;
+			return buckets[ current ].getQuick( heads[ current ]++ );
+		}
+
+		@Override
+		public boolean isEmpty()
+		{
+			return size == 0;
+		}
+	}
+
+	/**
+	 * Binary min-heap for real priorities. Ties are broken by the order of
+	 * insertion.
+	 */
+	static final class BinaryHeap implements PixelQueue
+	{
+		/**
+		 * Largest capacity of the heap, the largest array size supported by
+		 * all JVMs.
+		 */
+		static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+		private long[] indices = new long[ 16 ];
+
+		private double[] priorities = new double[ 16 ];
+
+		private long[] ages = new long[ 16 ];
+
+		private int size = 0;
+
+		private long age = 0;
+
+		@Override
+		public void push( final long index, final double priority )
+		{
+			if ( size == indices.length )
+			{
+				if ( size == MAX_CAPACITY )
+				{
+					throw new IllegalStateException( "Cannot queue more than " + MAX_CAPACITY + " pixels." );
+				}
+				final int capacity = ( int ) Math.min( size + ( size >> 1 ) + 1L, MAX_CAPACITY );
+				indices = Arrays.copyOf( indices, capacity );
+				priorities = Arrays.copyOf( priorities, capacity );
+				ages = Arrays.copyOf( ages, capacity );
+			}
+			final long a = age++;
+			int child = size++;
+			while ( child > 0 )
+			{
+				final int parent = ( child - 1 ) / 2;
+				if ( !isLess( priority, a, parent ) )
+				{
+					break;
+				}
+				set( child, parent );
+				child = parent;
+			}
+			indices[ child ] = index;
+			priorities[ child ] = priority;
+			ages[ child ] = a;
+		}
+
+		@Override
+		public long pop()
+		{
+			final long index = indices[ 0 ];
+			--size;
+			final double priority = priorities[ size ];
+			final long a = ages[ size ];
+			final long last = indices[ size ];
+			int parent = 0;
+			while ( true )
+			{
+				int child = 2 * parent + 1;
+				if ( child >= size )
+				{
+					break;
+				}
+				if ( child + 1 < size && isLess( priorities[ child + 1 ], ages[ child + 1 ], child ) )
+				{
+					++child;
+				}
+				if ( !isLess( priorities[ child ], ages[ child ], priority, a ) )
+				{
+					break;
+				}
+				set( parent, child );
+				parent = child;
+			}
+			indices[ parent ] = last;
+			priorities[ parent ] = priority;
+			ages[ parent ] = a;
+			return index;
+		}
+
+		@Override
+		public boolean isEmpty()
+		{
+			return size == 0;
+		}
+
+		private boolean isLess( final double priority, final long a, final int i )
+		{
+			return isLess( priority, a, priorities[ i ], ages[ i ] );
+		}
+
+		private static boolean isLess( final double priority1, final long age1, final double priority2, final long age2 )
+		{
+			final int result = Double.compare( priority1, priority2 );
+			return result < 0 || result == 0 && age1 < age2;
+		}
+
+		private void set( final int target, final int source )
+		{
+			indices[ target ] = indices[ source ];
+			priorities[ target ] = priorities[ source ];
+			ages[ target ] = ages[ source ];
+		}
+	}
+}
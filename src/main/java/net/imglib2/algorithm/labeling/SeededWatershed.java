@@ -0,0 +1,747 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.labeling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.DiamondShape;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.algorithm.util.Grids;
+import net.imglib2.algorithm.util.ParallelizeOverBlocks;
+import net.imglib2.algorithm.util.unionfind.LongHashMapUnionFind;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.roi.labeling.ImgLabeling;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.ConstantUtils;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import net.imglib2.view.Views;
+
+/**
+ * Seeded watershed on integer labels, e.g. the index image of an
+ * {@link ImgLabeling}. Starting from the seeds, i.e. all pixels with non-zero
+ * label, the image is flooded in order of increasing intensity: each
+ * unlabeled neighbor (with respect to a {@link Shape}) of a flooded pixel is
+ * assigned the label of that pixel and queued with its own intensity. Ties
+ * are broken by the order in which pixels were queued. Pixels are queued by
+ * their flat index in a primitive priority queue, i.e. a hierarchical queue
+ * for integer images with a small range of intensities and a binary heap
+ * otherwise.
+ * <p>
+ * Optionally,
+ * <ul>
+ * <li>pixels that would join two different basins are left unlabeled as
+ * watershed lines,</li>
+ * <li>basins are made more compact by adding {@code compactness} times the
+ * Euclidean distance to the seed pixel a basin was flooded from to the
+ * intensity (compact watershed),</li>
+ * <li>flooding is restricted to the foreground of a mask.</li>
+ * </ul>
+ * Images that are too large to be flooded sequentially can be flooded in
+ * independent blocks with a halo with
+ * {@link #tiledWatershed(RandomAccessible, RandomAccessible, RandomAccessibleInterval, Shape, int[], long[], ExecutorService, int)}.
+ */
+public class SeededWatershed
+{
+
+	/**
+	 * Flood {@code labels} from all pixels with non-zero label in order of
+	 * increasing intensity of {@code image}.
+	 *
+	 * @param image
+	 *            intensities, lower values are flooded first
+	 * @param labels
+	 *            seeds (non-zero) on input, basins on output
+	 * @param shape
+	 *            connectivity, e.g. {@link DiamondShape} or
+	 *            {@link RectangleShape}
+	 */
+	public static < T extends RealType< T >, L extends IntegerType< L > > void watershed(
+			final RandomAccessible< T > image,
+			final RandomAccessibleInterval< L > labels,
+			final Shape shape )
+	{
+		watershed( image, labels, allTrue( labels ), shape, false, 0.0 );
+	}
+
+	/**
+	 * Flood {@code labels} from all pixels with non-zero label inside
+	 * {@code mask} in order of increasing intensity of {@code image}.
+	 *
+	 * @param image
+	 *            intensities, lower values are flooded first
+	 * @param labels
+	 *            seeds (non-zero) on input, basins on output
+	 * @param mask
+	 *            only pixels inside the mask are flooded, seeds outside the
+	 *            mask are ignored
+	 * @param shape
+	 *            connectivity, e.g. {@link DiamondShape} or
+	 *            {@link RectangleShape}
+	 * @param watershedLines
+	 *            if {@code true}, pixels that are adjacent to two different
+	 *            basins remain zero
+	 * @param compactness
+	 *            weight of the Euclidean distance to the seed pixel that is
+	 *            added to the intensity, {@code 0} for the standard watershed
+	 */
+	public static < T extends RealType< T >, L extends IntegerType< L >, B extends BooleanType< B > > void watershed(
+			final RandomAccessible< T > image,
+			final RandomAccessibleInterval< L > labels,
+			final RandomAccessible< B > mask,
+			final Shape shape,
+			final boolean watershedLines,
+			final double compactness )
+	{
+		final long[][] offsets = ConnectedComponentAnalysis.neighborhoodOffsets( labels, shape );
+		final Flood< T, L, B > flood = new Flood<>( image, labels, mask, labels, offsets, watershedLines, compactness );
+		flood.queueSeeds();
+		flood.run();
+	}
+
+	/**
+	 * Parallel version of
+	 * {@link #watershed(RandomAccessible, RandomAccessibleInterval, RandomAccessible, Shape, boolean, double)}.
+	 * Blocks of size {@code blockSize} are flooded independently from the
+	 * seeds inside each block. Basins that do not touch an internal block
+	 * face are final. All other basins are reset to their seeds, and the
+	 * reset pixels (and pixels that were not reached from any seed inside
+	 * their block) are flooded in a single reconciliation pass from the
+	 * adjacent final basins and seeds. The result may differ from the
+	 * sequential watershed where basins meet that were reset. In the
+	 * reconciliation pass, the compactness term is relative to the pixels
+	 * from which flooding is resumed.
+	 *
+	 * @param image
+	 *            intensities, lower values are flooded first
+	 * @param labels
+	 *            seeds (non-zero) on input, basins on output
+	 * @param mask
+	 *            only pixels inside the mask are flooded, seeds outside the
+	 *            mask are ignored
+	 * @param shape
+	 *            connectivity, e.g. {@link DiamondShape} or
+	 *            {@link RectangleShape}
+	 * @param watershedLines
+	 *            if {@code true}, pixels that are adjacent to two different
+	 *            basins remain zero
+	 * @param compactness
+	 *            weight of the Euclidean distance to the seed pixel that is
+	 *            added to the intensity, {@code 0} for the standard watershed
+	 * @param blockSize
+	 *            Size of blocks that are flooded independently.
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < T extends RealType< T >, L extends IntegerType< L >, B extends BooleanType< B > > void watershed(
+			final RandomAccessible< T > image,
+			final RandomAccessibleInterval< L > labels,
+			final RandomAccessible< B > mask,
+			final Shape shape,
+			final boolean watershedLines,
+			final double compactness,
+			final int[] blockSize,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		final long[][] offsets = ConnectedComponentAnalysis.neighborhoodOffsets( labels, shape );
+		final List< Interval > blocks = Grids.collectAllContainedIntervals( Intervals.minAsLongArray( labels ), Intervals.maxAsLongArray( labels ), blockSize );
+
+		ParallelizeOverBlocks.parallelizeAndWait(
+				ParallelizeOverBlocks.ofConsumer( block -> floodBlock( image, labels, mask, block, offsets, watershedLines, compactness ) ),
+				blocks,
+				es,
+				nTasks );
+
+		final Flood< T, L, B > flood = new Flood<>( image, labels, mask, labels, offsets, watershedLines, compactness );
+		flood.queueBoundarySeeds();
+		flood.run();
+	}
+
+	/**
+	 * Flood the index image of {@code labeling}. Label sets of seeds are
+	 * propagated to their basins, watershed lines are empty label sets.
+	 *
+	 * @see #watershed(RandomAccessible, RandomAccessibleInterval, Shape)
+	 */
+	public static < T extends RealType< T >, L, I extends IntegerType< I > > void watershed(
+			final RandomAccessible< T > image,
+			final ImgLabeling< L, I > labeling,
+			final Shape shape )
+	{
+		watershed( image, labeling.getIndexImg(), shape );
+	}
+
+	/**
+	 * Flood the index image of {@code labeling}. Label sets of seeds are
+	 * propagated to their basins, watershed lines are empty label sets.
+	 *
+	 * @see #watershed(RandomAccessible, RandomAccessibleInterval,
+	 *      RandomAccessible, Shape, boolean, double)
+	 */
+	public static < T extends RealType< T >, L, I extends IntegerType< I >, B extends BooleanType< B > > void watershed(
+			final RandomAccessible< T > image,
+			final ImgLabeling< L, I > labeling,
+			final RandomAccessible< B > mask,
+			final Shape shape,
+			final boolean watershedLines,
+			final double compactness )
+	{
+		watershed( image, labeling.getIndexImg(), mask, shape, watershedLines, compactness );
+	}
+
+	/**
+	 * Flood the index image of {@code labeling} in parallel. Label sets of
+	 * seeds are propagated to their basins, watershed lines are empty label
+	 * sets.
+	 *
+	 * @see #watershed(RandomAccessible, RandomAccessibleInterval,
+	 *      RandomAccessible, Shape, boolean, double, int[], ExecutorService,
+	 *      int)
+	 */
+	public static < T extends RealType< T >, L, I extends IntegerType< I >, B extends BooleanType< B > > void watershed(
+			final RandomAccessible< T > image,
+			final ImgLabeling< L, I > labeling,
+			final RandomAccessible< B > mask,
+			final Shape shape,
+			final boolean watershedLines,
+			final double compactness,
+			final int[] blockSize,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		watershed( image, labeling.getIndexImg(), mask, shape, watershedLines, compactness, blockSize, es, nTasks );
+	}
+
+	/**
+	 * Marker-controlled watershed for images that are too large to be
+	 * flooded sequentially. The connected components (with respect to
+	 * {@code shape}) of {@code markers} are the seeds. Each block of size
+	 * {@code blockSize} is flooded independently on the block expanded by
+	 * {@code halo}, from the marker components inside the expanded block,
+	 * and only the block itself is written into {@code labels}. Marker
+	 * components are labeled independently in each expanded block, too: a
+	 * marker pixel inside the halo of one block and inside another block is
+	 * a seed shared by both blocks, and their ids for it are merged with a
+	 * {@link LongHashMapUnionFind}. Finally, all basins are relabeled to 1, 2,
+	 * ..., N in parallel.
+	 * <p>
+	 * The result is identical to
+	 * {@link #watershed(RandomAccessible, RandomAccessibleInterval, Shape)}
+	 * with the marker components as seeds if the halo covers the entire
+	 * image, and it matches the global result wherever flooding of a block
+	 * does not depend on pixels outside of the halo, i.e. the halo should be
+	 * wider than the basins that reach into a block. Pixels of blocks that do
+	 * not contain any marker within the halo are not reached and remain zero.
+	 *
+	 * @param image
+	 *            intensities, lower values are flooded first
+	 * @param markers
+	 *            foreground pixels ({@code true}) are seeds
+	 * @param labels
+	 *            Output parameter to store basins. Intermediate labels are
+	 *            unique across blocks, so {@code labels} must be able to
+	 *            represent the number of pixels in {@code labels}.
+	 * @param shape
+	 *            connectivity of markers and basins, e.g.
+	 *            {@link DiamondShape} or {@link RectangleShape}
+	 * @param blockSize
+	 *            Size of blocks that are flooded independently.
+	 * @param halo
+	 *            Number of pixels by which each block is expanded in each
+	 *            dimension. Must be at least the radius of {@code shape} in
+	 *            each dimension, so that neighboring blocks see the marker
+	 *            pixels that connect their components.
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @throws IllegalArgumentException
+	 *             if {@code halo} is smaller than the radius of {@code shape}
+	 *             in any dimension
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < T extends RealType< T >, B extends BooleanType< B >, L extends IntegerType< L > > void tiledWatershed(
+			final RandomAccessible< T > image,
+			final RandomAccessible< B > markers,
+			final RandomAccessibleInterval< L > labels,
+			final Shape shape,
+			final int[] blockSize,
+			final long[] halo,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		final long[][] offsets = ConnectedComponentAnalysis.neighborhoodOffsets( labels, shape );
+		if ( halo.length != labels.numDimensions() )
+		{
+			throw new IllegalArgumentException( "Expected a halo for each of the " + labels.numDimensions() + " dimensions, got " + Arrays.toString( halo ) + "." );
+		}
+		for ( final long[] offset : offsets )
+		{
+			for ( int d = 0; d < halo.length; ++d )
+			{
+				if ( halo[ d ] < Math.abs( offset[ d ] ) )
+				{
+					throw new IllegalArgumentException( "Halo " + Arrays.toString( halo ) + " is smaller than the radius of the shape in dimension " + d + "." );
+				}
+			}
+		}
+		final List< Interval > blocks = Grids.collectAllContainedIntervals( Intervals.minAsLongArray( labels ), Intervals.maxAsLongArray( labels ), blockSize );
+
+		final List< Pair< long[], TLongArrayList > > tiles = ParallelizeOverBlocks.parallelizeAndWait(
+				block -> floodTile( image, markers, labels, block, halo, shape, offsets ),
+				blocks,
+				es,
+				nTasks );
+
+		// shared seeds are labeled by the block that contains them
+		final long[] min = Intervals.minAsLongArray( labels );
+		final long[] dims = Intervals.dimensionsAsLongArray( labels );
+		final long[] position = new long[ min.length ];
+		final RandomAccess< L > access = labels.randomAccess();
+		final List< long[] > blockLabels = new ArrayList<>();
+		final List< TLongArrayList > equivalences = new ArrayList<>();
+		for ( final Pair< long[], TLongArrayList > tile : tiles )
+		{
+			blockLabels.add( tile.getA() );
+			final TLongArrayList sharedSeeds = tile.getB();
+			final TLongArrayList pairs = new TLongArrayList( sharedSeeds.size() );
+			for ( int i = 0; i < sharedSeeds.size(); i += 2 )
+			{
+				IntervalIndexer.indexToPositionWithOffset( sharedSeeds.get( i ), dims, min, position );
+				access.setPosition( position );
+				pairs.add( sharedSeeds.get( i + 1 ) );
+				pairs.add( access.get().getIntegerLong() );
+			}
+			equivalences.add( pairs );
+		}
+		final TLongLongHashMap finalLabels = ConnectedComponentAnalysis.mergeEquivalences( blockLabels, equivalences );
+
+		ParallelizeOverBlocks.parallelizeAndWait(
+				ParallelizeOverBlocks.ofConsumer( block -> {
+					for ( final L label : Views.interval( labels, block ) )
+					{
+						final long id = label.getIntegerLong();
+						if ( id != 0 )
+						{
+							label.setInteger( finalLabels.get( id ) );
+						}
+					}
+				} ),
+				blocks,
+				es,
+				nTasks );
+	}
+
+	/**
+	 * Flood {@code block} expanded by {@code halo} from the connected
+	 * components of {@code markers} and write {@code block} into
+	 * {@code labels}.
+	 *
+	 * @return ids of all marker components in the expanded block, and pairs
+	 *         of index (in {@code labels}) and id of all marker pixels in the
+	 *         halo
+	 */
+	private static < T extends RealType< T >, B extends BooleanType< B >, L extends IntegerType< L > > Pair< long[], TLongArrayList > floodTile(
+			final RandomAccessible< T > image,
+			final RandomAccessible< B > markers,
+			final RandomAccessibleInterval< L > labels,
+			final Interval block,
+			final long[] halo,
+			final Shape shape,
+			final long[][] offsets )
+	{
+		final Interval tile = Intervals.intersect( Intervals.expand( block, halo ), labels );
+		final RandomAccessibleInterval< UnsignedLongType > tileLabels = Views.translate( ArrayImgs.unsignedLongs( Intervals.dimensionsAsLongArray( tile ) ), Intervals.minAsLongArray( tile ) );
+		final long[] ids = ConnectedComponentAnalysis.labelBlock( Views.interval( markers, tile ), tileLabels, labels, shape );
+
+		final Flood< T, UnsignedLongType, BitType > flood = new Flood<>( image, tileLabels, allTrue( labels ), tile, offsets, false, 0.0 );
+		flood.queueSeeds();
+		flood.run();
+
+		final TLongArrayList sharedSeeds = new TLongArrayList();
+		final RandomAccess< L > access = labels.randomAccess( block );
+		final Cursor< UnsignedLongType > t = Views.flatIterable( tileLabels ).localizingCursor();
+		final Cursor< B > m = Views.flatIterable( Views.interval( markers, tile ) ).cursor();
+		while ( t.hasNext() )
+		{
+			final long label = t.next().get();
+			final boolean isMarker = m.next().get();
+			if ( Intervals.contains( block, t ) )
+			{
+				access.setPosition( t );
+				access.get().setInteger( label );
+			}
+			else if ( isMarker )
+			{
+				sharedSeeds.add( IntervalIndexer.positionToIndexForInterval( t, labels ) );
+				sharedSeeds.add( label );
+			}
+		}
+		return new ValuePair<>( ids, sharedSeeds );
+	}
+
+	/**
+	 * Flood {@code block} independently and reset all basins that touch an
+	 * internal face of {@code block} to their seeds.
+	 */
+	private static < T extends RealType< T >, L extends IntegerType< L >, B extends BooleanType< B > > void floodBlock(
+			final RandomAccessible< T > image,
+			final RandomAccessibleInterval< L > labels,
+			final RandomAccessible< B > mask,
+			final Interval block,
+			final long[][] offsets,
+			final boolean watershedLines,
+			final double compactness )
+	{
+		final int nDim = block.numDimensions();
+		final RandomAccessibleInterval< L > blockLabels = Views.interval( labels, block );
+
+		final BitSet seeds = new BitSet();
+		int index = 0;
+		for ( final L label : Views.flatIterable( blockLabels ) )
+		{
+			if ( label.getIntegerLong() != 0 )
+			{
+				seeds.set( index );
+			}
+			++index;
+		}
+
+		final Flood< T, L, B > flood = new Flood<>( image, labels, mask, block, offsets, watershedLines, compactness );
+		flood.queueSeeds();
+		flood.run();
+
+		// basins that touch an internal block face may extend into other
+		// blocks
+		final long[] radius = new long[ nDim ];
+		for ( final long[] offset : offsets )
+		{
+			for ( int d = 0; d < nDim; ++d )
+			{
+				radius[ d ] = Math.max( radius[ d ], Math.abs( offset[ d ] ) );
+			}
+		}
+		final TLongHashSet faceLabels = new TLongHashSet();
+		final Cursor< L > c = Views.flatIterable( blockLabels ).localizingCursor();
+		while ( c.hasNext() )
+		{
+			final long label = c.next().getIntegerLong();
+			if ( label == 0 || faceLabels.contains( label ) )
+			{
+				continue;
+			}
+			for ( int d = 0; d < nDim; ++d )
+			{
+				final long p = c.getLongPosition( d );
+				if ( p < block.min( d ) + radius[ d ] && block.min( d ) > labels.min( d ) || p > block.max( d ) - radius[ d ] && block.max( d ) < labels.max( d ) )
+				{
+					faceLabels.add( label );
+					break;
+				}
+			}
+		}
+
+		index = 0;
+		for ( final L label : Views.flatIterable( blockLabels ) )
+		{
+			if ( !seeds.get( index ) && faceLabels.contains( label.getIntegerLong() ) )
+			{
+				label.setZero();
+			}
+			++index;
+		}
+	}
+
+	private static < L > RandomAccessible< BitType > allTrue( final RandomAccessibleInterval< L > labels )
+	{
+		return ConstantUtils.constantRandomAccessible( new BitType( true ), labels.numDimensions() );
+	}
+
+	/**
+	 * Flooding of an interval. Indices of pixels are relative to the
+	 * interval.
+	 */
+	private static final class Flood< T extends RealType< T >, L extends IntegerType< L >, B extends BooleanType< B > >
+	{
+		private final RandomAccessible< L > labelsSource;
+
+		private final RandomAccess< T > image;
+
+		private final RandomAccess< L > labels;
+
+		private final RandomAccess< L > neighborLabels;
+
+		private final RandomAccess< B > mask;
+
+		private final Interval interval;
+
+		private final long[] min;
+
+		private final long[] max;
+
+		private final long[] dims;
+
+		private final long[][] offsets;
+
+		private final long[] steps;
+
+		private final double compactness;
+
+		private final TLongHashSet lines;
+
+		private final TLongLongHashMap origins;
+
+		private final PixelQueue queue;
+
+		private final long[] position;
+
+		private final long[] neighbor;
+
+		private final long[] other;
+
+		private Flood(
+				final RandomAccessible< T > image,
+				final RandomAccessible< L > labels,
+				final RandomAccessible< B > mask,
+				final Interval interval,
+				final long[][] offsets,
+				final boolean watershedLines,
+				final double compactness )
+		{
+			final int nDim = interval.numDimensions();
+			this.labelsSource = labels;
+			this.image = image.randomAccess( interval );
+			this.labels = labels.randomAccess( interval );
+			this.neighborLabels = labels.randomAccess( interval );
+			this.mask = mask.randomAccess( interval );
+			this.interval = interval;
+			this.min = Intervals.minAsLongArray( interval );
+			this.max = Intervals.maxAsLongArray( interval );
+			this.dims = Intervals.dimensionsAsLongArray( interval );
+			this.offsets = offsets;
+			this.steps = new long[ offsets.length ];
+			for ( int i = 0; i < offsets.length; ++i )
+			{
+				steps[ i ] = IntervalIndexer.positionToIndex( offsets[ i ], dims );
+			}
+			this.compactness = compactness;
+			this.lines = watershedLines ? new TLongHashSet() : null;
+			this.origins = compactness > 0 ? new TLongLongHashMap() : null;
+			this.queue = compactness > 0 ? new PixelQueue.BinaryHeap() : PixelQueue.forImage( Views.interval( image, interval ) );
+			this.position = new long[ nDim ];
+			this.neighbor = new long[ nDim ];
+			this.other = new long[ nDim ];
+		}
+
+		/**
+		 * Queue all labeled pixels inside the mask in flat iteration order.
+		 */
+		private void queueSeeds()
+		{
+			final Cursor< L > c = Views.flatIterable( Views.interval( labelsSource, interval ) ).localizingCursor();
+			for ( long index = 0; c.hasNext(); ++index )
+			{
+				if ( c.next().getIntegerLong() != 0 )
+				{
+					c.localize( position );
+					mask.setPosition( position );
+					if ( mask.get().get() )
+					{
+						push( index, index, position );
+					}
+				}
+			}
+		}
+
+		/**
+		 * Queue all labeled pixels inside the mask that are adjacent to an
+		 * unlabeled pixel inside the mask.
+		 */
+		private void queueBoundarySeeds()
+		{
+			final TLongHashSet queued = new TLongHashSet();
+			final Cursor< L > c = Views.flatIterable( Views.interval( labelsSource, interval ) ).localizingCursor();
+			for ( long index = 0; c.hasNext(); ++index )
+			{
+				if ( c.next().getIntegerLong() != 0 )
+				{
+					continue;
+				}
+				c.localize( position );
+				mask.setPosition( position );
+				if ( !mask.get().get() )
+				{
+					continue;
+				}
+				for ( int i = 0; i < offsets.length; ++i )
+				{
+					final long n = index + steps[ i ];
+					if ( !setNeighbor( position, offsets[ i ], neighbor ) || queued.contains( n ) )
+					{
+						continue;
+					}
+					neighborLabels.setPosition( neighbor );
+					mask.setPosition( neighbor );
+					if ( neighborLabels.get().getIntegerLong() != 0 && mask.get().get() )
+					{
+						queued.add( n );
+						push( n, n, neighbor );
+					}
+				}
+			}
+		}
+
+		private void run()
+		{
+			while ( !queue.isEmpty() )
+			{
+				final long index = queue.pop();
+				IntervalIndexer.indexToPositionWithOffset( index, dims, min, position );
+				labels.setPosition( position );
+				final long label = labels.get().getIntegerLong();
+				final long origin = origins == null ? index : origins.get( index );
+				for ( int i = 0; i < offsets.length; ++i )
+				{
+					if ( !setNeighbor( position, offsets[ i ], neighbor ) )
+					{
+						continue;
+					}
+					final long n = index + steps[ i ];
+					if ( lines != null && lines.contains( n ) )
+					{
+						continue;
+					}
+					labels.setPosition( neighbor );
+					final L neighborLabel = labels.get();
+					if ( neighborLabel.getIntegerLong() != 0 )
+					{
+						continue;
+					}
+					mask.setPosition( neighbor );
+					if ( !mask.get().get() )
+					{
+						continue;
+					}
+					if ( lines != null && isAdjacentToOtherLabel( neighbor, label ) )
+					{
+						lines.add( n );
+						continue;
+					}
+					neighborLabel.setInteger( label );
+					push( n, origin, neighbor );
+				}
+			}
+		}
+
+		private void push( final long index, final long origin, final long[] pixel )
+		{
+			image.setPosition( pixel );
+			double priority = image.get().getRealDouble();
+			if ( origins != null )
+			{
+				origins.put( index, origin );
+				IntervalIndexer.indexToPositionWithOffset( origin, dims, min, other );
+				double distance = 0;
+				for ( int d = 0; d < pixel.length; ++d )
+				{
+					final double diff = pixel[ d ] - other[ d ];
+					distance += diff * diff;
+				}
+				priority += compactness * Math.sqrt( distance );
+			}
+			queue.push( index, priority );
+		}
+
+		private boolean isAdjacentToOtherLabel( final long[] pixel, final long label )
+		{
+			for ( final long[] offset : offsets )
+			{
+				if ( setNeighbor( pixel, offset, other ) )
+				{
+					neighborLabels.setPosition( other );
+					final long otherLabel = neighborLabels.get().getIntegerLong();
+					if ( otherLabel != 0 && otherLabel != label )
+					{
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		private boolean setNeighbor( final long[] pixel, final long[] offset, final long[] target )
+		{
+			for ( int d = 0; d < pixel.length; ++d )
+			{
+				target[ d ] = pixel[ d ] + offset[ d ];
+				if ( target[ d ] < min[ d ] || target[ d ] > max[ d ] )
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
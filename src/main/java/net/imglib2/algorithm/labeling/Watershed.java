@@ -35,7 +35,6 @@
 package net.imglib2.algorithm.labeling;
 
 import java.util.List;
-import java.util.PriorityQueue;
 
 import net.imglib2.Cursor;
 import net.imglib2.RandomAccessibleInterval;
@@ -50,6 +49,7 @@ import net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
 import net.imglib2.outofbounds.OutOfBoundsFactory;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.IntervalIndexer;
 import net.imglib2.view.Views;
 
 /**
@@ -73,6 +73,11 @@ import net.imglib2.view.Views;
 public class Watershed< T extends RealType< T >, L extends Comparable< L >> implements OutputAlgorithm< Labeling< L >>
 {
 
+	/**
+	 * @deprecated pixels are queued as flat indices in primitive priority
+	 *             queues, this class is not used anymore.
+	 */
+	@Deprecated
 	protected static class PixelIntensity< U extends Comparable< U >> implements Comparable< PixelIntensity< U >>
 	{
 		protected final long index;
@@ -194,6 +199,10 @@ public class Watershed< T extends RealType< T >, L extends Comparable< L >> impl
 	 * 
 	 * This implementation breaks ties by assigning the pixel to the label that
 	 * occupied an adjacent pixel first.
+	 * 
+	 * Pixels are queued by their flat index: integer valued images with a
+	 * small range of intensities use a hierarchical queue with one FIFO bucket
+	 * per intensity, all other images a primitive binary heap.
 	 */
 	@Override
 	public boolean process()
@@ -225,14 +234,13 @@ public class Watershed< T extends RealType< T >, L extends Comparable< L >> impl
 		/*
 		 * Start by loading up a priority queue with the seeded pixels
 		 */
-		final PriorityQueue< PixelIntensity< L >> pq = new PriorityQueue< PixelIntensity< L >>();
+		final PixelQueue pq = PixelQueue.forImage( image );
 		final Cursor< LabelingType< L >> c = seeds.localizingCursor();
 
 		final long[] dimensions = new long[ image.numDimensions() ];
 		output.dimensions( dimensions );
 		final long[] position = new long[ image.numDimensions() ];
 		final long[] destPosition = new long[ image.numDimensions() ];
-		long age = 0;
 
 		while ( c.hasNext() )
 		{
@@ -252,7 +260,7 @@ public class Watershed< T extends RealType< T >, L extends Comparable< L >> impl
 			l = tDest.intern( l );
 			tDest.setLabeling( l );
 			final double intensity = imageAccess.get().getRealDouble();
-			pq.add( new PixelIntensity< L >( position, dimensions, intensity, age++, l ) );
+			pq.push( IntervalIndexer.positionToIndex( position, dimensions ), intensity );
 		}
 		/*
 		 * Rework the structuring element into a series of consecutive offsets
@@ -278,10 +286,9 @@ public class Watershed< T extends RealType< T >, L extends Comparable< L >> impl
 		 */
 		while ( !pq.isEmpty() )
 		{
-			final PixelIntensity< L > currentPI = pq.remove();
-			final List< L > l = currentPI.getLabeling();
-			currentPI.getPosition( position, dimensions );
+			IntervalIndexer.indexToPosition( pq.pop(), dimensions, position );
 			outputAccess.setPosition( position );
+			final List< L > l = outputAccess.get().getLabeling();
 			imageAccess.setPosition( position );
 			for ( final long[] offset : strelMoves )
 			{
@@ -297,7 +304,7 @@ public class Watershed< T extends RealType< T >, L extends Comparable< L >> impl
 				outputLabelingType.setLabeling( l );
 				final double intensity = imageAccess.get().getRealDouble();
 				outputAccess.localize( destPosition );
-				pq.add( new PixelIntensity< L >( destPosition, dimensions, intensity, age++, l ) );
+				pq.push( IntervalIndexer.positionToIndex( destPosition, dimensions ), intensity );
 			}
 		}
 		return true;
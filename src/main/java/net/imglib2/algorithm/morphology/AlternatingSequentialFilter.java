@@ -0,0 +1,204 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.morphology;
+
+import java.util.List;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.type.Type;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * Alternating sequential filters for ImgLib2.
+ * <p>
+ * An alternating sequential filter applies openings and closings with
+ * structuring elements of increasing size, in turn:
+ * {@code close_n( open_n( ... close_1( open_1( f ) ) ) )} for
+ * {@link #openClose(Img, List, int)}, and the dual for
+ * {@link #closeOpen(Img, List, int)}. The structuring elements are given as a
+ * list of {@link Shape}s, one per size, in increasing order, for instance
+ * {@code new HyperSphereShape( i )} for {@code i = 1..n}.
+ * <p>
+ * Chaining {@link Opening} and {@link Closing} allocates two images per
+ * operation. Here, the 4n erosions and dilations ping-pong between two
+ * buffers allocated once.
+ */
+public class AlternatingSequentialFilter
+{
+
+	/**
+	 * Performs the alternating sequential filter starting with an opening, on
+	 * a {@link RealType} {@link Img}.
+	 *
+	 * @param source
+	 *            the source image.
+	 * @param strels
+	 *            the structuring elements, one {@link Shape} per size, in
+	 *            increasing order.
+	 * @param numThreads
+	 *            the number of threads to use for the calculation.
+	 * @param <T>
+	 *            the type of the source image and the result. Must be a
+	 *            sub-type of {@code T extends RealType}.
+	 * @return a new {@link Img}, of same dimensions than the source. If the
+	 *         list is empty, the source image is returned.
+	 */
+	public static < T extends RealType< T > > Img< T > openClose( final Img< T > source, final List< ? extends Shape > strels, final int numThreads )
+	{
+		final T minVal = MorphologyUtils.createVariable( source, source );
+		minVal.setReal( minVal.getMinValue() );
+		final T maxVal = minVal.createVariable();
+		maxVal.setReal( maxVal.getMaxValue() );
+		return filter( source, strels, minVal, maxVal, true, numThreads );
+	}
+
+	/**
+	 * Performs the alternating sequential filter starting with an opening, on
+	 * an {@link Img} of {@link Comparable}.
+	 *
+	 * @param source
+	 *            the source image.
+	 * @param strels
+	 *            the structuring elements, one {@link Shape} per size, in
+	 *            increasing order.
+	 * @param minVal
+	 *            a T containing set to a value smaller than any of the values
+	 *            in the source {@link Img} (against {@link Comparable}).
+	 * @param maxVal
+	 *            a T containing set to a value larger than any of the values in
+	 *            the source {@link Img} (against {@link Comparable}).
+	 * @param numThreads
+	 *            the number of threads to use for the calculation.
+	 * @param <T>
+	 *            the type of the source image and the result. Must be a
+	 *            sub-type of {@code T extends Comparable & Type}.
+	 * @return a new {@link Img}, of same dimensions than the source. If the
+	 *         list is empty, the source image is returned.
+	 */
+	public static < T extends Type< T > & Comparable< T > > Img< T > openClose( final Img< T > source, final List< ? extends Shape > strels, final T minVal, final T maxVal, final int numThreads )
+	{
+		return filter( source, strels, minVal, maxVal, true, numThreads );
+	}
+
+	/**
+	 * Performs the alternating sequential filter starting with a closing, on
+	 * a {@link RealType} {@link Img}.
+	 *
+	 * @param source
+	 *            the source image.
+	 * @param strels
+	 *            the structuring elements, one {@link Shape} per size, in
+	 *            increasing order.
+	 * @param numThreads
+	 *            the number of threads to use for the calculation.
+	 * @param <T>
+	 *            the type of the source image and the result. Must be a
+	 *            sub-type of {@code T extends RealType}.
+	 * @return a new {@link Img}, of same dimensions than the source. If the
+	 *         list is empty, the source image is returned.
+	 */
+	public static < T extends RealType< T > > Img< T > closeOpen( final Img< T > source, final List< ? extends Shape > strels, final int numThreads )
+	{
+		final T minVal = MorphologyUtils.createVariable( source, source );
+		minVal.setReal( minVal.getMinValue() );
+		final T maxVal = minVal.createVariable();
+		maxVal.setReal( maxVal.getMaxValue() );
+		return filter( source, strels, minVal, maxVal, false, numThreads );
+	}
+
+	/**
+	 * Performs the alternating sequential filter starting with a closing, on
+	 * an {@link Img} of {@link Comparable}.
+	 *
+	 * @param source
+	 *            the source image.
+	 * @param strels
+	 *            the structuring elements, one {@link Shape} per size, in
+	 *            increasing order.
+	 * @param minVal
+	 *            a T containing set to a value smaller than any of the values
+	 *            in the source {@link Img} (against {@link Comparable}).
+	 * @param maxVal
+	 *            a T containing set to a value larger than any of the values in
+	 *            the source {@link Img} (against {@link Comparable}).
+	 * @param numThreads
+	 *            the number of threads to use for the calculation.
+	 * @param <T>
+	 *            the type of the source image and the result. Must be a
+	 *            sub-type of {@code T extends Comparable & Type}.
+	 * @return a new {@link Img}, of same dimensions than the source. If the
+	 *         list is empty, the source image is returned.
+	 */
+	public static < T extends Type< T > & Comparable< T > > Img< T > closeOpen( final Img< T > source, final List< ? extends Shape > strels, final T minVal, final T maxVal, final int numThreads )
+	{
+		return filter( source, strels, minVal, maxVal, false, numThreads );
+	}
+
+	private static < T extends Type< T > & Comparable< T > > Img< T > filter( final Img< T > source, final List< ? extends Shape > strels, final T minVal, final T maxVal, final boolean openFirst, final int numThreads )
+	{
+		if ( strels.isEmpty() )
+		{
+			return source;
+		}
+
+		// opening then closing: erode, dilate, dilate, erode
+		// closing then opening: dilate, erode, erode, dilate
+		final boolean[] erodeSteps = openFirst ? new boolean[] { true, false, false, true } : new boolean[] { false, true, true, false };
+
+		final Img< T > a = source.factory().create( source );
+		final Img< T > b = source.factory().create( source );
+		RandomAccessibleInterval< T > current = source;
+		Img< T > next = a;
+		for ( final Shape strel : strels )
+		{
+			for ( final boolean erode : erodeSteps )
+			{
+				if ( erode )
+				{
+					Erosion.erode( Views.extendValue( current, maxVal ), next, strel, maxVal, numThreads );
+				}
+				else
+				{
+					Dilation.dilate( Views.extendValue( current, minVal ), next, strel, minVal, numThreads );
+				}
+				current = next;
+				next = next == a ? b : a;
+			}
+		}
+		return next == a ? b : a;
+	}
+}
@@ -89,11 +89,7 @@ public class Dilation
 	 */
 	public static < T extends RealType< T > > Img< T > dilate( final Img< T > source, final List< ? extends Shape > strels, final int numThreads )
 	{
-		Img< T > target = source;
-		for ( final Shape strel : strels )
-		{
-			target = dilateFull( target, strel, numThreads );
-		}
+		final Img< T > target = dilateFull( source, strels, numThreads );
 		return MorphologyUtils.copyCropped( target, source, numThreads );
 	}
 
@@ -140,11 +136,7 @@ public class Dilation
 	 */
 	public static < T extends Type< T > & Comparable< T > > Img< T > dilate( final Img< T > source, final List< ? extends Shape > strels, final T minVal, final int numThreads )
 	{
-		Img< T > target = source;
-		for ( final Shape strel : strels )
-		{
-			target = dilateFull( target, strel, minVal, numThreads );
-		}
+		final Img< T > target = dilateFull( source, strels, minVal, numThreads );
 		return MorphologyUtils.copyCropped( target, source, numThreads );
 	}
 
@@ -495,6 +487,11 @@ public class Dilation
 							@SuppressWarnings( "unchecked" )
 							final Cursor< BitType > nc = ( Cursor< BitType > ) tmp3;
 
+							/*
+							 * The target is not necessarily fresh: full
+							 * dilations ping-pong between two buffers.
+							 */
+							cursorDilated.get().set( false );
 							while ( nc.hasNext() )
 							{
 								nc.fwd();
@@ -610,12 +607,13 @@ public class Dilation
 	 */
 	public static < T extends RealType< T > > Img< T > dilateFull( final Img< T > source, final List< ? extends Shape > strels, final int numThreads )
 	{
-		Img< T > target = source;
-		for ( final Shape strel : strels )
+		if ( strels.isEmpty() )
 		{
-			target = dilateFull( target, strel, numThreads );
+			return source;
 		}
-		return target;
+		final T minVal = MorphologyUtils.createVariable( source, source );
+		minVal.setReal( minVal.getMinValue() );
+		return MorphologyUtils.applyFull( source, strels, minVal, ( s, t, strel ) -> dilate( s, t, strel, numThreads ), numThreads );
 	}
 
 	/**
@@ -674,12 +672,11 @@ public class Dilation
 	 */
 	public static < T extends Type< T > & Comparable< T > > Img< T > dilateFull( final Img< T > source, final List< ? extends Shape > strels, final T minVal, final int numThreads )
 	{
-		Img< T > target = source;
-		for ( final Shape strel : strels )
+		if ( strels.isEmpty() )
 		{
-			target = dilateFull( target, strel, minVal, numThreads );
+			return source;
 		}
-		return target;
+		return MorphologyUtils.applyFull( source, strels, minVal, ( s, t, strel ) -> dilate( s, t, strel, minVal, numThreads ), numThreads );
 	}
 
 	/**
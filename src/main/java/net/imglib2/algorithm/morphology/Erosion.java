@@ -89,11 +89,7 @@ public class Erosion
 	 */
 	public static < T extends RealType< T > > Img< T > erode( final Img< T > source, final List< ? extends Shape > strels, final int numThreads )
 	{
-		Img< T > target = source;
-		for ( final Shape strel : strels )
-		{
-			target = erodeFull( target, strel, numThreads );
-		}
+		final Img< T > target = erodeFull( source, strels, numThreads );
 		return MorphologyUtils.copyCropped( target, source, numThreads );
 	}
 
@@ -140,11 +136,7 @@ public class Erosion
 	 */
 	public static < T extends Type< T > & Comparable< T > > Img< T > erode( final Img< T > source, final List< ? extends Shape > strels, final T maxVal, final int numThreads )
 	{
-		Img< T > target = source;
-		for ( final Shape strel : strels )
-		{
-			target = erodeFull( target, strel, maxVal, numThreads );
-		}
+		final Img< T > target = erodeFull( source, strels, maxVal, numThreads );
 		return MorphologyUtils.copyCropped( target, source, numThreads );
 	}
 
@@ -610,12 +602,13 @@ public class Erosion
 	 */
 	public static < T extends RealType< T > > Img< T > erodeFull( final Img< T > source, final List< ? extends Shape > strels, final int numThreads )
 	{
-		Img< T > target = source;
-		for ( final Shape strel : strels )
+		if ( strels.isEmpty() )
 		{
-			target = erodeFull( target, strel, numThreads );
+			return source;
 		}
-		return target;
+		final T maxVal = MorphologyUtils.createVariable( source, source );
+		maxVal.setReal( maxVal.getMaxValue() );
+		return MorphologyUtils.applyFull( source, strels, maxVal, ( s, t, strel ) -> erode( s, t, strel, numThreads ), numThreads );
 	}
 
 	/**
@@ -674,12 +667,11 @@ public class Erosion
 	 */
 	public static < T extends Type< T > & Comparable< T > > Img< T > erodeFull( final Img< T > source, final List< ? extends Shape > strels, final T maxVal, final int numThreads )
 	{
-		Img< T > target = source;
-		for ( final Shape strel : strels )
+		if ( strels.isEmpty() )
 		{
-			target = erodeFull( target, strel, maxVal, numThreads );
+			return source;
 		}
-		return target;
+		return MorphologyUtils.applyFull( source, strels, maxVal, ( s, t, strel ) -> erode( s, t, strel, maxVal, numThreads ), numThreads );
 	}
 
 	/**
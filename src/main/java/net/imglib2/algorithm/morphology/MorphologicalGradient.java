@@ -0,0 +1,246 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.morphology;
+
+import java.util.Vector;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.type.Type;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.operators.Sub;
+import net.imglib2.view.Views;
+
+/**
+ * Morphological gradient and morphological Laplacian for ImgLib2, computed in
+ * a single sweep over the neighborhoods.
+ * <p>
+ * The morphological gradient is {@code dilate( f ) - erode( f )}, and the
+ * morphological Laplacian is
+ * {@code ( dilate( f ) - f ) - ( f - erode( f ) )}. Instead of computing
+ * the dilation and the erosion separately and then subtracting them, the
+ * minimum and the maximum of each neighborhood are found in the same
+ * traversal, which halves the number of neighborhood visits and avoids the
+ * intermediate images.
+ * <p>
+ * The minimum and maximum are initialized with the first value of each
+ * neighborhood, so no minimal or maximal value needs to be provided. The
+ * structuring element must therefore not be empty.
+ */
+public class MorphologicalGradient
+{
+
+	/**
+	 * Computes the morphological gradient of an {@link Img}, using a
+	 * {@link Shape} as a flat structuring element.
+	 * <p>
+	 * The result image has the same dimensions that of the source image. The
+	 * source is extended by repeating its border pixels, which gives the same
+	 * result as ignoring out-of-bounds pixels for structuring elements that
+	 * are convex and symmetric along each axis, such as
+	 * {@link net.imglib2.algorithm.neighborhood.RectangleShape},
+	 * {@link net.imglib2.algorithm.neighborhood.DiamondShape} and
+	 * {@link net.imglib2.algorithm.neighborhood.HyperSphereShape}.
+	 *
+	 * @param source
+	 *            the source image.
+	 * @param strel
+	 *            the structuring element, as a {@link Shape}.
+	 * @param numThreads
+	 *            the number of threads to use for the calculation.
+	 * @param <T>
+	 *            the type of the source image and the result. Must be a
+	 *            sub-type of {@code T extends Comparable & Sub}.
+	 * @return a new {@link Img}, of same dimensions than the source.
+	 */
+	public static < T extends Type< T > & Comparable< T > & Sub< T > > Img< T > gradient( final Img< T > source, final Shape strel, final int numThreads )
+	{
+		final Img< T > target = source.factory().create( source );
+		gradient( Views.extendBorder( source ), target, strel, numThreads );
+		return target;
+	}
+
+	/**
+	 * Computes the morphological gradient of a source {@link RandomAccessible},
+	 * using a {@link Shape} as a flat structuring element, and writes the
+	 * result on a specified target which must be an {@link IterableInterval}.
+	 * <p>
+	 * <b>Careful: Target must point to a different structure than source.</b>
+	 * In place operation will not work but will not generate an error.
+	 * <p>
+	 * It is the caller responsibility to ensure that the source is sufficiently
+	 * padded to properly cover the target range plus the shape size. See
+	 * <i>e.g.</i> {@link Views#extendBorder(RandomAccessibleInterval)}.
+	 *
+	 * @param source
+	 *            the source {@link RandomAccessible}, must be sufficiently
+	 *            padded.
+	 * @param target
+	 *            the target image.
+	 * @param strel
+	 *            the structuring element, as a {@link Shape}.
+	 * @param numThreads
+	 *            the number of threads to use for the calculation.
+	 * @param <T>
+	 *            the type of the source image and the result. Must be a
+	 *            sub-type of {@code T extends Comparable & Sub}.
+	 */
+	public static < T extends Type< T > & Comparable< T > & Sub< T > > void gradient( final RandomAccessible< T > source, final IterableInterval< T > target, final Shape strel, final int numThreads )
+	{
+		minMax( source, target, strel, false, ( center, min, max, t ) -> {
+			t.set( max );
+			t.sub( min );
+		}, numThreads );
+	}
+
+	/**
+	 * Computes the morphological Laplacian of a source
+	 * {@link RandomAccessible}, using a {@link Shape} as a flat structuring
+	 * element, and writes the result on a specified target which must be an
+	 * {@link IterableInterval}.
+	 * <p>
+	 * The Laplacian is negative where the source is closer to its local
+	 * maximum than to its local minimum, so the target should be of a signed
+	 * type.
+	 * <p>
+	 * It is the caller responsibility to ensure that the source is sufficiently
+	 * padded to properly cover the target range plus the shape size. See
+	 * <i>e.g.</i> {@link Views#extendBorder(RandomAccessibleInterval)}.
+	 *
+	 * @param source
+	 *            the source {@link RandomAccessible}, must be sufficiently
+	 *            padded.
+	 * @param target
+	 *            the target image.
+	 * @param strel
+	 *            the structuring element, as a {@link Shape}.
+	 * @param numThreads
+	 *            the number of threads to use for the calculation.
+	 * @param <T>
+	 *            the type of the source image.
+	 * @param <U>
+	 *            the type of the result.
+	 */
+	public static < T extends RealType< T >, U extends RealType< U > > void laplacian( final RandomAccessible< T > source, final IterableInterval< U > target, final Shape strel, final int numThreads )
+	{
+		minMax( source, target, strel, true, ( center, min, max, t ) -> {
+			t.setReal( max.getRealDouble() + min.getRealDouble() - 2 * center.getRealDouble() );
+		}, numThreads );
+	}
+
+	/**
+	 * Combines the value at the center, the minimum and the maximum of a
+	 * neighborhood into a target pixel.
+	 */
+	private static interface MinMaxCombiner< T, U >
+	{
+		void combine( T center, T min, T max, U target );
+	}
+
+	private static < T extends Type< T > & Comparable< T >, U > void minMax( final RandomAccessible< T > source, final IterableInterval< U > target, final Shape strel, final boolean needsCenter, final MinMaxCombiner< T, U > combiner, int numThreads )
+	{
+		numThreads = Math.max( 1, numThreads );
+
+		final RandomAccessible< Neighborhood< T > > accessible = strel.neighborhoodsRandomAccessible( source );
+
+		final Vector< Chunk > chunks = SimpleMultiThreading.divideIntoChunks( target.size(), numThreads );
+		final Thread[] threads = SimpleMultiThreading.newThreads( numThreads );
+		for ( int i = 0; i < threads.length; i++ )
+		{
+			final Chunk chunk = chunks.get( i );
+			threads[ i ] = new Thread( "Morphology min-max thread " + i )
+			{
+				@Override
+				public void run()
+				{
+					final RandomAccess< Neighborhood< T > > randomAccess = accessible.randomAccess( target );
+					final RandomAccess< T > centerAccess = needsCenter ? source.randomAccess( target ) : null;
+					final Cursor< U > cursor = target.localizingCursor();
+					cursor.jumpFwd( chunk.getStartPosition() );
+
+					final T min = MorphologyUtils.createVariable( source, target );
+					final T max = min.createVariable();
+					for ( long steps = 0; steps < chunk.getLoopSize(); steps++ )
+					{
+						cursor.fwd();
+						randomAccess.setPosition( cursor );
+						final Cursor< T > nc = randomAccess.get().cursor();
+
+						/*
+						 * Look for min and max in the neighborhood.
+						 */
+
+						final T first = nc.next();
+						min.set( first );
+						max.set( first );
+						while ( nc.hasNext() )
+						{
+							final T val = nc.next();
+							if ( val.compareTo( min ) < 0 )
+							{
+								min.set( val );
+							}
+							else if ( val.compareTo( max ) > 0 )
+							{
+								max.set( val );
+							}
+						}
+
+						final T center;
+						if ( needsCenter )
+						{
+							centerAccess.setPosition( cursor );
+							center = centerAccess.get();
+						}
+						else
+						{
+							center = null;
+						}
+						combiner.combine( center, min, max, cursor.get() );
+					}
+				}
+			};
+		}
+
+		SimpleMultiThreading.startAndJoin( threads );
+	}
+}
@@ -33,10 +33,13 @@
  */
 package net.imglib2.algorithm.morphology;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 
 import net.imglib2.Cursor;
 import net.imglib2.EuclideanSpace;
+import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
@@ -142,6 +145,94 @@ public class MorphologyUtils
 		return new long[][] { targetDims, offset };
 	}
 
+	/**
+	 * A morphological operation with a flat structuring element, that reads
+	 * from {@code source} and writes the result over {@code target}.
+	 */
+	interface FullOperation< T >
+	{
+		void apply( RandomAccessible< T > source, IterableInterval< T > target, Shape strel );
+	}
+
+	/**
+	 * Applies a 'full' morphological operation for each structuring element of
+	 * a list, in order. Instead of allocating an enlarged image for each
+	 * structuring element, two buffers are sized once for the result of the
+	 * whole list, and the operation ping-pongs between them, each step writing
+	 * only the region covered so far.
+	 *
+	 * @param source
+	 *            the source image.
+	 * @param strels
+	 *            the structuring element as a list of {@link Shape}s. Must not
+	 *            be empty.
+	 * @param borderValue
+	 *            the value of pixels outside the source, that is the neutral
+	 *            element of the operation.
+	 * @param operation
+	 *            the operation to apply for each structuring element.
+	 * @param numThreads
+	 *            the number of threads to use for the copy of the source.
+	 * @return a new {@link Img}, of the dimensions of the full result.
+	 */
+	static < T extends Type< T > > Img< T > applyFull( final Img< T > source, final List< ? extends Shape > strels, final T borderValue, final FullOperation< T > operation, final int numThreads )
+	{
+		final int n = source.numDimensions();
+		final long[][] offsets = new long[ strels.size() ][];
+		final long[][] growths = new long[ strels.size() ][];
+		final long[] totalOffset = new long[ n ];
+		final long[] targetDims = Intervals.dimensionsAsLongArray( source );
+		for ( int i = 0; i < strels.size(); i++ )
+		{
+			final long[][] dimensionsAndOffset = computeTargetImageDimensionsAndOffset( source, strels.get( i ) );
+			offsets[ i ] = dimensionsAndOffset[ 1 ];
+			growths[ i ] = new long[ n ];
+			for ( int d = 0; d < n; d++ )
+			{
+				growths[ i ][ d ] = dimensionsAndOffset[ 0 ][ d ] - source.dimension( d );
+				totalOffset[ d ] += offsets[ i ][ d ];
+				targetDims[ d ] += growths[ i ][ d ];
+			}
+		}
+
+		/*
+		 * Both buffers are viewed in source coordinates. Pixels that have not
+		 * been reached yet hold the border value, so that the region written
+		 * by a step is always a superset of what the buffer held before.
+		 */
+		final Img< T > a = source.factory().create( targetDims );
+		final Img< T > b = source.factory().create( targetDims );
+		for ( final T t : a )
+			t.set( borderValue );
+		for ( final T t : b )
+			t.set( borderValue );
+		final long[] translation = new long[ n ];
+		for ( int d = 0; d < n; d++ )
+			translation[ d ] = -totalOffset[ d ];
+		copy( source, Views.translate( a, translation ), numThreads );
+
+		final long[] min = new long[ n ];
+		final long[] max = Intervals.maxAsLongArray( source );
+		Img< T > current = a;
+		Img< T > next = b;
+		for ( int i = 0; i < strels.size(); i++ )
+		{
+			for ( int d = 0; d < n; d++ )
+			{
+				min[ d ] -= offsets[ i ][ d ];
+				max[ d ] += growths[ i ][ d ] - offsets[ i ][ d ];
+			}
+			final RandomAccessible< T > in = Views.extendValue( Views.translate( current, translation ), borderValue );
+			final IntervalView< T > out = Views.interval( Views.translate( next, translation ), min, max );
+			operation.apply( in, out, strels.get( i ) );
+
+			final Img< T > tmp = current;
+			current = next;
+			next = tmp;
+		}
+		return current;
+	}
+
 	static final void appendLine( final RandomAccess< BitType > ra, final long maxX, final StringBuilder str )
 	{
 		// Top line
@@ -410,6 +501,38 @@ public class MorphologyUtils
 		return neighborhood;
 	}
 
+	/**
+	 * Returns the offsets of the pixels in the specified {@link Shape} with
+	 * respect to its center, cast over the specified number of dimensions.
+	 *
+	 * @param shape
+	 *            the structuring element.
+	 * @param numDimensions
+	 *            the dimensionality to cast it over.
+	 * @param skipCenter
+	 *            if {@code true}, the zero offset is not included.
+	 * @return the offsets as {@code long[numOffsets][numDimensions]}, in the
+	 *         iteration order of the neighborhood.
+	 */
+	static long[][] getNeighborhoodOffsets( final Shape shape, final int numDimensions, final boolean skipCenter )
+	{
+		final Neighborhood< BitType > neighborhood = getNeighborhood( shape, new FinalInterval( Util.getArrayFromValue( 1l, numDimensions ) ) );
+		final Cursor< BitType > cursor = neighborhood.localizingCursor();
+		final ArrayList< long[] > offsets = new ArrayList<>();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			final long[] offset = new long[ numDimensions ];
+			cursor.localize( offset );
+			boolean isCenter = true;
+			for ( int d = 0; d < numDimensions; d++ )
+				isCenter &= offset[ d ] == 0;
+			if ( !( skipCenter && isCenter ) )
+				offsets.add( offset );
+		}
+		return offsets.toArray( new long[ offsets.size() ][] );
+	}
+
 	/**
 	 * Returns a string representation of the specified flat structuring element
 	 * (given as a {@link Shape}), cast over the dimensionality specified by an
@@ -0,0 +1,458 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.morphology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Vector;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Rank filters (median, percentiles, arbitrary ranks) over a {@link Shape}
+ * neighborhood.
+ * <p>
+ * The neighborhood is slid along the lines of dimension 0. When moving one
+ * pixel forward, only the pixels entering and leaving the neighborhood are
+ * added to and removed from a running window, as proposed by T. S. Huang, G.
+ * J. Yang and G. Y. Tang, "A fast two-dimensional median filtering
+ * algorithm", <i>IEEE Transactions on Acoustics, Speech, and Signal
+ * Processing</i>, Vol 27 #1, page 13. For a
+ * {@link net.imglib2.algorithm.neighborhood.RectangleShape} or a
+ * {@link net.imglib2.algorithm.neighborhood.HyperSphereShape} of radius r in
+ * d dimensions, this costs O(r<sup>d-1</sup>) updates per pixel instead of
+ * sorting O(r<sup>d</sup>) values.
+ * <p>
+ * For {@link IntegerType}s whose values span at most
+ * {@link #MAX_HISTOGRAM_SIZE} levels, the window is a two-level histogram,
+ * and the value of a given rank is found by scanning the coarse and then the
+ * fine bins. For other types, such as floating point values, the window is
+ * kept as a sorted array.
+ */
+public class RankFilter
+{
+
+	/**
+	 * Maximal number of histogram bins for the histogram-based window. Integer
+	 * images spanning more levels use the sorted window.
+	 */
+	public static final int MAX_HISTOGRAM_SIZE = 1 << 20;
+
+	/**
+	 * Number of fine bins per coarse bin of the histogram.
+	 */
+	private static final int COARSE_BIN_SIZE = 256;
+
+	/**
+	 * Performs a median filter on an {@link Img}, using a {@link Shape} as a
+	 * neighborhood. The source is extended by repeating its border pixels.
+	 *
+	 * @param source
+	 *            the source image.
+	 * @param strel
+	 *            the neighborhood, as a {@link Shape}.
+	 * @param numThreads
+	 *            the number of threads to use for the calculation.
+	 * @param <T>
+	 *            the type of the source image and the result.
+	 * @return a new {@link Img}, of same dimensions than the source.
+	 */
+	public static < T extends RealType< T > > Img< T > median( final Img< T > source, final Shape strel, final int numThreads )
+	{
+		return percentile( source, strel, 50, numThreads );
+	}
+
+	/**
+	 * Performs a percentile filter on an {@link Img}, using a {@link Shape} as
+	 * a neighborhood. The source is extended by repeating its border pixels.
+	 *
+	 * @param source
+	 *            the source image.
+	 * @param strel
+	 *            the neighborhood, as a {@link Shape}.
+	 * @param percentile
+	 *            the percentile, from 0 (minimum) to 100 (maximum).
+	 * @param numThreads
+	 *            the number of threads to use for the calculation.
+	 * @param <T>
+	 *            the type of the source image and the result.
+	 * @return a new {@link Img}, of same dimensions than the source.
+	 */
+	public static < T extends RealType< T > > Img< T > percentile( final Img< T > source, final Shape strel, final double percentile, final int numThreads )
+	{
+		final Img< T > target = source.factory().create( source );
+		percentile( Views.extendBorder( source ), target, strel, percentile, numThreads );
+		return target;
+	}
+
+	/**
+	 * Performs a percentile filter on a source {@link RandomAccessible}, using
+	 * a {@link Shape} as a neighborhood, and writes the result on a specified
+	 * target.
+	 * <p>
+	 * The value written is the value of rank
+	 * {@code round( percentile / 100 * ( n - 1 ) )} in ascending order among
+	 * the n values of the neighborhood.
+	 * <p>
+	 * It is the caller responsibility to ensure that the source is sufficiently
+	 * padded to properly cover the target range plus the shape size. See
+	 * <i>e.g.</i> {@link Views#extendBorder(RandomAccessibleInterval)}.
+	 *
+	 * @param source
+	 *            the source {@link RandomAccessible}, must be sufficiently
+	 *            padded.
+	 * @param target
+	 *            the target image.
+	 * @param strel
+	 *            the neighborhood, as a {@link Shape}.
+	 * @param percentile
+	 *            the percentile, from 0 (minimum) to 100 (maximum).
+	 * @param numThreads
+	 *            the number of threads to use for the calculation.
+	 * @param <T>
+	 *            the type of the source.
+	 * @param <U>
+	 *            the type of the target.
+	 */
+	public static < T extends RealType< T >, U extends RealType< U > > void percentile( final RandomAccessible< T > source, final RandomAccessibleInterval< U > target, final Shape strel, final double percentile, final int numThreads )
+	{
+		if ( percentile < 0 || percentile > 100 )
+			throw new IllegalArgumentException( "Percentile must be within [0, 100], got " + percentile + "." );
+		final int size = MorphologyUtils.getNeighborhoodOffsets( strel, target.numDimensions(), false ).length;
+		rank( source, target, strel, ( int ) Math.round( percentile / 100 * ( size - 1 ) ), numThreads );
+	}
+
+	/**
+	 * Performs a rank filter on a source {@link RandomAccessible}, using a
+	 * {@link Shape} as a neighborhood, and writes the value of rank
+	 * {@code rank} in ascending order among the neighborhood values on a
+	 * specified target. Rank 0 is the minimum, and rank {@code n - 1} the
+	 * maximum of a neighborhood of n pixels.
+	 * <p>
+	 * It is the caller responsibility to ensure that the source is sufficiently
+	 * padded to properly cover the target range plus the shape size. See
+	 * <i>e.g.</i> {@link Views#extendBorder(RandomAccessibleInterval)}.
+	 *
+	 * @param source
+	 *            the source {@link RandomAccessible}, must be sufficiently
+	 *            padded.
+	 * @param target
+	 *            the target image.
+	 * @param strel
+	 *            the neighborhood, as a {@link Shape}.
+	 * @param rank
+	 *            the rank of the value to write.
+	 * @param numThreads
+	 *            the number of threads to use for the calculation.
+	 * @param <T>
+	 *            the type of the source.
+	 * @param <U>
+	 *            the type of the target.
+	 */
+	public static < T extends RealType< T >, U extends RealType< U > > void rank( final RandomAccessible< T > source, final RandomAccessibleInterval< U > target, final Shape strel, final int rank, int numThreads )
+	{
+		numThreads = Math.max( 1, numThreads );
+		final int n = target.numDimensions();
+		final long[][] offsets = MorphologyUtils.getNeighborhoodOffsets( strel, n, false );
+		if ( rank < 0 || rank >= offsets.length )
+			throw new IllegalArgumentException( "Rank must be within [0, " + offsets.length + "[, got " + rank + "." );
+
+		/*
+		 * Offsets of the pixels leaving and entering the neighborhood when it
+		 * moves one step along dimension 0, relative to its position before
+		 * the step.
+		 */
+		final long[][] leaving = shiftDifference( offsets, -1 );
+		final long[][] entering = shiftDifference( offsets, 1 );
+		for ( final long[] o : entering )
+			o[ 0 ] += 1;
+
+		/*
+		 * Choose the window: a histogram if the values read span few enough
+		 * levels.
+		 */
+		final T type = MorphologyUtils.createVariable( source, target );
+		long min = 0;
+		long max = -1;
+		if ( type instanceof IntegerType )
+		{
+			final long[] extent = new long[ n ];
+			for ( final long[] o : offsets )
+				for ( int d = 0; d < n; d++ )
+					extent[ d ] = Math.max( extent[ d ], Math.abs( o[ d ] ) );
+			final Interval read = Intervals.expand( target, extent );
+			min = Long.MAX_VALUE;
+			max = Long.MIN_VALUE;
+			for ( final T t : Views.flatIterable( Views.interval( source, read ) ) )
+			{
+				final long v = ( ( IntegerType< ? > ) t ).getIntegerLong();
+				min = Math.min( min, v );
+				max = Math.max( max, v );
+			}
+		}
+		// max - min overflows for ranges wider than Long.MAX_VALUE
+		final boolean useHistogram = max >= min && max - min >= 0 && max - min < MAX_HISTOGRAM_SIZE;
+		final long histogramMin = min;
+		final int histogramSize = ( int ) ( max - min + 1 );
+
+		/*
+		 * Process lines of dimension 0.
+		 */
+		final long[] lineMin = Intervals.minAsLongArray( target );
+		final long[] lineDims = Intervals.dimensionsAsLongArray( target );
+		lineDims[ 0 ] = 1;
+		final long numLines = Intervals.numElements( lineDims );
+		final long lineLength = target.dimension( 0 );
+
+		final Vector< Chunk > chunks = SimpleMultiThreading.divideIntoChunks( numLines, numThreads );
+		final Thread[] threads = SimpleMultiThreading.newThreads( numThreads );
+		for ( int i = 0; i < threads.length; i++ )
+		{
+			final Chunk chunk = chunks.get( i );
+			threads[ i ] = new Thread( "Morphology rank filter thread " + i )
+			{
+				@Override
+				public void run()
+				{
+					final Window window = useHistogram ? new HistogramWindow( histogramMin, histogramSize ) : new SortedWindow( offsets.length );
+					final RandomAccess< T > in = source.randomAccess();
+					final RandomAccess< U > out = target.randomAccess();
+					final long[] position = new long[ n ];
+
+					for ( long line = chunk.getStartPosition(); line < chunk.getStartPosition() + chunk.getLoopSize(); line++ )
+					{
+						IntervalIndexer.indexToPositionWithOffset( line, lineDims, lineMin, position );
+						out.setPosition( position );
+
+						add( window, in, position, offsets );
+						out.get().setReal( window.get( rank ) );
+						for ( long x = 1; x < lineLength; x++ )
+						{
+							remove( window, in, position, leaving );
+							add( window, in, position, entering );
+							position[ 0 ]++;
+							out.fwd( 0 );
+							out.get().setReal( window.get( rank ) );
+						}
+						remove( window, in, position, offsets );
+					}
+				}
+			};
+		}
+
+		SimpleMultiThreading.startAndJoin( threads );
+	}
+
+	private static < T extends RealType< T > > void add( final Window window, final RandomAccess< T > in, final long[] position, final long[][] offsets )
+	{
+		for ( final long[] o : offsets )
+		{
+			for ( int d = 0; d < o.length; d++ )
+				in.setPosition( position[ d ] + o[ d ], d );
+			window.add( in.get() );
+		}
+	}
+
+	private static < T extends RealType< T > > void remove( final Window window, final RandomAccess< T > in, final long[] position, final long[][] offsets )
+	{
+		for ( final long[] o : offsets )
+		{
+			for ( int d = 0; d < o.length; d++ )
+				in.setPosition( position[ d ] + o[ d ], d );
+			window.remove( in.get() );
+		}
+	}
+
+	/**
+	 * Returns the offsets {@code o} for which {@code o + shift} along
+	 * dimension 0 is not an offset.
+	 */
+	private static long[][] shiftDifference( final long[][] offsets, final long shift )
+	{
+		final int n = offsets[ 0 ].length;
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( final long[] o : offsets )
+			for ( int d = 0; d < n; d++ )
+			{
+				min[ d ] = Math.min( min[ d ], o[ d ] );
+				max[ d ] = Math.max( max[ d ], o[ d ] );
+			}
+		final FinalInterval box = new FinalInterval( min, max );
+		final long[] dims = Intervals.dimensionsAsLongArray( box );
+		final boolean[] contains = new boolean[ ( int ) Intervals.numElements( box ) ];
+		for ( final long[] o : offsets )
+			contains[ ( int ) IntervalIndexer.positionWithOffsetToIndex( o, dims, min ) ] = true;
+
+		final ArrayList< long[] > difference = new ArrayList<>();
+		final long[] shifted = new long[ n ];
+		for ( final long[] o : offsets )
+		{
+			System.arraycopy( o, 0, shifted, 0, n );
+			shifted[ 0 ] += shift;
+			if ( shifted[ 0 ] < min[ 0 ] || shifted[ 0 ] > max[ 0 ] || !contains[ ( int ) IntervalIndexer.positionWithOffsetToIndex( shifted, dims, min ) ] )
+				difference.add( o.clone() );
+		}
+		return difference.toArray( new long[ difference.size() ][] );
+	}
+
+	/**
+	 * The multiset of values in the current neighborhood. Each implementation
+	 * reads the pixel values in the representation it stores.
+	 */
+	private static interface Window
+	{
+		void add( RealType< ? > value );
+
+		void remove( RealType< ? > value );
+
+		/**
+		 * @return the value of rank {@code rank} in ascending order.
+		 */
+		double get( int rank );
+	}
+
+	/**
+	 * Window over integer values, stored as a two-level histogram. Only used
+	 * for {@link IntegerType}s.
+	 */
+	private static final class HistogramWindow implements Window
+	{
+		private final long min;
+
+		private final int[] fine;
+
+		private final int[] coarse;
+
+		public HistogramWindow( final long min, final int size )
+		{
+			this.min = min;
+			this.fine = new int[ size ];
+			this.coarse = new int[ ( size + COARSE_BIN_SIZE - 1 ) / COARSE_BIN_SIZE ];
+		}
+
+		@Override
+		public void add( final RealType< ? > value )
+		{
+			final int bin = ( int ) ( ( ( IntegerType< ? > ) value ).getIntegerLong() - min );
+			++fine[ bin ];
+			++coarse[ bin / COARSE_BIN_SIZE ];
+		}
+
+		@Override
+		public void remove( final RealType< ? > value )
+		{
+			final int bin = ( int ) ( ( ( IntegerType< ? > ) value ).getIntegerLong() - min );
+			--fine[ bin ];
+			--coarse[ bin / COARSE_BIN_SIZE ];
+		}
+
+		@Override
+		public double get( final int rank )
+		{
+			int remaining = rank;
+			int c = 0;
+			while ( remaining >= coarse[ c ] )
+				remaining -= coarse[ c++ ];
+			int bin = c * COARSE_BIN_SIZE;
+			while ( remaining >= fine[ bin ] )
+				remaining -= fine[ bin++ ];
+			return min + bin;
+		}
+	}
+
+	/**
+	 * Window over real values, stored as a sorted array.
+	 */
+	private static final class SortedWindow implements Window
+	{
+		private final double[] values;
+
+		private int size = 0;
+
+		public SortedWindow( final int capacity )
+		{
+			this.values = new double[ capacity ];
+		}
+
+		@Override
+		public void add( final RealType< ? > value )
+		{
+			add( value.getRealDouble() );
+		}
+
+		@Override
+		public void remove( final RealType< ? > value )
+		{
+			remove( value.getRealDouble() );
+		}
+
+		private void add( final double value )
+		{
+			int i = Arrays.binarySearch( values, 0, size, value );
+			if ( i < 0 )
+				i = -i - 1;
+			System.arraycopy( values, i, values, i + 1, size - i );
+			values[ i ] = value;
+			++size;
+		}
+
+		private void remove( final double value )
+		{
+			final int i = Arrays.binarySearch( values, 0, size, value );
+			System.arraycopy( values, i + 1, values, i, size - i - 1 );
+			--size;
+		}
+
+		@Override
+		public double get( final int rank )
+		{
+			return values[ rank ];
+		}
+	}
+}
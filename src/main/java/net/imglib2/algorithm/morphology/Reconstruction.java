@@ -0,0 +1,411 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.morphology;
+
+import gnu.trove.list.array.TLongArrayList;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Grayscale morphological reconstruction by dilation and by erosion, and the
+ * operators built on it: h-maxima, h-minima and hole filling.
+ * <p>
+ * Reconstruction by dilation of a marker image under a mask image is the
+ * limit of iterating geodesic dilations, {@code marker = min( dilate( marker ),
+ * mask )}, until stability. It is computed here with the hybrid algorithm
+ * described in L. Vincent, "Morphological Grayscale Reconstruction in Image
+ * Analysis: Applications and Efficient Algorithms", <i>IEEE Transactions on
+ * Image Processing</i>, Vol 2 #2, page 176: one raster scan and one
+ * anti-raster scan propagate values along the scan directions, and a FIFO
+ * queue then propagates the remaining changes only where needed.
+ * <p>
+ * The connectivity is given as a {@link Shape}, for instance a
+ * {@link net.imglib2.algorithm.neighborhood.RectangleShape} of span 1 for
+ * 8-connectivity in 2D (26 in 3D), or a
+ * {@link net.imglib2.algorithm.neighborhood.DiamondShape} of radius 1 for
+ * 4-connectivity (6 in 3D). Pixels outside the image do not participate.
+ */
+public class Reconstruction
+{
+	/**
+	 * Performs the morphological reconstruction by dilation of
+	 * {@code marker} under {@code mask}.
+	 *
+	 * @param marker
+	 *            the marker image. Values above {@code mask} are clipped.
+	 * @param mask
+	 *            the mask image, same interval as {@code marker}.
+	 * @param shape
+	 *            the connectivity.
+	 * @param <T>
+	 *            the type of the images.
+	 * @return a new {@link Img} with the reconstruction.
+	 */
+	public static < T extends RealType< T > > Img< T > byDilation( final Img< T > marker, final RandomAccessibleInterval< T > mask, final Shape shape )
+	{
+		final Img< T > target = marker.copy();
+		byDilationInPlace( target, mask, shape );
+		return target;
+	}
+
+	/**
+	 * Performs the morphological reconstruction by dilation of
+	 * {@code marker} under {@code mask}, in place.
+	 *
+	 * @param marker
+	 *            the marker image, overwritten with the reconstruction. Values
+	 *            above {@code mask} are clipped.
+	 * @param mask
+	 *            the mask image, same interval as {@code marker}.
+	 * @param shape
+	 *            the connectivity.
+	 * @param <T>
+	 *            the type of the images.
+	 */
+	public static < T extends RealType< T > > void byDilationInPlace( final RandomAccessibleInterval< T > marker, final RandomAccessibleInterval< T > mask, final Shape shape )
+	{
+		reconstruct( marker, mask, shape, true );
+	}
+
+	/**
+	 * Performs the morphological reconstruction by erosion of {@code marker}
+	 * above {@code mask}.
+	 *
+	 * @param marker
+	 *            the marker image. Values below {@code mask} are clipped.
+	 * @param mask
+	 *            the mask image, same interval as {@code marker}.
+	 * @param shape
+	 *            the connectivity.
+	 * @param <T>
+	 *            the type of the images.
+	 * @return a new {@link Img} with the reconstruction.
+	 */
+	public static < T extends RealType< T > > Img< T > byErosion( final Img< T > marker, final RandomAccessibleInterval< T > mask, final Shape shape )
+	{
+		final Img< T > target = marker.copy();
+		byErosionInPlace( target, mask, shape );
+		return target;
+	}
+
+	/**
+	 * Performs the morphological reconstruction by erosion of {@code marker}
+	 * above {@code mask}, in place.
+	 *
+	 * @param marker
+	 *            the marker image, overwritten with the reconstruction. Values
+	 *            below {@code mask} are clipped.
+	 * @param mask
+	 *            the mask image, same interval as {@code marker}.
+	 * @param shape
+	 *            the connectivity.
+	 * @param <T>
+	 *            the type of the images.
+	 */
+	public static < T extends RealType< T > > void byErosionInPlace( final RandomAccessibleInterval< T > marker, final RandomAccessibleInterval< T > mask, final Shape shape )
+	{
+		reconstruct( marker, mask, shape, false );
+	}
+
+	/**
+	 * Computes the h-maxima transform of {@code source}: the reconstruction by
+	 * dilation of {@code source - h} under {@code source}. All maxima whose
+	 * height is smaller than {@code h} are suppressed.
+	 *
+	 * @param source
+	 *            the source image.
+	 * @param h
+	 *            the minimal height of the maxima to keep.
+	 * @param shape
+	 *            the connectivity.
+	 * @param <T>
+	 *            the type of the images.
+	 * @return a new {@link Img} with the h-maxima transform.
+	 */
+	public static < T extends RealType< T > > Img< T > hMaxima( final Img< T > source, final double h, final Shape shape )
+	{
+		final Img< T > marker = source.copy();
+		for ( final T t : marker )
+			t.setReal( Math.max( t.getRealDouble() - h, t.getMinValue() ) );
+		byDilationInPlace( marker, source, shape );
+		return marker;
+	}
+
+	/**
+	 * Computes the h-minima transform of {@code source}: the reconstruction by
+	 * erosion of {@code source + h} above {@code source}. All minima whose
+	 * depth is smaller than {@code h} are suppressed.
+	 *
+	 * @param source
+	 *            the source image.
+	 * @param h
+	 *            the minimal depth of the minima to keep.
+	 * @param shape
+	 *            the connectivity.
+	 * @param <T>
+	 *            the type of the images.
+	 * @return a new {@link Img} with the h-minima transform.
+	 */
+	public static < T extends RealType< T > > Img< T > hMinima( final Img< T > source, final double h, final Shape shape )
+	{
+		final Img< T > marker = source.copy();
+		for ( final T t : marker )
+			t.setReal( Math.min( t.getRealDouble() + h, t.getMaxValue() ) );
+		byErosionInPlace( marker, source, shape );
+		return marker;
+	}
+
+	/**
+	 * Fills the holes of {@code source}, i.e., the regional minima that are
+	 * not connected to the image border. This is the reconstruction by erosion
+	 * above {@code source} of a marker that equals {@code source} on the image
+	 * border and the maximal value everywhere else. Works for binary and
+	 * grayscale images.
+	 *
+	 * @param source
+	 *            the source image.
+	 * @param shape
+	 *            the connectivity of the background. Use a
+	 *            {@link net.imglib2.algorithm.neighborhood.DiamondShape} of
+	 *            radius 1 for 8-connected objects in 2D.
+	 * @param <T>
+	 *            the type of the images.
+	 * @return a new {@link Img} with the holes filled.
+	 */
+	public static < T extends RealType< T > > Img< T > fillHoles( final Img< T > source, final Shape shape )
+	{
+		final Img< T > marker = source.copy();
+		final int n = marker.numDimensions();
+		final Cursor< T > cursor = marker.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			final T t = cursor.next();
+			boolean isBorder = false;
+			for ( int d = 0; d < n && !isBorder; ++d )
+			{
+				final long p = cursor.getLongPosition( d );
+				isBorder = p == marker.min( d ) || p == marker.max( d );
+			}
+			if ( !isBorder )
+				t.setReal( t.getMaxValue() );
+		}
+		byErosionInPlace( marker, source, shape );
+		return marker;
+	}
+
+	/**
+	 * The hybrid reconstruction algorithm. For reconstruction by erosion, all
+	 * comparisons are reversed.
+	 */
+	private static < T extends RealType< T > > void reconstruct(
+			final RandomAccessibleInterval< T > marker,
+			final RandomAccessibleInterval< T > mask,
+			final Shape shape,
+			final boolean byDilation )
+	{
+		final int n = marker.numDimensions();
+		final int sign = byDilation ? 1 : -1;
+		final long[] min = Intervals.minAsLongArray( marker );
+		final long[] max = Intervals.maxAsLongArray( marker );
+		final long[] dimensions = Intervals.dimensionsAsLongArray( marker );
+		final long numElements = Intervals.numElements( marker );
+
+		/*
+		 * Split the neighborhood into the neighbors preceding the center in
+		 * raster order (N+), and the ones following it (N-).
+		 */
+		final long[][] offsets = MorphologyUtils.getNeighborhoodOffsets( shape, n, true );
+		final long[] flatOffsets = new long[ offsets.length ];
+		int numPreceding = 0;
+		for ( int i = 0; i < offsets.length; ++i )
+		{
+			long stride = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				flatOffsets[ i ] += offsets[ i ][ d ] * stride;
+				stride *= dimensions[ d ];
+			}
+			if ( isPreceding( offsets[ i ] ) )
+				++numPreceding;
+		}
+		final long[][] preceding = new long[ numPreceding ][];
+		final long[][] following = new long[ offsets.length - numPreceding ][];
+		for ( int i = 0, p = 0, f = 0; i < offsets.length; ++i )
+			if ( isPreceding( offsets[ i ] ) )
+				preceding[ p++ ] = offsets[ i ];
+			else
+				following[ f++ ] = offsets[ i ];
+
+		/*
+		 * Outside of the image, marker and mask are both the lowest value, so
+		 * that they never propagate, nor get propagated to.
+		 */
+		final T lowest = Views.iterable( marker ).firstElement().createVariable();
+		lowest.setReal( byDilation ? lowest.getMinValue() : lowest.getMaxValue() );
+		final RandomAccess< T > markerAccess = Views.extendValue( marker, lowest ).randomAccess();
+		final RandomAccess< T > neighborAccess = Views.extendValue( marker, lowest ).randomAccess();
+		final RandomAccess< T > maskAccess = Views.extendValue( mask, lowest ).randomAccess();
+		final RandomAccess< T > neighborMaskAccess = Views.extendValue( mask, lowest ).randomAccess();
+
+		final T value = lowest.createVariable();
+		final long[] position = new long[ n ];
+
+		/*
+		 * Raster scan.
+		 */
+		final Cursor< T > cursor = Views.flatIterable( marker ).localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			final T m = cursor.next();
+			cursor.localize( position );
+			value.set( m );
+			propagate( value, neighborAccess, position, preceding, sign );
+			maskAccess.setPosition( position );
+			if ( sign * value.compareTo( maskAccess.get() ) > 0 )
+				value.set( maskAccess.get() );
+			m.set( value );
+		}
+
+		/*
+		 * Anti-raster scan, seeding the queue with pixels that can propagate
+		 * further.
+		 */
+		final TLongArrayList queue = new TLongArrayList();
+		System.arraycopy( max, 0, position, 0, n );
+		for ( long index = numElements - 1; index >= 0; --index )
+		{
+			markerAccess.setPosition( position );
+			maskAccess.setPosition( position );
+			value.set( markerAccess.get() );
+			propagate( value, neighborAccess, position, following, sign );
+			if ( sign * value.compareTo( maskAccess.get() ) > 0 )
+				value.set( maskAccess.get() );
+			markerAccess.get().set( value );
+
+			for ( final long[] offset : following )
+			{
+				neighborAccess.setPosition( position );
+				neighborAccess.move( offset );
+				neighborMaskAccess.setPosition( neighborAccess );
+				final T q = neighborAccess.get();
+				if ( sign * value.compareTo( q ) > 0 && sign * neighborMaskAccess.get().compareTo( q ) > 0 )
+				{
+					queue.add( index );
+					break;
+				}
+			}
+
+			// step back in raster order
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( --position[ d ] >= min[ d ] )
+					break;
+				position[ d ] = max[ d ];
+			}
+		}
+
+		/*
+		 * FIFO propagation.
+		 */
+		int head = 0;
+		while ( head < queue.size() )
+		{
+			final long index = queue.getQuick( head++ );
+			IntervalIndexer.indexToPositionWithOffset( index, dimensions, min, position );
+			markerAccess.setPosition( position );
+			value.set( markerAccess.get() );
+			for ( int i = 0; i < offsets.length; ++i )
+			{
+				neighborAccess.setPosition( position );
+				neighborAccess.move( offsets[ i ] );
+				neighborMaskAccess.setPosition( neighborAccess );
+				final T q = neighborAccess.get();
+				final T qMask = neighborMaskAccess.get();
+				if ( sign * value.compareTo( q ) > 0 && qMask.compareTo( q ) != 0 )
+				{
+					q.set( sign * value.compareTo( qMask ) < 0 ? value : qMask );
+					queue.add( index + flatOffsets[ i ] );
+				}
+			}
+
+			// drop the consumed part of the queue from time to time
+			if ( head > 1 << 20 && head > queue.size() / 2 )
+			{
+				queue.remove( 0, head );
+				head = 0;
+			}
+		}
+	}
+
+	/**
+	 * Replaces {@code value} with the supremum (infimum if {@code sign} is
+	 * negative) of itself and the marker at the neighbors given by
+	 * {@code offsets}.
+	 */
+	private static < T extends RealType< T > > void propagate(
+			final T value,
+			final RandomAccess< T > neighborAccess,
+			final long[] position,
+			final long[][] offsets,
+			final int sign )
+	{
+		for ( final long[] offset : offsets )
+		{
+			neighborAccess.setPosition( position );
+			neighborAccess.move( offset );
+			final T q = neighborAccess.get();
+			if ( sign * q.compareTo( value ) > 0 )
+				value.set( q );
+		}
+	}
+
+	/**
+	 * Whether the pixel at {@code offset} precedes the center in raster
+	 * (flat iteration) order.
+	 */
+	private static boolean isPreceding( final long[] offset )
+	{
+		for ( int d = offset.length - 1; d >= 0; --d )
+			if ( offset[ d ] != 0 )
+				return offset[ d ] < 0;
+		return false;
+	}
+}
@@ -0,0 +1,372 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.morphology.distance;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.stream.DoubleStream;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.lazy.Lazy;
+import net.imglib2.algorithm.morphology.distance.DistanceTransform.DISTANCE_TYPE;
+import net.imglib2.algorithm.util.ParallelizeOverBlocks;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.DiskCachedCellImg;
+import net.imglib2.cache.img.DiskCachedCellImgFactory;
+import net.imglib2.cache.img.DiskCachedCellImgOptions;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Block-wise distance transforms for images that do not fit into memory, e.g.
+ * {@link CachedCellImg}s.
+ * <p>
+ * {@link DistanceTransform} is separable and each pass is global along one
+ * dimension, i.e. every pass needs full columns along the current dimension,
+ * but nothing else. The exact block-wise transform therefore processes each
+ * pass in stripes that are one block wide in all dimensions but the current
+ * one, and span the full image along the current dimension. Each stripe is
+ * independent, stripes are processed in parallel, and only the current
+ * stripes need to be in memory. The target is updated in place after the
+ * first pass, so it must be writable and must not lose modified blocks, e.g.
+ * a {@link DiskCachedCellImg} with cells of the same block size.
+ * </p>
+ * <p>
+ * Alternatively, {@link #lazyBinaryTransform} computes the binary distance
+ * transform lazily, per cell of a {@link Lazy} {@link CachedCellImg}, on the
+ * cell expanded by a halo. The result is exact wherever the distance does not
+ * exceed the distance that the halo was chosen for, and larger elsewhere.
+ * </p>
+ */
+public class BlockwiseDistanceTransform
+{
+
+	/**
+	 * Create distance transform of {@code source} in block-wise passes and
+	 * write into {@code target}.
+	 *
+	 * @param source
+	 *            Input function on which distance transform should be computed.
+	 * @param target
+	 *            Intermediate and final results of distance transform, must be
+	 *            writable and keep modifications across passes.
+	 * @param distanceType
+	 *            Defines distance to be used: squared Euclidian or L1
+	 * @param blockSize
+	 *            block size in all dimensions but the one that is currently
+	 *            being transformed, ideally the cell size of {@code target}
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @param weights
+	 *            Individual weights for each dimension, balancing image values
+	 *            and distance (when using squared Euclidian distance, weights
+	 *            should be squared, too).
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled (distance transform may be computed only
+	 *             partially)
+	 * @throws ExecutionException
+	 *             if the computation threw an exception (distance transform may
+	 *             be computed only partially)
+	 */
+	public static < T extends RealType< T >, U extends RealType< U > > void transform(
+			final RandomAccessible< T > source,
+			final RandomAccessibleInterval< U > target,
+			final DISTANCE_TYPE distanceType,
+			final int[] blockSize,
+			final ExecutorService es,
+			final int nTasks,
+			final double... weights ) throws InterruptedException, ExecutionException
+	{
+		final int nDim = target.numDimensions();
+		final double[] w = weights.length == nDim ? weights : DoubleStream.generate( () -> weights.length == 0 ? 1.0 : weights[ 0 ] ).limit( nDim ).toArray();
+
+		switch ( distanceType )
+		{
+		case EUCLIDIAN:
+			transform( source, target, weights.length <= 1 ? new EuclidianDistanceIsotropic( w[ 0 ] ) : new EuclidianDistanceAnisotropic( w ), blockSize, es, nTasks );
+			break;
+		case L1:
+			for ( int dim = 0; dim < nDim; ++dim )
+			{
+				final int fDim = dim;
+				forEachStripe( target, dim, blockSize, es, nTasks, stripe -> {
+					if ( fDim == 0 )
+						DistanceTransform.transformL1AlongDimension( source, Views.interval( target, stripe ), fDim, w[ fDim ] );
+					else
+						DistanceTransform.transformL1AlongDimension( target, Views.interval( target, stripe ), fDim, w[ fDim ] );
+				} );
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Create distance transform of {@code source} using arbitrary
+	 * {@link Distance} d in block-wise passes and write into {@code target}.
+	 *
+	 * @param source
+	 *            Input function on which distance transform should be computed.
+	 * @param target
+	 *            Intermediate and final results of distance transform, must be
+	 *            writable and keep modifications across passes.
+	 * @param d
+	 *            {@link Distance} between two points.
+	 * @param blockSize
+	 *            block size in all dimensions but the one that is currently
+	 *            being transformed, ideally the cell size of {@code target}
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled (distance transform may be computed only
+	 *             partially)
+	 * @throws ExecutionException
+	 *             if the computation threw an exception (distance transform may
+	 *             be computed only partially)
+	 */
+	public static < T extends RealType< T >, U extends RealType< U > > void transform(
+			final RandomAccessible< T > source,
+			final RandomAccessibleInterval< U > target,
+			final Distance d,
+			final int[] blockSize,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		for ( int dim = 0; dim < target.numDimensions(); ++dim )
+		{
+			final int fDim = dim;
+			forEachStripe( target, dim, blockSize, es, nTasks, stripe -> {
+				if ( fDim == 0 )
+					DistanceTransform.transformAlongDimension( source, Views.interval( target, stripe ), d, fDim );
+				else
+					DistanceTransform.transformAlongDimension( target, Views.interval( target, stripe ), d, fDim );
+			} );
+		}
+	}
+
+	/**
+	 * Create binary distance transform of {@code source} in block-wise passes
+	 * and write into {@code target}.
+	 *
+	 * @param source
+	 *            Input function on which distance transform should be computed.
+	 * @param target
+	 *            Intermediate and final results of distance transform, must be
+	 *            writable and keep modifications across passes.
+	 * @param distanceType
+	 *            Defines distance to be used: squared Euclidian or L1
+	 * @param blockSize
+	 *            block size in all dimensions but the one that is currently
+	 *            being transformed, ideally the cell size of {@code target}
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @param weights
+	 *            Individual weights for each dimension, balancing image values
+	 *            and distance (when using squared Euclidian distance, weights
+	 *            should be squared, too).
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled (distance transform may be computed only
+	 *             partially)
+	 * @throws ExecutionException
+	 *             if the computation threw an exception (distance transform may
+	 *             be computed only partially)
+	 */
+	public static < B extends BooleanType< B >, U extends RealType< U > > void binaryTransform(
+			final RandomAccessible< B > source,
+			final RandomAccessibleInterval< U > target,
+			final DISTANCE_TYPE distanceType,
+			final int[] blockSize,
+			final ExecutorService es,
+			final int nTasks,
+			final double... weights ) throws InterruptedException, ExecutionException
+	{
+		final U maxVal = Util.getTypeFromInterval( target ).createVariable();
+		maxVal.setReal( maxVal.getMaxValue() );
+		final Converter< B, U > converter = new DistanceTransform.BinaryMaskToCost<>( maxVal );
+		final RandomAccessible< U > converted = Converters.convert( source, converter, maxVal.createVariable() );
+		transform( converted, target, distanceType, blockSize, es, nTasks, weights );
+	}
+
+	/**
+	 * Create binary distance transform of {@code source} in block-wise passes
+	 * into a new {@link DiskCachedCellImg} with cells of size
+	 * {@code blockSize}. Note that the result is zero-min, i.e. position
+	 * {@code 0} in the result corresponds to the min of {@code interval}.
+	 *
+	 * @param source
+	 *            Input function on which distance transform should be computed.
+	 * @param interval
+	 *            Interval on which distance transform should be computed.
+	 * @param distanceType
+	 *            Defines distance to be used: squared Euclidian or L1
+	 * @param blockSize
+	 *            cell size of the result
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @param weights
+	 *            Individual weights for each dimension, balancing image values
+	 *            and distance (when using squared Euclidian distance, weights
+	 *            should be squared, too).
+	 * @return distance transform
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < B extends BooleanType< B > > DiskCachedCellImg< DoubleType, ? > binaryTransform(
+			final RandomAccessible< B > source,
+			final Interval interval,
+			final DISTANCE_TYPE distanceType,
+			final int[] blockSize,
+			final ExecutorService es,
+			final int nTasks,
+			final double... weights ) throws InterruptedException, ExecutionException
+	{
+		final DiskCachedCellImg< DoubleType, ? > target = new DiskCachedCellImgFactory<>(
+				new DoubleType(),
+				DiskCachedCellImgOptions.options().cellDimensions( blockSize ) ).create( Intervals.dimensionsAsLongArray( interval ) );
+		binaryTransform( Views.translate( source, Intervals.minAsLongArray( interval ) ), target, distanceType, blockSize, es, nTasks, weights );
+		return target;
+	}
+
+	/**
+	 * Create a lazily evaluated binary distance transform of {@code source}.
+	 * Each cell is computed independently on the cell expanded by a halo
+	 * (clipped to {@code interval}) that contains all pixels within
+	 * {@code maxDistance} of the cell. Distances up to {@code maxDistance} are
+	 * exact, larger distances are upper bounds of the true distance, i.e. they
+	 * are also larger than {@code maxDistance}. Note that the result is
+	 * zero-min, i.e. position {@code 0} in the result corresponds to the min of
+	 * {@code interval}.
+	 *
+	 * @param source
+	 *            Input function on which distance transform should be computed.
+	 * @param interval
+	 *            Interval on which distance transform should be computed.
+	 * @param distanceType
+	 *            Defines distance to be used: squared Euclidian or L1
+	 * @param blockSize
+	 *            cell size of the result
+	 * @param maxDistance
+	 *            largest distance that is guaranteed to be exact, in the same
+	 *            units as the result (i.e. squared for squared Euclidian)
+	 * @param weights
+	 *            Individual weights for each dimension, balancing image values
+	 *            and distance (when using squared Euclidian distance, weights
+	 *            should be squared, too).
+	 * @return lazily evaluated distance transform
+	 */
+	public static < B extends BooleanType< B > > CachedCellImg< DoubleType, ? > lazyBinaryTransform(
+			final RandomAccessible< B > source,
+			final Interval interval,
+			final DISTANCE_TYPE distanceType,
+			final int[] blockSize,
+			final double maxDistance,
+			final double... weights )
+	{
+		final int nDim = interval.numDimensions();
+		final double[] w = weights.length == nDim ? weights : DoubleStream.generate( () -> weights.length == 0 ? 1.0 : weights[ 0 ] ).limit( nDim ).toArray();
+		final long[] halo = new long[ nDim ];
+		for ( int d = 0; d < nDim; ++d )
+		{
+			// largest offset along d for which a pixel can be within maxDistance
+			final double maxOffset = distanceType == DISTANCE_TYPE.EUCLIDIAN ? Math.sqrt( maxDistance / w[ d ] ) : maxDistance / w[ d ];
+			halo[ d ] = Math.min( ( long ) Math.ceil( maxOffset ), interval.dimension( d ) );
+		}
+
+		final long[] min = Intervals.minAsLongArray( interval );
+		final RandomAccessible< B > zeroMinSource = Views.translate( source, min );
+		final Interval zeroMinInterval = new FinalInterval( Intervals.dimensionsAsLongArray( interval ) );
+
+		return Lazy.process( zeroMinInterval, blockSize, new DoubleType(), AccessFlags.setOf( AccessFlags.VOLATILE ), cell -> {
+			final Interval expanded = Intervals.intersect( Intervals.expand( cell, halo ), zeroMinInterval );
+			final RandomAccessibleInterval< DoubleType > tmp = Views.translate( ArrayImgs.doubles( Intervals.dimensionsAsLongArray( expanded ) ), Intervals.minAsLongArray( expanded ) );
+			DistanceTransform.binaryTransform( zeroMinSource, tmp, distanceType, w );
+			final Cursor< DoubleType > c = Views.flatIterable( cell ).cursor();
+			final RandomAccess< DoubleType > t = tmp.randomAccess();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				t.setPosition( c );
+				c.get().set( t.get() );
+			}
+		} );
+	}
+
+	private static void forEachStripe(
+			final Interval interval,
+			final int dim,
+			final int[] blockSize,
+			final ExecutorService es,
+			final int nTasks,
+			final Consumer< Interval > stripeTransform ) throws InterruptedException, ExecutionException
+	{
+		if ( interval.dimension( dim ) > Integer.MAX_VALUE )
+		{
+			throw new IllegalArgumentException( "Block-wise distance transform does not support dimensions larger than " + Integer.MAX_VALUE + "." );
+		}
+		final int[] stripeSize = blockSize.clone();
+		stripeSize[ dim ] = ( int ) interval.dimension( dim );
+		ParallelizeOverBlocks.parallelizeAndWait( ParallelizeOverBlocks.ofConsumer( stripeTransform ), interval, stripeSize, es, nTasks );
+	}
+
+}
@@ -0,0 +1,473 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.morphology.distance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+
+/**
+ * Integer-valued binary distance transforms with local (chamfer) distances in
+ * two raster passes: a forward pass in flat iteration order that propagates
+ * distances from neighbors that precede a pixel, and a backward pass in
+ * reverse order that propagates distances from neighbors that follow it.
+ * <p>
+ * Distances are sums of the integer weights of the {@link Mask} along the
+ * shortest path to the closest foreground pixel, i.e. chessboard and city
+ * block distances are exact, and chamfer distances approximate the Euclidian
+ * distance scaled by the weight of a unit step (3 for
+ * {@link Mask#CHAMFER_3_4_5}, 5 for {@link Mask#CHAMFER_5_7_11}). Distances
+ * are written directly into an {@link IntegerType} target, e.g.
+ * {@link net.imglib2.type.numeric.integer.UnsignedShortType} or
+ * {@link net.imglib2.type.numeric.integer.IntType}, without any real-valued
+ * intermediate image. Distances that cannot be represented by the target
+ * type, including pixels without any foreground pixel, saturate at the
+ * maximum value of the target type.
+ * </p>
+ */
+public class ChamferDistanceTransform
+{
+
+	/**
+	 * Local distance masks.
+	 */
+	public static enum Mask
+	{
+		/**
+		 * Unit weight for face neighbors (L1 distance), any number of
+		 * dimensions.
+		 */
+		CITY_BLOCK,
+		/**
+		 * Unit weight for face, edge, and vertex neighbors (L-infinity
+		 * distance), any number of dimensions.
+		 */
+		CHESSBOARD,
+		/**
+		 * Weights 3, 4, and 5 for face, edge, and vertex neighbors, up to
+		 * three dimensions.
+		 */
+		CHAMFER_3_4_5,
+		/**
+		 * Weights 5, 7, and 11 for face, diagonal, and knight move neighbors,
+		 * two dimensions only.
+		 */
+		CHAMFER_5_7_11
+	}
+
+	/**
+	 * Create binary chamfer distance transform on {@code source} and write
+	 * into {@code target}.
+	 *
+	 * @param source
+	 *            Input function on which distance transform should be computed.
+	 * @param target
+	 *            Final result of distance transform.
+	 * @param mask
+	 *            local distances
+	 * @param <B>
+	 *            {@link BooleanType} binary mask input
+	 * @param <T>
+	 *            {@link IntegerType} output
+	 */
+	public static < B extends BooleanType< B >, T extends IntegerType< T > > void binaryTransform(
+			final RandomAccessible< B > source,
+			final RandomAccessibleInterval< T > target,
+			final Mask mask )
+	{
+		final int nDim = target.numDimensions();
+		final List< long[] > offsets = new ArrayList<>();
+		final List< Long > weights = new ArrayList<>();
+		createMask( mask, nDim, offsets, weights );
+
+		// forward pass uses the offsets that precede the center in flat
+		// iteration order, the backward pass the mirrored offsets
+		final int nForward = offsets.size() / 2;
+		final long[][] forwardOffsets = new long[ nForward ][];
+		final long[][] backwardOffsets = new long[ nForward ][];
+		final long[] forwardWeights = new long[ nForward ];
+		for ( int i = 0, k = 0; i < offsets.size(); ++i )
+		{
+			final long[] offset = offsets.get( i );
+			if ( precedes( offset ) )
+			{
+				forwardOffsets[ k ] = offset;
+				backwardOffsets[ k ] = negate( offset );
+				forwardWeights[ k ] = weights.get( i );
+				++k;
+			}
+		}
+
+		if ( Intervals.numElements( target ) == 0 )
+		{
+			return;
+		}
+
+		final long maxValue = ( long ) Math.min( Util.getTypeFromInterval( target ).getMaxValue(), Long.MAX_VALUE );
+		pass( source.randomAccess( target ), target, forwardOffsets, forwardWeights, maxValue, true );
+		pass( source.randomAccess( target ), target, backwardOffsets, forwardWeights, maxValue, false );
+	}
+
+	/**
+	 * One raster pass over the lines of dimension 0 of {@code target}, in
+	 * flat iteration order if {@code forward}, and in reverse order otherwise.
+	 * The forward pass initializes {@code target} from {@code source}, the
+	 * backward pass only reads and updates {@code target}.
+	 * <p>
+	 * Offsets that leave {@code target} in dimensions other than 0 are
+	 * discarded once per line. Away from the line ends, each remaining offset
+	 * is read through its own {@link RandomAccess} that moves along with the
+	 * current pixel. Only the first and last pixels of a line, for which some
+	 * offsets leave {@code target} in dimension 0, are handled by
+	 * {@link #propagate}.
+	 */
+	private static < B extends BooleanType< B >, T extends IntegerType< T > > void pass(
+			final RandomAccess< B > source,
+			final RandomAccessibleInterval< T > target,
+			final long[][] offsets,
+			final long[] weights,
+			final long maxValue,
+			final boolean forward )
+	{
+		final long[] min = Intervals.minAsLongArray( target );
+		final long[] max = Intervals.maxAsLongArray( target );
+		final long lineLength = target.dimension( 0 );
+		final long numLines = Intervals.numElements( target ) / lineLength;
+
+		long radius = 0;
+		for ( final long[] offset : offsets )
+		{
+			radius = Math.max( radius, Math.abs( offset[ 0 ] ) );
+		}
+		final long step = forward ? 1 : -1;
+		final long firstInner = forward ? min[ 0 ] + radius : max[ 0 ] - radius;
+		final long lastInner = forward ? max[ 0 ] - radius : min[ 0 ] + radius;
+		final long numInner = Math.max( lineLength - 2 * radius, 0 );
+
+		final RandomAccess< T > t = target.randomAccess();
+		final RandomAccess< T > border = target.randomAccess();
+		final List< RandomAccess< T > > neighbors = new ArrayList<>();
+		for ( int k = 0; k < offsets.length; ++k )
+		{
+			neighbors.add( target.randomAccess() );
+		}
+		final int[] lineOffsets = new int[ offsets.length ];
+
+		final long[] position = forward ? min.clone() : max.clone();
+		for ( long line = 0; line < numLines; ++line )
+		{
+			int numLineOffsets = 0;
+			for ( int k = 0; k < offsets.length; ++k )
+			{
+				if ( containsLine( position, offsets[ k ], min, max ) )
+				{
+					lineOffsets[ numLineOffsets++ ] = k;
+				}
+			}
+
+			t.setPosition( position );
+			if ( forward )
+			{
+				source.setPosition( position );
+			}
+			for ( long i = 0; i < lineLength; ++i )
+			{
+				final boolean inner = numInner > 0 && ( forward ? position[ 0 ] >= firstInner && position[ 0 ] <= lastInner : position[ 0 ] <= firstInner && position[ 0 ] >= lastInner );
+				if ( inner && position[ 0 ] == firstInner )
+				{
+					for ( int j = 0; j < numLineOffsets; ++j )
+					{
+						final RandomAccess< T > neighbor = neighbors.get( lineOffsets[ j ] );
+						neighbor.setPosition( t );
+						neighbor.move( offsets[ lineOffsets[ j ] ] );
+					}
+				}
+
+				final long value = forward ? ( source.get().get() ? 0 : maxValue ) : t.get().getIntegerLong();
+				if ( value == 0 )
+				{
+					if ( forward )
+					{
+						t.get().setZero();
+					}
+				}
+				else if ( inner )
+				{
+					long distance = value;
+					for ( int j = 0; j < numLineOffsets; ++j )
+					{
+						final long neighborDistance = neighbors.get( lineOffsets[ j ] ).get().getIntegerLong();
+						if ( neighborDistance < maxValue )
+						{
+							distance = Math.min( distance, Math.min( neighborDistance + weights[ lineOffsets[ j ] ], maxValue ) );
+						}
+					}
+					t.get().setInteger( distance );
+				}
+				else
+				{
+					t.get().setInteger( propagate( value, position, min, max, offsets, weights, border, maxValue ) );
+				}
+
+				if ( inner && position[ 0 ] != lastInner )
+				{
+					for ( int j = 0; j < numLineOffsets; ++j )
+					{
+						neighbors.get( lineOffsets[ j ] ).move( step, 0 );
+					}
+				}
+				if ( i < lineLength - 1 )
+				{
+					position[ 0 ] += step;
+					t.move( step, 0 );
+					if ( forward )
+					{
+						source.move( step, 0 );
+					}
+				}
+			}
+
+			if ( forward )
+			{
+				nextLine( position, min, max );
+			}
+			else
+			{
+				previousLine( position, min, max );
+			}
+		}
+	}
+
+	private static < T extends IntegerType< T > > long propagate(
+			final long value,
+			final long[] position,
+			final long[] min,
+			final long[] max,
+			final long[][] offsets,
+			final long[] weights,
+			final RandomAccess< T > neighbor,
+			final long maxValue )
+	{
+		long distance = value;
+		for ( int k = 0; k < offsets.length; ++k )
+		{
+			final long[] offset = offsets[ k ];
+			if ( !contains( position, offset, min, max ) )
+			{
+				continue;
+			}
+			neighbor.setPosition( position );
+			neighbor.move( offset );
+			final long neighborDistance = neighbor.get().getIntegerLong();
+			if ( neighborDistance < maxValue )
+			{
+				distance = Math.min( distance, Math.min( neighborDistance + weights[ k ], maxValue ) );
+			}
+		}
+		return distance;
+	}
+
+	private static void createMask( final Mask mask, final int nDim, final List< long[] > offsets, final List< Long > weights )
+	{
+		final int radius;
+		final long[] weightsForNonZeroCount;
+		switch ( mask )
+		{
+		case CITY_BLOCK:
+			radius = 1;
+			weightsForNonZeroCount = new long[] { 0, 1 };
+			break;
+		case CHESSBOARD:
+			radius = 1;
+			weightsForNonZeroCount = new long[ nDim + 1 ];
+			for ( int k = 1; k <= nDim; ++k )
+			{
+				weightsForNonZeroCount[ k ] = 1;
+			}
+			break;
+		case CHAMFER_3_4_5:
+			if ( nDim > 3 )
+			{
+				throw new IllegalArgumentException( "Chamfer 3-4-5 mask is only defined for up to three dimensions." );
+			}
+			radius = 1;
+			weightsForNonZeroCount = new long[] { 0, 3, 4, 5 };
+			break;
+		case CHAMFER_5_7_11:
+			if ( nDim != 2 )
+			{
+				throw new IllegalArgumentException( "Chamfer 5-7-11 mask is only defined for two dimensions." );
+			}
+			radius = 2;
+			weightsForNonZeroCount = null;
+			break;
+		default:
+			throw new IllegalArgumentException( "Unknown mask " + mask + "." );
+		}
+
+		final long[] offset = new long[ nDim ];
+		final long numOffsets = ( long ) Math.pow( 2 * radius + 1, nDim );
+		for ( long i = 0; i < numOffsets; ++i )
+		{
+			long index = i;
+			int nonZero = 0;
+			for ( int d = 0; d < nDim; ++d )
+			{
+				offset[ d ] = index % ( 2 * radius + 1 ) - radius;
+				index /= 2 * radius + 1;
+				nonZero += offset[ d ] == 0 ? 0 : 1;
+			}
+
+			final long weight;
+			if ( mask == Mask.CHAMFER_5_7_11 )
+			{
+				weight = knightMaskWeight( Math.abs( offset[ 0 ] ), Math.abs( offset[ 1 ] ) );
+			}
+			else
+			{
+				weight = nonZero < weightsForNonZeroCount.length ? weightsForNonZeroCount[ nonZero ] : 0;
+			}
+
+			if ( weight > 0 )
+			{
+				offsets.add( offset.clone() );
+				weights.add( weight );
+			}
+		}
+	}
+
+	private static long knightMaskWeight( final long a, final long b )
+	{
+		if ( a + b == 1 )
+			return 5;
+		if ( a == 1 && b == 1 )
+			return 7;
+		if ( a + b == 3 && a * b == 2 )
+			return 11;
+		return 0;
+	}
+
+	/**
+	 * @return {@code true} if {@code offset} points to a pixel that precedes
+	 *         the center in flat iteration order
+	 */
+	private static boolean precedes( final long[] offset )
+	{
+		for ( int d = offset.length - 1; d >= 0; --d )
+		{
+			if ( offset[ d ] != 0 )
+			{
+				return offset[ d ] < 0;
+			}
+		}
+		return false;
+	}
+
+	private static long[] negate( final long[] offset )
+	{
+		final long[] negated = new long[ offset.length ];
+		for ( int d = 0; d < offset.length; ++d )
+		{
+			negated[ d ] = -offset[ d ];
+		}
+		return negated;
+	}
+
+	private static boolean contains( final long[] position, final long[] offset, final long[] min, final long[] max )
+	{
+		for ( int d = 0; d < position.length; ++d )
+		{
+			final long p = position[ d ] + offset[ d ];
+			if ( p < min[ d ] || p > max[ d ] )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return {@code true} if {@code position + offset} is within the bounds
+	 *         in all dimensions but 0
+	 */
+	private static boolean containsLine( final long[] position, final long[] offset, final long[] min, final long[] max )
+	{
+		for ( int d = 1; d < position.length; ++d )
+		{
+			final long p = position[ d ] + offset[ d ];
+			if ( p < min[ d ] || p > max[ d ] )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void nextLine( final long[] position, final long[] min, final long[] max )
+	{
+		position[ 0 ] = min[ 0 ];
+		for ( int d = 1; d < position.length; ++d )
+		{
+			if ( position[ d ] < max[ d ] )
+			{
+				++position[ d ];
+				return;
+			}
+			position[ d ] = min[ d ];
+		}
+	}
+
+	private static void previousLine( final long[] position, final long[] min, final long[] max )
+	{
+		position[ 0 ] = max[ 0 ];
+		for ( int d = 1; d < position.length; ++d )
+		{
+			if ( position[ d ] > min[ d ] )
+			{
+				--position[ d ];
+				return;
+			}
+			position[ d ] = max[ d ];
+		}
+	}
+
+}
@@ -35,18 +35,21 @@
 package net.imglib2.algorithm.morphology.distance;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.function.Supplier;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
 
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
@@ -58,9 +61,11 @@ import net.imglib2.img.cell.CellImg;
 import net.imglib2.img.cell.CellImgFactory;
 import net.imglib2.type.BooleanType;
 import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
 import net.imglib2.util.ValuePair;
@@ -79,12 +84,35 @@ import net.imglib2.view.composite.RealComposite;
  * The implemented algorithm has complexity O(dn) where d is the number of
  * dimensions of the image, and n is the total number of pixels/voxels.
  * </p>
+ * <p>
+ * Each column is transformed in double precision, and only the intermediate
+ * and final results are stored in the type of the intermediate and target
+ * images. Intermediate results can therefore be stored in single precision
+ * ({@link FloatType}), which halves the memory of the intermediate image
+ * compared to {@link DoubleType}: all values that are integers of magnitude
+ * up to 2^24, e.g. squared Euclidian binary distances up to 2^24 (distances
+ * up to 4096) or L1 binary distances in images up to 2^24 pixels per
+ * dimension with integer weights, are stored exactly. Larger values are
+ * stored with a relative error of at most 2^-24 per pass.
+ * </p>
  *
  * @author Philipp Hanslovsky
  */
 public class DistanceTransform
 {
 
+	/**
+	 * Columns up to this length are processed in primitive arrays, longer
+	 * columns in {@link Img}s.
+	 */
+	private static final long MAX_COLUMN_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Number of neighboring columns gathered together when transforming along
+	 * dimensions other than 0.
+	 */
+	private static final int COLUMN_BLOCK_SIZE = 32;
+
 	/**
 	 *
 	 * Switch for calling convenience method with pre-defined distances.
@@ -970,6 +998,319 @@ public class DistanceTransform
 		transform( converted, tmp, target, d, es, nTasks );
 	}
 
+	/**
+	 * Create binary distance transform and feature transform on
+	 * {@code source} using arbitrary {@link Distance} d. Distances are written
+	 * into {@code target} ({@link DoubleType} recommended). For each pixel,
+	 * the index of the closest foreground pixel is written into
+	 * {@code features}, as the flat index of its position within
+	 * {@code target}, see
+	 * {@link net.imglib2.util.IntervalIndexer#indexToPositionWithOffset(long, long[], long[], long[])}.
+	 * Pixels are assigned -1 if there is no foreground pixel in
+	 * {@code target}, so {@code features} should be of a signed type such as
+	 * {@link LongType}.
+	 * <p>
+	 * The closest foreground pixel is tracked through the lower envelope of
+	 * each pass, so the feature transform comes at the cost of copying the
+	 * features along with the distances. Only foreground pixels within the
+	 * interval of {@code target} are considered.
+	 * </p>
+	 *
+	 * @param source
+	 *            Input function on which distance transform should be computed.
+	 * @param target
+	 *            Intermediate and final results of distance transform.
+	 * @param features
+	 *            Index of the closest foreground pixel, same interval as
+	 *            {@code target}.
+	 * @param d
+	 *            {@link Distance} between two points.
+	 * @param <B>
+	 *            {@link BooleanType} binary mask input
+	 * @param <U>
+	 *            {@link RealType} distance
+	 * @param <L>
+	 *            {@link IntegerType} features
+	 */
+	public static < B extends BooleanType< B >, U extends RealType< U >, L extends IntegerType< L > > void binaryTransform(
+			final RandomAccessible< B > source,
+			final RandomAccessibleInterval< U > target,
+			final RandomAccessibleInterval< L > features,
+			final Distance d )
+	{
+		initializeFeatureTransform( source, target, features );
+		for ( int dim = 0; dim < target.numDimensions(); ++dim )
+		{
+			transformAlongDimensionWithFeatures( target, features, d, dim );
+		}
+	}
+
+	/**
+	 * Create binary distance transform and feature transform on
+	 * {@code source} using arbitrary {@link Distance} d. Distances are written
+	 * into {@code target} ({@link DoubleType} recommended). For each pixel,
+	 * the index of the closest foreground pixel is written into
+	 * {@code features}, as the flat index of its position within
+	 * {@code target}, see
+	 * {@link net.imglib2.util.IntervalIndexer#indexToPositionWithOffset(long, long[], long[], long[])}.
+	 * Pixels are assigned -1 if there is no foreground pixel in
+	 * {@code target}, so {@code features} should be of a signed type such as
+	 * {@link LongType}.
+	 *
+	 * @param source
+	 *            Input function on which distance transform should be computed.
+	 * @param target
+	 *            Intermediate and final results of distance transform.
+	 * @param features
+	 *            Index of the closest foreground pixel, same interval as
+	 *            {@code target}.
+	 * @param d
+	 *            {@link Distance} between two points.
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @param <B>
+	 *            {@link BooleanType} binary mask input
+	 * @param <U>
+	 *            {@link RealType} distance
+	 * @param <L>
+	 *            {@link IntegerType} features
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled (distance transform may be computed only
+	 *             partially)
+	 * @throws ExecutionException
+	 *             if the computation threw an exception (distance transform may
+	 *             be computed only partially)
+	 */
+	public static < B extends BooleanType< B >, U extends RealType< U >, L extends IntegerType< L > > void binaryTransform(
+			final RandomAccessible< B > source,
+			final RandomAccessibleInterval< U > target,
+			final RandomAccessibleInterval< L > features,
+			final Distance d,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		initializeFeatureTransform( source, target, features );
+		for ( int dim = 0; dim < target.numDimensions(); ++dim )
+		{
+			transformAlongDimensionWithFeaturesParallel( target, features, d, dim, es, nTasks );
+		}
+	}
+
+	/**
+	 * Create signed binary distance transform on {@code source} using squared Euclidian (L2) or L1 distance. Background
+	 * pixels are assigned the (positive) distance to the closest foreground
+	 * pixel and foreground pixels are assigned the negated distance to the
+	 * closest background pixel, i.e. the result is negative inside and
+	 * positive outside. As for {@link #binaryTransform}, the squared distance
+	 * is used for squared Euclidian distance, so use
+	 * {@code Math.signum( v ) * Math.sqrt( Math.abs( v ) )} to obtain the
+	 * Euclidian signed distance.
+	 * <p>
+	 * Inside and outside distances are computed in the same passes: each pixel
+	 * is either inside or outside, so both are stored in {@code target} as
+	 * a single signed value, which requires {@code target} to be signed
+	 * ({@link DoubleType} recommended).
+	 * </p>
+	 *
+	 * @param source
+	 *            Input function on which distance transform should be computed.
+	 * @param target
+	 *            Intermediate and final results of distance transform.
+	 * @param distanceType
+	 *            Defines distance to be used: squared Euclidian or L1
+	 * @param weights
+	 *            Individual weights for each dimension, balancing image values
+	 *            and distance (when using squared Euclidian distance, weights
+	 *            should be squared, too).
+	 * @param <B>
+	 *            {@link BooleanType} binary mask input
+	 * @param <U>
+	 *            {@link RealType} intermediate results and output
+	 */
+	public static < B extends BooleanType< B >, U extends RealType< U > > void signedBinaryTransform(
+			final RandomAccessible< B > source,
+			final RandomAccessibleInterval< U > target,
+			final DISTANCE_TYPE distanceType,
+			final double... weights )
+	{
+		final int nDim = target.numDimensions();
+		final double[] w = weights.length == nDim ? weights : DoubleStream.generate( () -> weights.length == 0 ? 1.0 : weights[ 0 ] ).limit( nDim ).toArray();
+		final RandomAccessible< U > signedCost = signedCost( source, target );
+		for ( int dim = 0; dim < nDim; ++dim )
+		{
+			final ColumnTransform transform = signedColumnTransform( target, distanceType, w, dim ).get();
+			if ( dim == 0 )
+				transformColumns( signedCost, target, dim, transform );
+			else
+				transformColumns( target, target, dim, transform );
+		}
+	}
+
+	/**
+	 * Create signed binary distance transform on {@code source} using squared Euclidian (L2) or L1 distance. Background
+	 * pixels are assigned the (positive) distance to the closest foreground
+	 * pixel and foreground pixels are assigned the negated distance to the
+	 * closest background pixel, i.e. the result is negative inside and
+	 * positive outside. As for {@link #binaryTransform}, the squared distance
+	 * is used for squared Euclidian distance, so use
+	 * {@code Math.signum( v ) * Math.sqrt( Math.abs( v ) )} to obtain the
+	 * Euclidian signed distance.
+	 * <p>
+	 * Inside and outside distances are computed in the same passes: each pixel
+	 * is either inside or outside, so both are stored in {@code target} as
+	 * a single signed value, which requires {@code target} to be signed
+	 * ({@link DoubleType} recommended).
+	 * </p>
+	 *
+	 * @param source
+	 *            Input function on which distance transform should be computed.
+	 * @param target
+	 *            Intermediate and final results of distance transform.
+	 * @param distanceType
+	 *            Defines distance to be used: squared Euclidian or L1
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @param weights
+	 *            Individual weights for each dimension, balancing image values
+	 *            and distance (when using squared Euclidian distance, weights
+	 *            should be squared, too).
+	 * @param <B>
+	 *            {@link BooleanType} binary mask input
+	 * @param <U>
+	 *            {@link RealType} intermediate results and output
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled (distance transform may be computed only
+	 *             partially)
+	 * @throws ExecutionException
+	 *             if the computation threw an exception (distance transform may
+	 *             be computed only partially)
+	 */
+	public static < B extends BooleanType< B >, U extends RealType< U > > void signedBinaryTransform(
+			final RandomAccessible< B > source,
+			final RandomAccessibleInterval< U > target,
+			final DISTANCE_TYPE distanceType,
+			final ExecutorService es,
+			final int nTasks,
+			final double... weights ) throws InterruptedException, ExecutionException
+	{
+		final int nDim = target.numDimensions();
+		final double[] w = weights.length == nDim ? weights : DoubleStream.generate( () -> weights.length == 0 ? 1.0 : weights[ 0 ] ).limit( nDim ).toArray();
+		final RandomAccessible< U > signedCost = signedCost( source, target );
+		for ( int dim = 0; dim < nDim; ++dim )
+		{
+			final Supplier< ColumnTransform > transform = signedColumnTransform( target, distanceType, w, dim );
+			if ( dim == 0 )
+				transformSignedAlongDimensionParallel( signedCost, target, transform, dim, es, nTasks );
+			else
+				transformSignedAlongDimensionParallel( target, target, transform, dim, es, nTasks );
+		}
+	}
+
+	/**
+	 * Create signed binary distance transform on {@code source} using arbitrary {@link Distance} d. Background
+	 * pixels are assigned the (positive) distance to the closest foreground
+	 * pixel and foreground pixels are assigned the negated distance to the
+	 * closest background pixel, i.e. the result is negative inside and
+	 * positive outside. As for {@link #binaryTransform}, the squared distance
+	 * is used for squared Euclidian distance, so use
+	 * {@code Math.signum( v ) * Math.sqrt( Math.abs( v ) )} to obtain the
+	 * Euclidian signed distance.
+	 * <p>
+	 * Inside and outside distances are computed in the same passes: each pixel
+	 * is either inside or outside, so both are stored in {@code target} as
+	 * a single signed value, which requires {@code target} to be signed
+	 * ({@link DoubleType} recommended).
+	 * </p>
+	 *
+	 * @param source
+	 *            Input function on which distance transform should be computed.
+	 * @param target
+	 *            Intermediate and final results of distance transform.
+	 * @param d
+	 *            {@link Distance} between two points.
+	 * @param <B>
+	 *            {@link BooleanType} binary mask input
+	 * @param <U>
+	 *            {@link RealType} intermediate results and output
+	 */
+	public static < B extends BooleanType< B >, U extends RealType< U > > void signedBinaryTransform(
+			final RandomAccessible< B > source,
+			final RandomAccessibleInterval< U > target,
+			final Distance d )
+	{
+		final RandomAccessible< U > signedCost = signedCost( source, target );
+		for ( int dim = 0; dim < target.numDimensions(); ++dim )
+		{
+			final ColumnTransform transform = signedColumnTransform( target, d, dim ).get();
+			if ( dim == 0 )
+				transformColumns( signedCost, target, dim, transform );
+			else
+				transformColumns( target, target, dim, transform );
+		}
+	}
+
+	/**
+	 * Create signed binary distance transform on {@code source} using arbitrary {@link Distance} d. Background
+	 * pixels are assigned the (positive) distance to the closest foreground
+	 * pixel and foreground pixels are assigned the negated distance to the
+	 * closest background pixel, i.e. the result is negative inside and
+	 * positive outside. As for {@link #binaryTransform}, the squared distance
+	 * is used for squared Euclidian distance, so use
+	 * {@code Math.signum( v ) * Math.sqrt( Math.abs( v ) )} to obtain the
+	 * Euclidian signed distance.
+	 * <p>
+	 * Inside and outside distances are computed in the same passes: each pixel
+	 * is either inside or outside, so both are stored in {@code target} as
+	 * a single signed value, which requires {@code target} to be signed
+	 * ({@link DoubleType} recommended).
+	 * </p>
+	 *
+	 * @param source
+	 *            Input function on which distance transform should be computed.
+	 * @param target
+	 *            Intermediate and final results of distance transform.
+	 * @param d
+	 *            {@link Distance} between two points.
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @param <B>
+	 *            {@link BooleanType} binary mask input
+	 * @param <U>
+	 *            {@link RealType} intermediate results and output
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled (distance transform may be computed only
+	 *             partially)
+	 * @throws ExecutionException
+	 *             if the computation threw an exception (distance transform may
+	 *             be computed only partially)
+	 */
+	public static < B extends BooleanType< B >, U extends RealType< U > > void signedBinaryTransform(
+			final RandomAccessible< B > source,
+			final RandomAccessibleInterval< U > target,
+			final Distance d,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		final RandomAccessible< U > signedCost = signedCost( source, target );
+		for ( int dim = 0; dim < target.numDimensions(); ++dim )
+		{
+			final Supplier< ColumnTransform > transform = signedColumnTransform( target, d, dim );
+			if ( dim == 0 )
+				transformSignedAlongDimensionParallel( signedCost, target, transform, dim, es, nTasks );
+			else
+				transformSignedAlongDimensionParallel( target, target, transform, dim, es, nTasks );
+		}
+	}
+
 	/**
 	 * Create binary distance transform on {@code source} using L1 distance.
 	 * Intermediate results will be stored in {@code tmp} ({@link DoubleType}
@@ -1097,7 +1438,31 @@ public class DistanceTransform
 		}
 	}
 
-	private static < T extends RealType< T >, U extends RealType< U > > void transformAlongDimension(
+	static < T extends RealType< T >, U extends RealType< U > > void transformAlongDimension(
+			final RandomAccessible< T > source,
+			final RandomAccessibleInterval< U > target,
+			final Distance d,
+			final int dim )
+	{
+		final long size = target.dimension( dim );
+		if ( size > MAX_COLUMN_ARRAY_SIZE )
+		{
+			transformAlongDimensionComposite( source, target, d, dim );
+			return;
+		}
+
+		final int n = ( int ) size;
+		final int[] lowerBoundDistanceIndex = new int[ n ];
+		final double[] envelopeIntersectLocation = new double[ n + 1 ];
+		transformColumns( source, target, dim, ( column, transformed ) -> transformSingleColumn( column, transformed, lowerBoundDistanceIndex, envelopeIntersectLocation, d, dim, n, null ) );
+	}
+
+	/**
+	 * Fallback of
+	 * {@link #transformAlongDimension(RandomAccessible, RandomAccessibleInterval, Distance, int)}
+	 * for columns too long to be stored in an array.
+	 */
+	private static < T extends RealType< T >, U extends RealType< U > > void transformAlongDimensionComposite(
 			final RandomAccessible< T > source,
 			final RandomAccessibleInterval< U > target,
 			final Distance d,
@@ -1124,6 +1489,230 @@ public class DistanceTransform
 		}
 	}
 
+	private static < B extends BooleanType< B >, U extends RealType< U >, L extends IntegerType< L > > void initializeFeatureTransform(
+			final RandomAccessible< B > source,
+			final RandomAccessibleInterval< U > target,
+			final RandomAccessibleInterval< L > features )
+	{
+		if ( !Intervals.equals( target, features ) )
+		{
+			throw new IllegalArgumentException( "Distance and feature intervals do not match." );
+		}
+		for ( int dim = 0; dim < target.numDimensions(); ++dim )
+		{
+			if ( target.dimension( dim ) > MAX_COLUMN_ARRAY_SIZE )
+			{
+				throw new IllegalArgumentException( "Feature transform does not support dimensions larger than " + MAX_COLUMN_ARRAY_SIZE + "." );
+			}
+		}
+
+		final U maxVal = Util.getTypeFromInterval( target ).createVariable();
+		maxVal.setReal( maxVal.getMaxValue() );
+		final RandomAccess< B > s = source.randomAccess( target );
+		final Cursor< U > t = Views.flatIterable( target ).localizingCursor();
+		final Cursor< L > f = Views.flatIterable( features ).cursor();
+		// flat iteration index is the index within the interval
+		for ( long index = 0; t.hasNext(); ++index )
+		{
+			t.fwd();
+			f.fwd();
+			s.setPosition( t );
+			if ( s.get().get() )
+			{
+				t.get().setZero();
+				f.get().setInteger( index );
+			}
+			else
+			{
+				t.get().set( maxVal );
+				f.get().setInteger( -1 );
+			}
+		}
+	}
+
+	private static < U extends RealType< U >, L extends IntegerType< L > > void transformAlongDimensionWithFeatures(
+			final RandomAccessibleInterval< U > target,
+			final RandomAccessibleInterval< L > features,
+			final Distance d,
+			final int dim )
+	{
+		final int n = ( int ) target.dimension( dim );
+		final int[] lowerBoundDistanceIndex = new int[ n ];
+		final double[] envelopeIntersectLocation = new double[ n + 1 ];
+		final int[] argmin = new int[ n ];
+		transformColumns( target, target, features, dim, ( column, transformed ) -> transformSingleColumn( column, transformed, lowerBoundDistanceIndex, envelopeIntersectLocation, d, dim, n, argmin ), argmin );
+	}
+
+	private static < U extends RealType< U >, L extends IntegerType< L > > void transformAlongDimensionWithFeaturesParallel(
+			final RandomAccessibleInterval< U > target,
+			final RandomAccessibleInterval< L > features,
+			final Distance d,
+			final int dim,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		if ( target.numDimensions() == 1 )
+		{
+			transformAlongDimensionWithFeatures( target, features, d, dim );
+			return;
+		}
+
+		int largestDim = getLargestDimension( Views.hyperSlice( target, dim, target.min( dim ) ) );
+		// ignore dimension along which we calculate transform
+		if ( largestDim >= dim )
+		{
+			largestDim += 1;
+		}
+		final long size = target.dimension( largestDim );
+		final long stepPerChunk = Math.max( size / nTasks, 1 );
+
+		final long[] min = Intervals.minAsLongArray( target );
+		final long[] max = Intervals.maxAsLongArray( target );
+
+		final long largestDimMin = target.min( largestDim );
+		final long largestDimMax = target.max( largestDim );
+
+		final ArrayList< Callable< Void > > tasks = new ArrayList<>();
+		for ( long m = largestDimMin, M = largestDimMin + stepPerChunk - 1; m <= largestDimMax; m += stepPerChunk, M += stepPerChunk )
+		{
+			min[ largestDim ] = m;
+			max[ largestDim ] = Math.min( M, largestDimMax );
+			final Interval fi = new FinalInterval( min, max );
+			tasks.add( () -> {
+				transformAlongDimensionWithFeatures( Views.interval( target, fi ), Views.interval( features, fi ), d, dim );
+				return null;
+			} );
+		}
+
+		invokeAllAndWait( es, tasks );
+	}
+
+	private static < B extends BooleanType< B >, U extends RealType< U > > RandomAccessible< U > signedCost(
+			final RandomAccessible< B > source,
+			final RandomAccessibleInterval< U > target )
+	{
+		final U maxVal = Util.getTypeFromInterval( target ).createVariable();
+		maxVal.setReal( maxVal.getMaxValue() );
+		final U minVal = maxVal.createVariable();
+		minVal.setReal( -maxVal.getMaxValue() );
+		// foreground: inside distance (negative), background: outside distance
+		// (positive)
+		return Converters.convert( source, ( s, t ) -> t.set( s.get() ? minVal : maxVal ), maxVal.createVariable() );
+	}
+
+	private static Supplier< ColumnTransform > signedColumnTransform(
+			final Interval target,
+			final DISTANCE_TYPE distanceType,
+			final double[] weights,
+			final int dim )
+	{
+		switch ( distanceType )
+		{
+		case L1:
+			final int n = signedColumnSize( target, dim );
+			return () -> signedColumnTransform( ( column, transformed ) -> transformL1SingleColumn( column, transformed, weights[ dim ], n ), n );
+		case EUCLIDIAN:
+		default:
+			final boolean isIsotropic = Arrays.stream( weights ).allMatch( w -> w == weights[ 0 ] );
+			return signedColumnTransform( target, isIsotropic ? new EuclidianDistanceIsotropic( weights[ 0 ] ) : new EuclidianDistanceAnisotropic( weights ), dim );
+		}
+	}
+
+	private static Supplier< ColumnTransform > signedColumnTransform(
+			final Interval target,
+			final Distance d,
+			final int dim )
+	{
+		final int n = signedColumnSize( target, dim );
+		return () -> {
+			final int[] lowerBoundDistanceIndex = new int[ n ];
+			final double[] envelopeIntersectLocation = new double[ n + 1 ];
+			return signedColumnTransform( ( column, transformed ) -> transformSingleColumn( column, transformed, lowerBoundDistanceIndex, envelopeIntersectLocation, d, dim, n, null ), n );
+		};
+	}
+
+	private static int signedColumnSize( final Interval target, final int dim )
+	{
+		final long size = target.dimension( dim );
+		if ( size > MAX_COLUMN_ARRAY_SIZE )
+		{
+			throw new IllegalArgumentException( "Signed distance transform does not support dimensions larger than " + MAX_COLUMN_ARRAY_SIZE + "." );
+		}
+		return ( int ) size;
+	}
+
+	/**
+	 * Split signed column into outside (positive) and inside (negative)
+	 * column, transform both, and merge again. Outside and inside distances
+	 * are zero for foreground and background pixels, respectively, throughout
+	 * all passes.
+	 */
+	private static ColumnTransform signedColumnTransform( final ColumnTransform transform, final int n )
+	{
+		final double[] outside = new double[ n ];
+		final double[] inside = new double[ n ];
+		final double[] transformedOutside = new double[ n ];
+		final double[] transformedInside = new double[ n ];
+		return ( column, transformed ) -> {
+			for ( int i = 0; i < n; ++i )
+			{
+				final double v = column[ i ];
+				outside[ i ] = v > 0 ? v : 0.0;
+				inside[ i ] = v < 0 ? -v : 0.0;
+			}
+			transform.transform( outside, transformedOutside );
+			transform.transform( inside, transformedInside );
+			for ( int i = 0; i < n; ++i )
+			{
+				transformed[ i ] = transformedOutside[ i ] > 0 ? transformedOutside[ i ] : -transformedInside[ i ];
+			}
+		};
+	}
+
+	private static < T extends RealType< T >, U extends RealType< U > > void transformSignedAlongDimensionParallel(
+			final RandomAccessible< T > source,
+			final RandomAccessibleInterval< U > target,
+			final Supplier< ColumnTransform > transform,
+			final int dim,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		if ( target.numDimensions() == 1 )
+		{
+			transformColumns( source, target, dim, transform.get() );
+			return;
+		}
+
+		int largestDim = getLargestDimension( Views.hyperSlice( target, dim, target.min( dim ) ) );
+		// ignore dimension along which we calculate transform
+		if ( largestDim >= dim )
+		{
+			largestDim += 1;
+		}
+		final long size = target.dimension( largestDim );
+		final long stepPerChunk = Math.max( size / nTasks, 1 );
+
+		final long[] min = Intervals.minAsLongArray( target );
+		final long[] max = Intervals.maxAsLongArray( target );
+
+		final long largestDimMin = target.min( largestDim );
+		final long largestDimMax = target.max( largestDim );
+
+		final ArrayList< Callable< Void > > tasks = new ArrayList<>();
+		for ( long m = largestDimMin, M = largestDimMin + stepPerChunk - 1; m <= largestDimMax; m += stepPerChunk, M += stepPerChunk )
+		{
+			min[ largestDim ] = m;
+			max[ largestDim ] = Math.min( M, largestDimMax );
+			final Interval fi = new FinalInterval( min, max );
+			tasks.add( () -> {
+				transformColumns( source, Views.interval( target, fi ), dim, transform.get() );
+				return null;
+			} );
+		}
+
+		invokeAllAndWait( es, tasks );
+	}
+
 	private static < T extends RealType< T >, U extends RealType< U > > void transformAlongDimensionParallel(
 			final RandomAccessible< T > source,
 			final RandomAccessibleInterval< U > target,
@@ -1162,6 +1751,57 @@ public class DistanceTransform
 		invokeAllAndWait( es, tasks );
 	}
 
+	private static void transformSingleColumn(
+			final double[] source,
+			final double[] target,
+			final int[] lowerBoundDistanceIndex,
+			final double[] envelopeIntersectLocation,
+			final Distance d,
+			final int dim,
+			final int size,
+			final int[] argmin )
+	{
+		int k = 0;
+
+		lowerBoundDistanceIndex[ 0 ] = 0;
+		envelopeIntersectLocation[ 0 ] = Double.NEGATIVE_INFINITY;
+		envelopeIntersectLocation[ 1 ] = Double.POSITIVE_INFINITY;
+		for ( int position = 1; position < size; ++position )
+		{
+			int envelopeIndexAtK = lowerBoundDistanceIndex[ k ];
+			final double sourceAtPosition = source[ position ];
+			double s = d.intersect( envelopeIndexAtK, source[ envelopeIndexAtK ], position, sourceAtPosition, dim );
+
+			while ( s <= envelopeIntersectLocation[ k ] )
+			{
+				--k;
+				envelopeIndexAtK = lowerBoundDistanceIndex[ k ];
+				s = d.intersect( envelopeIndexAtK, source[ envelopeIndexAtK ], position, sourceAtPosition, dim );
+			}
+			++k;
+			lowerBoundDistanceIndex[ k ] = position;
+			envelopeIntersectLocation[ k ] = s;
+			envelopeIntersectLocation[ k + 1 ] = Double.POSITIVE_INFINITY;
+		}
+
+		k = 0;
+
+		for ( int position = 0; position < size; ++position )
+		{
+			while ( envelopeIntersectLocation[ k + 1 ] < position )
+			{
+				++k;
+			}
+			final int envelopeIndexAtK = lowerBoundDistanceIndex[ k ];
+			target[ position ] = d.evaluate( position, envelopeIndexAtK, source[ envelopeIndexAtK ], dim );
+			if ( argmin != null )
+			{
+				argmin[ position ] = envelopeIndexAtK;
+			}
+		}
+
+	}
+
 	private static < T extends RealType< T >, U extends RealType< U > > void transformSingleColumn(
 			final RealComposite< T > source,
 			final RealComposite< U > target,
@@ -1210,7 +1850,29 @@ public class DistanceTransform
 
 	}
 
-	private static < T extends RealType< T >, U extends RealType< U > > void transformL1AlongDimension(
+	static < T extends RealType< T >, U extends RealType< U > > void transformL1AlongDimension(
+			final RandomAccessible< T > source,
+			final RandomAccessibleInterval< U > target,
+			final int dim,
+			final double weight )
+	{
+		final long size = target.dimension( dim );
+		if ( size > MAX_COLUMN_ARRAY_SIZE )
+		{
+			transformL1AlongDimensionComposite( source, target, dim, weight );
+			return;
+		}
+
+		final int n = ( int ) size;
+		transformColumns( source, target, dim, ( column, transformed ) -> transformL1SingleColumn( column, transformed, weight, n ) );
+	}
+
+	/**
+	 * Fallback of
+	 * {@link #transformL1AlongDimension(RandomAccessible, RandomAccessibleInterval, int, double)}
+	 * for columns too long to be stored in an array.
+	 */
+	private static < T extends RealType< T >, U extends RealType< U > > void transformL1AlongDimensionComposite(
 			final RandomAccessible< T > source,
 			final RandomAccessibleInterval< U > target,
 			final int dim,
@@ -1274,6 +1936,27 @@ public class DistanceTransform
 
 	}
 
+	private static void transformL1SingleColumn(
+			final double[] source,
+			final double[] target,
+			final double weight,
+			final int size )
+	{
+
+		target[ 0 ] = source[ 0 ];
+
+		for ( int i = 1; i < size; ++i )
+		{
+			target[ i ] = Math.min( source[ i ], target[ i - 1 ] + weight );
+		}
+
+		for ( int i = size - 2; i > -1; --i )
+		{
+			target[ i ] = Math.min( target[ i ], target[ i + 1 ] + weight );
+		}
+
+	}
+
 	private static < T extends RealType< T >, U extends RealType< U > > void transformL1SingleColumn(
 			final RealComposite< T > source,
 			final RealComposite< U > target,
@@ -1298,6 +1981,182 @@ public class DistanceTransform
 
 	}
 
+	/**
+	 * Transform of a single column, from {@code column} into
+	 * {@code transformed}.
+	 */
+	private static interface ColumnTransform
+	{
+		void transform( double[] column, double[] transformed );
+	}
+
+	/**
+	 * Apply {@code transform} to all columns of {@code target} along
+	 * dimension {@code dim}, reading from {@code source}.
+	 */
+	private static < T extends RealType< T >, U extends RealType< U > > void transformColumns(
+			final RandomAccessible< T > source,
+			final RandomAccessibleInterval< U > target,
+			final int dim,
+			final ColumnTransform transform )
+	{
+		transformColumns( source, target, null, dim, transform, null );
+	}
+
+	/**
+	 * Apply {@code transform} to all columns of {@code target} along
+	 * dimension {@code dim}, reading from {@code source}. If
+	 * {@code features} is not {@code null}, its columns are permuted along:
+	 * {@code transform} must write into {@code argmin} the position within
+	 * the column that each transformed value originates from, and the feature
+	 * found there is written at that position.
+	 * <p>
+	 * Along dimension 0, columns are contiguous and are copied one at a time.
+	 * Along other dimensions, walking a single column jumps by a large stride
+	 * at each step. Instead, up to {@link #COLUMN_BLOCK_SIZE} neighboring
+	 * columns are gathered together, one short contiguous run along dimension
+	 * 0 per position along {@code dim}, into a buffer holding one column after
+	 * the other. The columns are transformed in the buffer and scattered back
+	 * the same way.
+	 */
+	private static < T extends RealType< T >, U extends RealType< U > > void transformColumns(
+			final RandomAccessible< T > source,
+			final RandomAccessibleInterval< U > target,
+			final RandomAccessibleInterval< ? extends IntegerType< ? > > features,
+			final int dim,
+			final ColumnTransform transform,
+			final int[] argmin )
+	{
+		final int n = ( int ) target.dimension( dim );
+		final double[] column = new double[ n ];
+		final double[] transformed = new double[ n ];
+		final RandomAccess< T > s = source.randomAccess( target );
+		final RandomAccess< U > t = target.randomAccess();
+		final RandomAccess< ? extends IntegerType< ? > > f = features == null ? null : features.randomAccess();
+		final long[] featureColumn = features == null ? null : new long[ n ];
+
+		final long[] min = Intervals.minAsLongArray( target );
+		final long[] max = Intervals.maxAsLongArray( target );
+		max[ dim ] = min[ dim ];
+
+		if ( dim == 0 )
+		{
+			final Cursor< U > columnStarts = Views.flatIterable( Views.interval( target, min, max ) ).localizingCursor();
+			while ( columnStarts.hasNext() )
+			{
+				columnStarts.fwd();
+				s.setPosition( columnStarts );
+				t.setPosition( columnStarts );
+				for ( int i = 0; i < n; ++i, s.fwd( dim ) )
+				{
+					column[ i ] = s.get().getRealDouble();
+				}
+				transform.transform( column, transformed );
+				for ( int i = 0; i < n; ++i, t.fwd( dim ) )
+				{
+					t.get().setReal( transformed[ i ] );
+				}
+				if ( f != null )
+				{
+					f.setPosition( columnStarts );
+					for ( int i = 0; i < n; ++i, f.fwd( dim ) )
+					{
+						featureColumn[ i ] = f.get().getIntegerLong();
+					}
+					f.setPosition( columnStarts );
+					for ( int i = 0; i < n; ++i, f.fwd( dim ) )
+					{
+						f.get().setInteger( featureColumn[ argmin[ i ] ] );
+					}
+				}
+			}
+			return;
+		}
+
+		final long min0 = min[ 0 ];
+		final long max0 = max[ 0 ];
+		final int blockWidth = ( int ) Math.max( Math.min( Math.min( target.dimension( 0 ), COLUMN_BLOCK_SIZE ), MAX_COLUMN_ARRAY_SIZE / n ), 1 );
+		final double[] block = new double[ blockWidth * n ];
+		final long[] featureBlock = features == null ? null : new long[ blockWidth * n ];
+		max[ 0 ] = min0;
+		final Cursor< U > blockStarts = Views.flatIterable( Views.interval( target, min, max ) ).localizingCursor();
+		while ( blockStarts.hasNext() )
+		{
+			blockStarts.fwd();
+			for ( long x = min0; x <= max0; x += blockWidth )
+			{
+				final int width = ( int ) Math.min( blockWidth, max0 - x + 1 );
+
+				s.setPosition( blockStarts );
+				s.setPosition( x, 0 );
+				for ( int i = 0; i < n; ++i )
+				{
+					for ( int b = 0; b < width; ++b, s.fwd( 0 ) )
+					{
+						block[ b * n + i ] = s.get().getRealDouble();
+					}
+					s.move( -width, 0 );
+					s.fwd( dim );
+				}
+				if ( f != null )
+				{
+					f.setPosition( blockStarts );
+					f.setPosition( x, 0 );
+					for ( int i = 0; i < n; ++i )
+					{
+						for ( int b = 0; b < width; ++b, f.fwd( 0 ) )
+						{
+							featureBlock[ b * n + i ] = f.get().getIntegerLong();
+						}
+						f.move( -width, 0 );
+						f.fwd( dim );
+					}
+				}
+
+				for ( int b = 0; b < width; ++b )
+				{
+					System.arraycopy( block, b * n, column, 0, n );
+					transform.transform( column, transformed );
+					System.arraycopy( transformed, 0, block, b * n, n );
+					if ( f != null )
+					{
+						System.arraycopy( featureBlock, b * n, featureColumn, 0, n );
+						for ( int i = 0; i < n; ++i )
+						{
+							featureBlock[ b * n + i ] = featureColumn[ argmin[ i ] ];
+						}
+					}
+				}
+
+				t.setPosition( blockStarts );
+				t.setPosition( x, 0 );
+				for ( int i = 0; i < n; ++i )
+				{
+					for ( int b = 0; b < width; ++b, t.fwd( 0 ) )
+					{
+						t.get().setReal( block[ b * n + i ] );
+					}
+					t.move( -width, 0 );
+					t.fwd( dim );
+				}
+				if ( f != null )
+				{
+					f.setPosition( blockStarts );
+					f.setPosition( x, 0 );
+					for ( int i = 0; i < n; ++i )
+					{
+						for ( int b = 0; b < width; ++b, f.fwd( 0 ) )
+						{
+							f.get().setInteger( featureBlock[ b * n + i ] );
+						}
+						f.move( -width, 0 );
+						f.fwd( dim );
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * Convenience method to invoke all tasks with a given
 	 * {@link ExecutorService}.
@@ -1336,7 +2195,7 @@ public class DistanceTransform
 		return IntStream.range( 0, interval.numDimensions() ).mapToObj( i -> new ValuePair<>( i, interval.dimension( i ) ) ).max( ( p1, p2 ) -> Long.compare( p1.getB(), p2.getB() ) ).get().getA();
 	}
 
-	private static class BinaryMaskToCost< B extends BooleanType< B >, R extends RealType< R > > implements Converter< B, R >
+	static class BinaryMaskToCost< B extends BooleanType< B >, R extends RealType< R > > implements Converter< B, R >
 	{
 
 		private final R maxValForR;
@@ -0,0 +1,349 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.morphology.distance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.DoubleStream;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Distance transforms of label images. Every background pixel is assigned the
+ * label of the closest labeled pixel, i.e. the labels are expanded into a
+ * (weighted) Voronoi partition of the image. Optionally, expansion is limited
+ * to a maximum distance, which expands all labels simultaneously without
+ * merging neighboring labels: a pixel that is closer to another label is
+ * never claimed.
+ * <p>
+ * All labels are processed at once by the feature transform of
+ * {@link DistanceTransform#binaryTransform(RandomAccessible, RandomAccessibleInterval, RandomAccessibleInterval, Distance)},
+ * so the cost is linear in the number of pixels, independent of the number
+ * of labels and the expansion distance. Per-dimension weights account for
+ * anisotropic sampling like in {@link EuclidianDistanceAnisotropic}:
+ * distances are squared Euclidian distances {@code sum_i w_i * x_i * x_i}, so
+ * for a pixel spacing {@code s_i} use {@code w_i = s_i * s_i} to measure
+ * distances in physical units.
+ * </p>
+ * <p>
+ * Labels are read from {@code labels} at the position of the closest labeled
+ * pixel only after the distance transform has finished. Labeled pixels keep
+ * their label, so {@code target} may be the same image as {@code labels}.
+ * </p>
+ */
+public class LabelDistanceTransform
+{
+
+	/**
+	 * Assign the label of the closest labeled pixel to every pixel in
+	 * {@code target}, and the squared distance to it to {@code distance}.
+	 *
+	 * @param labels
+	 *            input labels
+	 * @param target
+	 *            output labels, can be the same as {@code labels}
+	 * @param distance
+	 *            squared distance to the closest labeled pixel, same interval
+	 *            as {@code target} ({@link DoubleType} recommended)
+	 * @param background
+	 *            background label, i.e. pixels to be assigned a label
+	 * @param weights
+	 *            weight of the squared distance, either none (weight 1), one
+	 *            for all dimensions or one per dimension
+	 * @throws IllegalArgumentException
+	 *             for any other number of weights
+	 */
+	public static < L extends IntegerType< L >, M extends IntegerType< M >, U extends RealType< U > > void voronoi(
+			final RandomAccessible< L > labels,
+			final RandomAccessibleInterval< M > target,
+			final RandomAccessibleInterval< U > distance,
+			final long background,
+			final double... weights )
+	{
+		final RandomAccessibleInterval< LongType > features = createFeatures( target );
+		DistanceTransform.binaryTransform( mask( labels, background ), distance, features, createDistance( target.numDimensions(), weights ) );
+		assignLabels( labels, target, distance, features, background, Double.POSITIVE_INFINITY, 0, Intervals.numElements( target ) );
+	}
+
+	/**
+	 * Assign the label of the closest labeled pixel to every pixel in
+	 * {@code target}, and the squared distance to it to {@code distance}, in
+	 * parallel.
+	 *
+	 * @param labels
+	 *            input labels
+	 * @param target
+	 *            output labels, can be the same as {@code labels}
+	 * @param distance
+	 *            squared distance to the closest labeled pixel, same interval
+	 *            as {@code target} ({@link DoubleType} recommended)
+	 * @param background
+	 *            background label, i.e. pixels to be assigned a label
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @param weights
+	 *            weight of the squared distance, either none (weight 1), one
+	 *            for all dimensions or one per dimension
+	 * @throws IllegalArgumentException
+	 *             for any other number of weights
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < L extends IntegerType< L >, M extends IntegerType< M >, U extends RealType< U > > void voronoi(
+			final RandomAccessible< L > labels,
+			final RandomAccessibleInterval< M > target,
+			final RandomAccessibleInterval< U > distance,
+			final long background,
+			final ExecutorService es,
+			final int nTasks,
+			final double... weights ) throws InterruptedException, ExecutionException
+	{
+		final RandomAccessibleInterval< LongType > features = createFeatures( target );
+		DistanceTransform.binaryTransform( mask( labels, background ), distance, features, createDistance( target.numDimensions(), weights ), es, nTasks );
+		assignLabels( labels, target, distance, features, background, Double.POSITIVE_INFINITY, es, nTasks );
+	}
+
+	/**
+	 * Expand all labels by up to {@code maxDistance}. Background pixels that
+	 * are within {@code maxDistance} of a labeled pixel are assigned the label
+	 * of the closest labeled pixel, labeled pixels keep their label and all
+	 * other pixels are set to {@code background}.
+	 *
+	 * @param labels
+	 *            input labels
+	 * @param target
+	 *            output labels, can be the same as {@code labels}
+	 * @param background
+	 *            background label, i.e. pixels to be assigned a label
+	 * @param maxDistance
+	 *            maximum (not squared) distance by which labels are expanded;
+	 *            squared distances are stored in single precision, see
+	 *            {@link DistanceTransform}
+	 * @param weights
+	 *            weight of the squared distance, either none (weight 1), one
+	 *            for all dimensions or one per dimension
+	 * @throws IllegalArgumentException
+	 *             for any other number of weights
+	 */
+	public static < L extends IntegerType< L >, M extends IntegerType< M > > void expandLabels(
+			final RandomAccessible< L > labels,
+			final RandomAccessibleInterval< M > target,
+			final long background,
+			final double maxDistance,
+			final double... weights )
+	{
+		final RandomAccessibleInterval< FloatType > distance = create( target, new FloatType() );
+		final RandomAccessibleInterval< LongType > features = createFeatures( target );
+		DistanceTransform.binaryTransform( mask( labels, background ), distance, features, createDistance( target.numDimensions(), weights ) );
+		assignLabels( labels, target, distance, features, background, maxDistance * maxDistance, 0, Intervals.numElements( target ) );
+	}
+
+	/**
+	 * Expand all labels by up to {@code maxDistance}, in parallel. Background
+	 * pixels that are within {@code maxDistance} of a labeled pixel are
+	 * assigned the label of the closest labeled pixel, labeled pixels keep
+	 * their label and all other pixels are set to {@code background}.
+	 *
+	 * @param labels
+	 *            input labels
+	 * @param target
+	 *            output labels, can be the same as {@code labels}
+	 * @param background
+	 *            background label, i.e. pixels to be assigned a label
+	 * @param maxDistance
+	 *            maximum (not squared) distance by which labels are expanded;
+	 *            squared distances are stored in single precision, see
+	 *            {@link DistanceTransform}
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @param weights
+	 *            weight of the squared distance, either none (weight 1), one
+	 *            for all dimensions or one per dimension
+	 * @throws IllegalArgumentException
+	 *             for any other number of weights
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < L extends IntegerType< L >, M extends IntegerType< M > > void expandLabels(
+			final RandomAccessible< L > labels,
+			final RandomAccessibleInterval< M > target,
+			final long background,
+			final double maxDistance,
+			final ExecutorService es,
+			final int nTasks,
+			final double... weights ) throws InterruptedException, ExecutionException
+	{
+		final RandomAccessibleInterval< FloatType > distance = create( target, new FloatType() );
+		final RandomAccessibleInterval< LongType > features = createFeatures( target );
+		DistanceTransform.binaryTransform( mask( labels, background ), distance, features, createDistance( target.numDimensions(), weights ), es, nTasks );
+		assignLabels( labels, target, distance, features, background, maxDistance * maxDistance, es, nTasks );
+	}
+
+	private static < L extends IntegerType< L >, M extends IntegerType< M >, U extends RealType< U > > void assignLabels(
+			final RandomAccessible< L > labels,
+			final RandomAccessibleInterval< M > target,
+			final RandomAccessibleInterval< U > distance,
+			final RandomAccessibleInterval< LongType > features,
+			final long background,
+			final double maxSquaredDistance,
+			final ExecutorService es,
+			final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		final long size = Intervals.numElements( target );
+		final long stepPerTask = Math.max( ( size + nTasks - 1 ) / nTasks, 1 );
+		final List< Callable< Void > > tasks = new ArrayList<>();
+		for ( long start = 0; start < size; start += stepPerTask )
+		{
+			final long s = start;
+			final long count = Math.min( stepPerTask, size - start );
+			tasks.add( () -> {
+				assignLabels( labels, target, distance, features, background, maxSquaredDistance, s, count );
+				return null;
+			} );
+		}
+
+		final List< Future< Void > > futures = es.invokeAll( tasks );
+		for ( final Future< Void > f : futures )
+		{
+			f.get();
+		}
+	}
+
+	private static < L extends IntegerType< L >, M extends IntegerType< M >, U extends RealType< U > > void assignLabels(
+			final RandomAccessible< L > labels,
+			final RandomAccessibleInterval< M > target,
+			final RandomAccessibleInterval< U > distance,
+			final RandomAccessibleInterval< LongType > features,
+			final long background,
+			final double maxSquaredDistance,
+			final long start,
+			final long count )
+	{
+		final long[] dimensions = Intervals.dimensionsAsLongArray( target );
+		final long[] min = Intervals.minAsLongArray( target );
+		final long[] position = new long[ dimensions.length ];
+
+		final RandomAccess< L > labelsAccess = labels.randomAccess( target );
+		final Cursor< M > t = Views.flatIterable( target ).cursor();
+		final Cursor< U > d = Views.flatIterable( distance ).cursor();
+		final Cursor< LongType > f = Views.flatIterable( features ).cursor();
+		t.jumpFwd( start );
+		d.jumpFwd( start );
+		f.jumpFwd( start );
+		for ( long i = 0; i < count; ++i )
+		{
+			t.fwd();
+			d.fwd();
+			f.fwd();
+			final long feature = f.get().get();
+			if ( feature < 0 )
+			{
+				// no labeled pixel at all
+				t.get().setInteger( background );
+			}
+			else if ( d.get().getRealDouble() <= maxSquaredDistance )
+			{
+				IntervalIndexer.indexToPositionWithOffset( feature, dimensions, min, position );
+				labelsAccess.setPosition( position );
+				t.get().setInteger( labelsAccess.get().getIntegerLong() );
+			}
+			else
+			{
+				t.get().setInteger( background );
+			}
+		}
+	}
+
+	private static < L extends IntegerType< L > > RandomAccessible< BitType > mask( final RandomAccessible< L > labels, final long background )
+	{
+		return Converters.convert( labels, ( s, t ) -> t.set( s.getIntegerLong() != background ), new BitType() );
+	}
+
+	private static Distance createDistance( final int nDim, final double... weights )
+	{
+		if ( weights.length > 1 && weights.length != nDim )
+		{
+			throw new IllegalArgumentException( "Expected 0, 1 or " + nDim + " weights, got " + weights.length + "." );
+		}
+		final double[] w = weights.length == nDim ? weights : DoubleStream.generate( () -> weights.length == 0 ? 1.0 : weights[ 0 ] ).limit( nDim ).toArray();
+		return weights.length <= 1 ? new EuclidianDistanceIsotropic( w[ 0 ] ) : new EuclidianDistanceAnisotropic( w );
+	}
+
+	private static RandomAccessibleInterval< LongType > createFeatures( final RandomAccessibleInterval< ? > target )
+	{
+		return create( target, new LongType() );
+	}
+
+	private static < T extends NativeType< T > > RandomAccessibleInterval< T > create( final RandomAccessibleInterval< ? > interval, final T t )
+	{
+		final long[] dimensions = Intervals.dimensionsAsLongArray( interval );
+		final Img< T > img = Intervals.numElements( interval ) > Integer.MAX_VALUE
+				? new CellImgFactory<>( t ).create( dimensions )
+				: new ArrayImgFactory<>( t ).create( dimensions );
+		return Views.translate( img, Intervals.minAsLongArray( interval ) );
+	}
+
+}
@@ -0,0 +1,245 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.morphology.distance;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.morphology.distance.DistanceTransform.DISTANCE_TYPE;
+import net.imglib2.converter.Converters;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+/**
+ * Grayscale dilation and erosion with a quadratic (parabolic) structuring
+ * function
+ *
+ * <pre>
+ * k( x ) = - sum_i w_i * x_i * x_i
+ * </pre>
+ *
+ * i.e.
+ *
+ * <pre>
+ * dilate( f )( p ) = max_q f(q) - sum_i w_i*(p_i - q_i)*(p_i - q_i)
+ * erode( f )( p )  = min_q f(q) + sum_i w_i*(p_i - q_i)*(p_i - q_i)
+ * </pre>
+ * <p>
+ * The erosion is exactly the squared Euclidian {@link DistanceTransform} of
+ * {@code f}, and the dilation is the negated distance transform of
+ * {@code -f}. The structuring function is separable and each line is
+ * processed with the lower envelope of parabolas, so the cost is O(dn) for an
+ * image of n pixels in d dimensions, independent of the scale of the
+ * structuring function. Larger weights give a narrower structuring function;
+ * per-dimension weights account for anisotropic sampling like in
+ * {@link EuclidianDistanceAnisotropic}.
+ * </p>
+ * <p>
+ * As for {@link DistanceTransform}, intermediate results are written to
+ * {@code target}, so {@code target} should be of a type that can represent
+ * them ({@link DoubleType} recommended). Dilation stores the negated input in
+ * {@code target}, which therefore must be signed.
+ * </p>
+ */
+public class ParabolicMorphology
+{
+
+	/**
+	 * Dilate {@code source} in place with a parabolic structuring function.
+	 *
+	 * @param source
+	 *            input and output, must be of a signed type
+	 * @param weights
+	 *            weight of the squared distance, either one for all dimensions
+	 *            or one per dimension
+	 */
+	public static < T extends RealType< T > > void dilateInPlace(
+			final RandomAccessibleInterval< T > source,
+			final double... weights )
+	{
+		dilate( source, source, weights );
+	}
+
+	/**
+	 * Dilate {@code source} with a parabolic structuring function and write
+	 * the result into {@code target}.
+	 *
+	 * @param source
+	 *            input
+	 * @param target
+	 *            output, must be of a signed type
+	 * @param weights
+	 *            weight of the squared distance, either one for all dimensions
+	 *            or one per dimension
+	 */
+	public static < T extends RealType< T >, U extends RealType< U > > void dilate(
+			final RandomAccessible< T > source,
+			final RandomAccessibleInterval< U > target,
+			final double... weights )
+	{
+		DistanceTransform.transform( negate( source ), target, DISTANCE_TYPE.EUCLIDIAN, weights );
+		negateInPlace( target );
+	}
+
+	/**
+	 * Dilate {@code source} with a parabolic structuring function and write
+	 * the result into {@code target}, in parallel.
+	 *
+	 * @param source
+	 *            input
+	 * @param target
+	 *            output, must be of a signed type
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @param weights
+	 *            weight of the squared distance, either one for all dimensions
+	 *            or one per dimension
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < T extends RealType< T >, U extends RealType< U > > void dilate(
+			final RandomAccessible< T > source,
+			final RandomAccessibleInterval< U > target,
+			final ExecutorService es,
+			final int nTasks,
+			final double... weights ) throws InterruptedException, ExecutionException
+	{
+		DistanceTransform.transform( negate( source ), target, DISTANCE_TYPE.EUCLIDIAN, es, nTasks, weights );
+		negateInPlace( target );
+	}
+
+	/**
+	 * Erode {@code source} in place with a parabolic structuring function.
+	 *
+	 * @param source
+	 *            input and output
+	 * @param weights
+	 *            weight of the squared distance, either one for all dimensions
+	 *            or one per dimension
+	 */
+	public static < T extends RealType< T > > void erodeInPlace(
+			final RandomAccessibleInterval< T > source,
+			final double... weights )
+	{
+		erode( source, source, weights );
+	}
+
+	/**
+	 * Erode {@code source} with a parabolic structuring function and write
+	 * the result into {@code target}.
+	 *
+	 * @param source
+	 *            input
+	 * @param target
+	 *            output
+	 * @param weights
+	 *            weight of the squared distance, either one for all dimensions
+	 *            or one per dimension
+	 */
+	public static < T extends RealType< T >, U extends RealType< U > > void erode(
+			final RandomAccessible< T > source,
+			final RandomAccessibleInterval< U > target,
+			final double... weights )
+	{
+		DistanceTransform.transform( source, target, DISTANCE_TYPE.EUCLIDIAN, weights );
+	}
+
+	/**
+	 * Erode {@code source} with a parabolic structuring function and write
+	 * the result into {@code target}, in parallel.
+	 *
+	 * @param source
+	 *            input
+	 * @param target
+	 *            output
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            Number of tasks/parallelism
+	 * @param weights
+	 *            weight of the squared distance, either one for all dimensions
+	 *            or one per dimension
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, in which case unfinished tasks
+	 *             are cancelled
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public static < T extends RealType< T >, U extends RealType< U > > void erode(
+			final RandomAccessible< T > source,
+			final RandomAccessibleInterval< U > target,
+			final ExecutorService es,
+			final int nTasks,
+			final double... weights ) throws InterruptedException, ExecutionException
+	{
+		DistanceTransform.transform( source, target, DISTANCE_TYPE.EUCLIDIAN, es, nTasks, weights );
+	}
+
+	/**
+	 * Weight for which the parabolic structuring function drops by
+	 * {@code height} at distance {@code radius} from its origin, i.e. the
+	 * parabola that passes through {@code ( radius, -height )}.
+	 *
+	 * @param radius
+	 *            distance from the origin
+	 * @param height
+	 *            drop of the structuring function at {@code radius}
+	 * @return weight to be passed to dilation or erosion
+	 */
+	public static double weightForRadius( final double radius, final double height )
+	{
+		return height / ( radius * radius );
+	}
+
+	private static < T extends RealType< T > > RandomAccessible< DoubleType > negate( final RandomAccessible< T > source )
+	{
+		return Converters.convert( source, ( s, t ) -> t.setReal( -s.getRealDouble() ), new DoubleType() );
+	}
+
+	private static < T extends RealType< T > > void negateInPlace( final RandomAccessibleInterval< T > target )
+	{
+		for ( final T t : Views.flatIterable( target ) )
+			t.setReal( -t.getRealDouble() );
+	}
+
+}
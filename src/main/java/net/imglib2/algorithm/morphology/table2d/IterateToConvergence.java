@@ -0,0 +1,267 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.morphology.table2d;
+
+import java.util.BitSet;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.BooleanType;
+import net.imglib2.view.Views;
+
+/**
+ * Applies a cycle of {@link Abstract3x3TableOperation}s in place, repeatedly,
+ * until no pixel changes anymore.
+ * <p>
+ * Only the first iteration evaluates every pixel. Afterwards, a frontier of
+ * pixels whose 3x3 neighborhood changed since the respective operation was
+ * last applied is maintained, and only those pixels are re-evaluated. All
+ * other pixels would map to their current value, so the result is identical to
+ * calling the full operations repeatedly, e.g. {@link Thin#thin(net.imglib2.img.Img)}
+ * until the image does not change.
+ * <p>
+ * For example, to skeletonize a mask:
+ *
+ * <pre>
+ * IterateToConvergence.thin( mask, -1 );
+ * </pre>
+ */
+public class IterateToConvergence
+{
+	/**
+	 * Thin the objects in {@code image} until no more pixels can be removed.
+	 *
+	 * @param image
+	 *            the 2-D image, modified in place.
+	 * @param maxIterations
+	 *            the maximum number of iterations. A negative value iterates
+	 *            until convergence.
+	 * @return the number of iterations that changed at least one pixel.
+	 * @see Thin
+	 */
+	public static < T extends BooleanType< T > > int thin( final RandomAccessibleInterval< T > image, final int maxIterations )
+	{
+		return iterate( image, maxIterations, new Thin1(), new Thin2() );
+	}
+
+	/**
+	 * Remove spur pixels from {@code image} until no more pixels can be
+	 * removed.
+	 *
+	 * @param image
+	 *            the 2-D image, modified in place.
+	 * @param maxIterations
+	 *            the maximum number of iterations. A negative value iterates
+	 *            until convergence.
+	 * @return the number of iterations that changed at least one pixel.
+	 * @see Spur
+	 */
+	public static < T extends BooleanType< T > > int spur( final RandomAccessibleInterval< T > image, final int maxIterations )
+	{
+		return iterate( image, maxIterations, new Spur1(), new Spur2() );
+	}
+
+	/**
+	 * Thicken the objects in {@code image} until no more pixels can be added.
+	 *
+	 * @param image
+	 *            the 2-D image, modified in place.
+	 * @param maxIterations
+	 *            the maximum number of iterations. A negative value iterates
+	 *            until convergence.
+	 * @return the number of iterations that changed at least one pixel.
+	 * @see Thicken
+	 */
+	public static < T extends BooleanType< T > > int thicken( final RandomAccessibleInterval< T > image, final int maxIterations )
+	{
+		return iterate( image, maxIterations, new Thicken() );
+	}
+
+	/**
+	 * Apply {@code operations} in sequence to {@code image}, and repeat the
+	 * sequence until it does not change any pixel, or until
+	 * {@code maxIterations} sequences have been applied.
+	 *
+	 * @param image
+	 *            the 2-D image, modified in place.
+	 * @param maxIterations
+	 *            the maximum number of iterations. A negative value iterates
+	 *            until convergence.
+	 * @param operations
+	 *            the operations that make up one iteration.
+	 * @return the number of iterations that changed at least one pixel.
+	 */
+	public static < T extends BooleanType< T > > int iterate(
+			final RandomAccessibleInterval< T > image,
+			final int maxIterations,
+			final Abstract3x3TableOperation... operations )
+	{
+		if ( image.numDimensions() != 2 )
+			throw new IllegalArgumentException( "Table operations require a 2-D image, got " + image.numDimensions() + " dimensions." );
+
+		final long width = image.dimension( 0 );
+		final long height = image.dimension( 1 );
+		if ( width * height > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Image too large: " + width + "x" + height + " pixels." );
+
+		final int w = ( int ) width;
+		final int h = ( int ) height;
+		final long minX = image.min( 0 );
+		final long minY = image.min( 1 );
+		final int numOperations = operations.length;
+
+		final T extendedTrue = Views.iterable( image ).firstElement().createVariable();
+		extendedTrue.set( true );
+		final T extendedFalse = extendedTrue.createVariable();
+		extendedFalse.set( false );
+
+		final RandomAccess< T > access = image.randomAccess();
+		final RandomAccess< T > extendedTrueAccess = Views.extendValue( image, extendedTrue ).randomAccess();
+		final RandomAccess< T > extendedFalseAccess = Views.extendValue( image, extendedFalse ).randomAccess();
+
+		// frontier per operation: pixels whose neighborhood changed since the
+		// operation was last applied
+		final BitSet[] isDirty = new BitSet[ numOperations ];
+		final TIntArrayList[] dirty = new TIntArrayList[ numOperations ];
+		for ( int k = 0; k < numOperations; ++k )
+		{
+			isDirty[ k ] = new BitSet( w * h );
+			dirty[ k ] = new TIntArrayList();
+		}
+
+		final TIntArrayList changed = new TIntArrayList();
+		boolean firstIteration = true;
+		int iterations = 0;
+		while ( maxIterations < 0 || iterations < maxIterations )
+		{
+			boolean anyChange = false;
+			for ( int k = 0; k < numOperations; ++k )
+			{
+				final Abstract3x3TableOperation operation = operations[ k ];
+				final boolean[] table = operation.getTable();
+				final RandomAccess< T > neighborhoodAccess = operation.getExtendedValue() ? extendedTrueAccess : extendedFalseAccess;
+
+				// collect changes first: the operation is applied in parallel
+				// to all pixels, not sequentially
+				changed.resetQuick();
+				if ( firstIteration )
+				{
+					for ( int i = 0; i < w * h; ++i )
+						if ( evaluate( table, neighborhoodAccess, access, minX + i % w, minY + i / w ) )
+							changed.add( i );
+					// marks left by preceding operations are covered by the
+					// full evaluation
+					isDirty[ k ].clear();
+					dirty[ k ].resetQuick();
+				}
+				else
+				{
+					final TIntArrayList candidates = dirty[ k ];
+					for ( int j = 0; j < candidates.size(); ++j )
+					{
+						final int i = candidates.getQuick( j );
+						isDirty[ k ].clear( i );
+						if ( evaluate( table, neighborhoodAccess, access, minX + i % w, minY + i / w ) )
+							changed.add( i );
+					}
+					candidates.resetQuick();
+				}
+
+				if ( changed.isEmpty() )
+					continue;
+				anyChange = true;
+
+				for ( int j = 0; j < changed.size(); ++j )
+				{
+					final int i = changed.getQuick( j );
+					final int x = i % w;
+					final int y = i / w;
+					access.setPosition( minX + x, 0 );
+					access.setPosition( minY + y, 1 );
+					final T t = access.get();
+					t.set( !t.get() );
+
+					for ( int ny = Math.max( y - 1, 0 ); ny <= Math.min( y + 1, h - 1 ); ++ny )
+						for ( int nx = Math.max( x - 1, 0 ); nx <= Math.min( x + 1, w - 1 ); ++nx )
+						{
+							final int ni = ny * w + nx;
+							for ( int l = 0; l < numOperations; ++l )
+								if ( !isDirty[ l ].get( ni ) )
+								{
+									isDirty[ l ].set( ni );
+									dirty[ l ].add( ni );
+								}
+						}
+				}
+			}
+
+			firstIteration = false;
+			if ( !anyChange )
+				break;
+			++iterations;
+		}
+		return iterations;
+	}
+
+	/**
+	 * Evaluate the table for the pixel at ({@code x}, {@code y}).
+	 *
+	 * @return true if the table value differs from the current pixel value.
+	 */
+	private static < T extends BooleanType< T > > boolean evaluate(
+			final boolean[] table,
+			final RandomAccess< T > neighborhoodAccess,
+			final RandomAccess< T > access,
+			final long x,
+			final long y )
+	{
+		// Same bit order as Abstract3x3TableOperation: flat iteration order,
+		// the first pixel ends up in the most significant bit.
+		int idx = 0;
+		for ( long dy = -1; dy <= 1; ++dy )
+		{
+			neighborhoodAccess.setPosition( y + dy, 1 );
+			for ( long dx = -1; dx <= 1; ++dx )
+			{
+				neighborhoodAccess.setPosition( x + dx, 0 );
+				idx <<= 1;
+				idx |= neighborhoodAccess.get().get() ? 1 : 0;
+			}
+		}
+		access.setPosition( x, 0 );
+		access.setPosition( y, 1 );
+		return table[ idx ] != access.get().get();
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.morphology.table3d;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.img.Img;
+import net.imglib2.type.BooleanType;
+import net.imglib2.view.ExtendedRandomAccessibleInterval;
+import net.imglib2.view.Views;
+
+/**
+ * Performs a binary operation on a 3x3x3 3-D neighborhood using a truth
+ * function over the neighborhood configuration to drive the operation. This is
+ * the 3-D counterpart of
+ * {@link net.imglib2.algorithm.morphology.table2d.Abstract3x3TableOperation}.
+ * <p>
+ * A full table over all 2^27 configurations would take 16MB per operation, so
+ * the table is given as a function {@link #get(int)} of the configuration
+ * index instead. Typically this is a few bit operations on the index.
+ */
+public abstract class Abstract3x3x3TableOperation
+{
+	private static final RectangleShape shape = new RectangleShape( 1, false );
+
+	/**
+	 * The configuration index is built by examining each pixel in flat
+	 * iteration order and accumulating 2^(26 - pixel number). The pixels are
+	 * numbered like this:
+	 *
+	 * <pre>
+	 * z = -1:     z = 0:      z = 1:
+	 *  0  1  2     9 10 11    18 19 20
+	 *  3  4  5    12 13 14    21 22 23
+	 *  6  7  8    15 16 17    24 25 26
+	 * </pre>
+	 *
+	 * Use {@link #bit(int, int, int)} to get the bit of a neighbor.
+	 *
+	 * @param neighborhood
+	 *            the configuration index.
+	 * @return the truth value for the 3x3x3 configuration.
+	 */
+	protected abstract boolean get( int neighborhood );
+
+	/**
+	 * Gets default value for neighborhood pixels outside of the image.
+	 *
+	 * @return the extended value for this operation
+	 */
+	protected abstract boolean getExtendedValue();
+
+	/**
+	 * The bit of the pixel at offset ({@code dx}, {@code dy}, {@code dz}) from
+	 * the center in the configuration index.
+	 */
+	public static int bit( final int dx, final int dy, final int dz )
+	{
+		return 1 << ( 26 - ( ( dz + 1 ) * 9 + ( dy + 1 ) * 3 + dx + 1 ) );
+	}
+
+	/**
+	 * The bit of the center pixel in the configuration index.
+	 */
+	public static final int CENTER = bit( 0, 0, 0 );
+
+	/**
+	 * All bits except the center in the configuration index.
+	 */
+	public static final int NEIGHBORS = ( ( 1 << 27 ) - 1 ) & ~CENTER;
+
+	protected < T extends BooleanType< T > > Img< T > calculate( final Img< T > source )
+	{
+		final Img< T > target = source.factory().create( source );
+		final T extendedVal = source.firstElement().createVariable();
+		extendedVal.set( getExtendedValue() );
+		final ExtendedRandomAccessibleInterval< T, Img< T > > extended = Views.extendValue( source, extendedVal );
+		calculate( extended, target );
+		return target;
+	}
+
+	protected < T extends BooleanType< T > > void calculate( final RandomAccessible< T > source, final IterableInterval< T > target )
+	{
+		final RandomAccessible< Neighborhood< T > > accessible = shape.neighborhoodsRandomAccessible( source );
+		final RandomAccess< Neighborhood< T > > randomAccess = accessible.randomAccess( target );
+		final Cursor< T > cursorTarget = target.cursor();
+		while ( cursorTarget.hasNext() )
+		{
+			final T targetVal = cursorTarget.next();
+			randomAccess.setPosition( cursorTarget );
+			final Neighborhood< T > neighborhood = randomAccess.get();
+			final Cursor< T > nc = neighborhood.cursor();
+			int idx = 0;
+			// Assume that the neighborhood obtained is of FlatIterationOrder,
+			// and assemble the index using bitwise operations.
+			while ( nc.hasNext() )
+			{
+				idx <<= 1;
+				idx |= nc.next().get() ? 1 : 0;
+			}
+
+			targetVal.set( get( idx ) );
+		}
+	}
+
+}
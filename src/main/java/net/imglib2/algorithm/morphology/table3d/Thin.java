@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.morphology.table3d;
+
+import static net.imglib2.algorithm.morphology.table3d.Abstract3x3x3TableOperation.bit;
+
+import gnu.trove.list.array.TLongArrayList;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.type.BooleanType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Thin 3-D objects preserving their topology using the algorithm described in
+ * Lee, Kashyap and Chu, "Building Skeleton Models via 3-D Medial Surface/Axis
+ * Thinning Algorithms", <i>CVGIP: Graphical Models and Image Processing</i>,
+ * Vol 56 #6, page 462. Foreground is 26-connected.
+ * <p>
+ * One iteration consists of six directional subiterations (north, south, east,
+ * west, up, down). In each subiteration, all border voxels in that direction
+ * that are simple points, not endpoints, and whose removal does not change the
+ * Euler characteristic are collected in parallel using
+ * {@link Abstract3x3x3TableOperation}-style configuration indices. These
+ * candidates are then removed sequentially, re-checking that each is still
+ * simple. Repeating until nothing changes ({@link #skeletonize}) yields a
+ * one-voxel-thick skeleton of curves.
+ */
+public class Thin
+{
+	private static final int[] borders = {
+			bit( 0, -1, 0 ),
+			bit( 0, 1, 0 ),
+			bit( 1, 0, 0 ),
+			bit( -1, 0, 0 ),
+			bit( 0, 0, 1 ),
+			bit( 0, 0, -1 )
+	};
+
+	/**
+	 * Perform one thinning iteration on a copy of {@code source}.
+	 *
+	 * @return the thinned copy.
+	 */
+	public static < T extends BooleanType< T > > Img< T > thin( final Img< T > source )
+	{
+		final Img< T > target = source.copy();
+		thinInPlace( target );
+		return target;
+	}
+
+	/**
+	 * Perform one thinning iteration (all six directions) in place.
+	 *
+	 * @param image
+	 *            the 3-D image, modified in place.
+	 * @return true if any voxel was removed.
+	 */
+	public static < T extends BooleanType< T > > boolean thinInPlace( final RandomAccessibleInterval< T > image )
+	{
+		if ( image.numDimensions() != 3 )
+			throw new IllegalArgumentException( "3x3x3 table operations require a 3-D image, got " + image.numDimensions() + " dimensions." );
+
+		final T background = Views.iterable( image ).firstElement().createVariable();
+		background.set( false );
+		final RandomAccess< T > access = Views.extendValue( image, background ).randomAccess();
+		final TLongArrayList candidates = new TLongArrayList();
+
+		boolean changed = false;
+		for ( final int border : borders )
+			changed |= thinBorder( image, access, border, candidates );
+		return changed;
+	}
+
+	/**
+	 * Thin {@code image} in place until no more voxels can be removed.
+	 *
+	 * @param image
+	 *            the 3-D image, modified in place.
+	 * @return the number of iterations that removed at least one voxel.
+	 */
+	public static < T extends BooleanType< T > > int skeletonize( final RandomAccessibleInterval< T > image )
+	{
+		int iterations = 0;
+		while ( thinInPlace( image ) )
+			++iterations;
+		return iterations;
+	}
+
+	private static < T extends BooleanType< T > > boolean thinBorder(
+			final RandomAccessibleInterval< T > image,
+			final RandomAccess< T > access,
+			final int border,
+			final TLongArrayList candidates )
+	{
+		candidates.resetQuick();
+		final Cursor< T > cursor = Views.flatIterable( image ).localizingCursor();
+		for ( long index = 0; cursor.hasNext(); ++index )
+		{
+			if ( !cursor.next().get() )
+				continue;
+			access.setPosition( cursor );
+			final int neighborhood = Topology.read( access );
+			if ( ( neighborhood & border ) != 0 )
+				continue;
+			if ( Topology.numberOfNeighbors( neighborhood ) == 1 )
+				continue;
+			if ( !Topology.isEulerInvariant( neighborhood ) )
+				continue;
+			if ( !Topology.isSimplePoint( neighborhood ) )
+				continue;
+			candidates.add( index );
+		}
+
+		final long[] dimensions = Intervals.dimensionsAsLongArray( image );
+		final long[] min = Intervals.minAsLongArray( image );
+		final long[] position = new long[ 3 ];
+		boolean changed = false;
+		for ( int i = 0; i < candidates.size(); ++i )
+		{
+			IntervalIndexer.indexToPositionWithOffset( candidates.getQuick( i ), dimensions, min, position );
+			access.setPosition( position );
+			access.get().set( false );
+			if ( Topology.isSimplePoint( Topology.read( access ) ) )
+				changed = true;
+			else
+				access.get().set( true );
+		}
+		return changed;
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.morphology.table3d;
+
+import static net.imglib2.algorithm.morphology.table3d.Abstract3x3x3TableOperation.CENTER;
+import static net.imglib2.algorithm.morphology.table3d.Abstract3x3x3TableOperation.NEIGHBORS;
+import static net.imglib2.algorithm.morphology.table3d.Abstract3x3x3TableOperation.bit;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.type.BooleanType;
+
+/**
+ * Topological properties of 3x3x3 configurations, see
+ * {@link Abstract3x3x3TableOperation#get(int)} for the layout of the
+ * configuration index. Foreground is 26-connected, background is 6-connected.
+ */
+class Topology
+{
+	/**
+	 * For each bit, the bits of the 26-adjacent neighbors (center excluded).
+	 */
+	private static final int[] adjacent = new int[ 27 ];
+
+	/**
+	 * For each bit, the bits of the 6-adjacent neighbors (center excluded).
+	 */
+	private static final int[] faceAdjacent = new int[ 27 ];
+
+	/**
+	 * For each cell (vertex, edge, face) of the closed center voxel, the bits of
+	 * the neighbors that also contain the cell.
+	 */
+	private static final int[] cellNeighbors = new int[ 26 ];
+
+	/**
+	 * For each cell of the closed center voxel, (-1)^dimension.
+	 */
+	private static final int[] cellSign = new int[ 26 ];
+
+	static
+	{
+		for ( int k = 0; k < 27; ++k )
+		{
+			final int x = k % 3, y = ( k / 3 ) % 3, z = k / 9;
+			int mask = 0;
+			int faceMask = 0;
+			for ( int l = 0; l < 27; ++l )
+			{
+				final int nx = l % 3, ny = ( l / 3 ) % 3, nz = l / 9;
+				if ( l != k && Math.abs( nx - x ) <= 1 && Math.abs( ny - y ) <= 1 && Math.abs( nz - z ) <= 1 )
+					mask |= bit( nx - 1, ny - 1, nz - 1 );
+				if ( Math.abs( nx - x ) + Math.abs( ny - y ) + Math.abs( nz - z ) == 1 )
+					faceMask |= bit( nx - 1, ny - 1, nz - 1 );
+			}
+			adjacent[ 26 - k ] = mask & NEIGHBORS;
+			faceAdjacent[ 26 - k ] = faceMask & NEIGHBORS;
+		}
+
+		// The center voxel is the unit cube [0,1]^3. Along each axis, a cell
+		// of its closure is either the point 0, the point 1, or the interval
+		// [0,1]. Neighbor voxel with offset d contains point 0 if d <= 0,
+		// point 1 if d >= 0, and the interval if d == 0.
+		int c = 0;
+		for ( int cz = 0; cz < 3; ++cz )
+			for ( int cy = 0; cy < 3; ++cy )
+				for ( int cx = 0; cx < 3; ++cx )
+				{
+					if ( cx == 2 && cy == 2 && cz == 2 )
+						continue;
+					int mask = 0;
+					for ( int dz = -1; dz <= 1; ++dz )
+						for ( int dy = -1; dy <= 1; ++dy )
+							for ( int dx = -1; dx <= 1; ++dx )
+								if ( contains( dx, cx ) && contains( dy, cy ) && contains( dz, cz ) )
+									mask |= bit( dx, dy, dz );
+					cellNeighbors[ c ] = mask & NEIGHBORS;
+					final int dimension = ( cx == 2 ? 1 : 0 ) + ( cy == 2 ? 1 : 0 ) + ( cz == 2 ? 1 : 0 );
+					cellSign[ c ] = dimension % 2 == 0 ? 1 : -1;
+					++c;
+				}
+	}
+
+	private static boolean contains( final int offset, final int cell )
+	{
+		switch ( cell )
+		{
+		case 0:
+			return offset <= 0;
+		case 1:
+			return offset >= 0;
+		default:
+			return offset == 0;
+		}
+	}
+
+	/**
+	 * @return the number of foreground neighbors, not counting the center.
+	 */
+	static int numberOfNeighbors( final int neighborhood )
+	{
+		return Integer.bitCount( neighborhood & NEIGHBORS );
+	}
+
+	/**
+	 * Whether removing the center voxel leaves the Euler characteristic of the
+	 * foreground unchanged.
+	 * <p>
+	 * Only the cells of the closed center voxel that are not shared with any
+	 * other foreground voxel are removed, so the change of the Euler
+	 * characteristic (vertices - edges + faces - cubes) is computed from those
+	 * cells alone.
+	 */
+	static boolean isEulerInvariant( final int neighborhood )
+	{
+		// the cube itself
+		int delta = -1;
+		for ( int c = 0; c < cellNeighbors.length; ++c )
+			if ( ( neighborhood & cellNeighbors[ c ] ) == 0 )
+				delta += cellSign[ c ];
+		return delta == 0;
+	}
+
+	/**
+	 * Whether the foreground neighbors of the center form exactly one
+	 * 26-connected component. Together with {@link #isEulerInvariant(int)},
+	 * this characterizes simple points, i.e., points that can be removed
+	 * without changing the topology.
+	 */
+	static boolean isSimplePoint( final int neighborhood )
+	{
+		return numberOfComponents( neighborhood & NEIGHBORS, adjacent ) == 1;
+	}
+
+	/**
+	 * The number of connected components of the foreground neighbors of the
+	 * center (center excluded), where neighbors are connected if they share
+	 * a face. Arms of a skeleton that meet at the center count as separate
+	 * components even if they are 26-adjacent, e.g. at right angles, while
+	 * thick or staircase segments form at most two components.
+	 */
+	static int numberOfNeighborComponents( final int neighborhood )
+	{
+		return numberOfComponents( neighborhood & NEIGHBORS, faceAdjacent );
+	}
+
+	private static int numberOfComponents( int foreground, final int[] adjacency )
+	{
+		int numComponents = 0;
+		while ( foreground != 0 )
+		{
+			int component = Integer.lowestOneBit( foreground );
+			int front = component;
+			while ( front != 0 )
+			{
+				int next = 0;
+				for ( int remaining = front; remaining != 0; remaining &= remaining - 1 )
+					next |= adjacency[ Integer.numberOfTrailingZeros( remaining ) ];
+				front = next & foreground & ~component;
+				component |= front;
+			}
+			foreground &= ~component;
+			++numComponents;
+		}
+		return numComponents;
+	}
+
+	/**
+	 * Read the configuration index around the current position of
+	 * {@code access}. The position of {@code access} is restored afterwards.
+	 */
+	static < T extends BooleanType< T > > int read( final RandomAccess< T > access )
+	{
+		access.move( -1, 0 );
+		access.move( -1, 1 );
+		access.move( -1, 2 );
+		int idx = 0;
+		for ( int z = 0; z < 3; ++z )
+		{
+			for ( int y = 0; y < 3; ++y )
+			{
+				for ( int x = 0; x < 3; ++x )
+				{
+					idx <<= 1;
+					idx |= access.get().get() ? 1 : 0;
+					access.fwd( 0 );
+				}
+				access.move( -3, 0 );
+				access.fwd( 1 );
+			}
+			access.move( -3, 1 );
+			access.fwd( 2 );
+		}
+		access.move( -2, 2 );
+		access.fwd( 0 );
+		access.fwd( 1 );
+		return idx;
+	}
+
+	static boolean isCenterSet( final int neighborhood )
+	{
+		return ( neighborhood & CENTER ) != 0;
+	}
+}
@@ -36,7 +36,14 @@ package net.imglib2.algorithm.stats;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
 import net.imglib2.RealCursor;
 import net.imglib2.algorithm.Algorithm;
 import net.imglib2.algorithm.Benchmark;
@@ -66,6 +73,12 @@ public class Histogram< T > implements Algorithm, Benchmark
 	 */
 	private final RealCursor< T > cursor;
 
+	/**
+	 * The image from which the histogram is to be calculated, if known. It is
+	 * required for parallel processing.
+	 */
+	private final IterableInterval< T > image;
+
 	/**
 	 * The HistogramBinMapper, used to map Type values to histogram bin indices.
 	 */
@@ -85,10 +98,17 @@ public class Histogram< T > implements Algorithm, Benchmark
 	 */
 	public Histogram( final HistogramBinMapper< T > mapper,
 			final RealCursor< T > c )
+	{
+		this( mapper, c, null );
+	}
+
+	private Histogram( final HistogramBinMapper< T > mapper,
+			final RealCursor< T > c, final IterableInterval< T > image )
 	{
 		cursor = c;
 		binMapper = mapper;
 		histogram = new int[ binMapper.getNumBins() ];
+		this.image = image;
 	}
 
 	/**
@@ -105,7 +125,26 @@ public class Histogram< T > implements Algorithm, Benchmark
 	public Histogram( final HistogramBinMapper< T > mapper,
 			final Img< T > image )
 	{
-		this( mapper, image.cursor() );
+		this( mapper, image.cursor(), image );
+	}
+
+	/**
+	 * Create a Histogram using the given mapper, calculating from the given
+	 * IterableInterval. Such a Histogram can also be calculated in parallel,
+	 * see {@link #process(ExecutorService, int)}.
+	 * 
+	 * @param mapper
+	 *            the HistogramBinMapper used to map Type values to histogram
+	 *            bin indices.
+	 * @param image
+	 *            an IterableInterval from which the Histogram will be
+	 *            calculated
+	 * 
+	 */
+	public Histogram( final HistogramBinMapper< T > mapper,
+			final IterableInterval< T > image )
+	{
+		this( mapper, image.cursor(), image );
 	}
 
 	/**
@@ -242,6 +281,64 @@ public class Histogram< T > implements Algorithm, Benchmark
 		return true;
 	}
 
+	/**
+	 * Calculates the histogram in parallel. Each task counts a contiguous
+	 * chunk of the image into its own partial histogram, and the partial
+	 * histograms are summed at the end, so that no synchronization is needed
+	 * while counting. Counts are added to the current histogram, like
+	 * {@link #process()} does.
+	 * 
+	 * @param es
+	 *            {@link ExecutorService} for parallel execution.
+	 * @param nTasks
+	 *            number of tasks/parallelism.
+	 * @return {@code true}
+	 * @throws IllegalStateException
+	 *             if this Histogram was created from a Cursor rather than from
+	 *             an image.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the computation threw an exception
+	 */
+	public boolean process( final ExecutorService es, final int nTasks ) throws InterruptedException, ExecutionException
+	{
+		if ( image == null )
+			throw new IllegalStateException( "Parallel processing requires a Histogram created from an image." );
+
+		final long startTime = System.currentTimeMillis();
+		final long size = image.size();
+		final long step = Math.max( ( size + nTasks - 1 ) / Math.max( nTasks, 1 ), 1 );
+		final List< Callable< int[] > > tasks = new ArrayList<>();
+		for ( long start = 0; start < size; start += step )
+		{
+			final long s = start;
+			final long length = Math.min( step, size - start );
+			tasks.add( () -> {
+				final int[] partial = new int[ histogram.length ];
+				final Cursor< T > c = image.cursor();
+				c.jumpFwd( s );
+				for ( long i = 0; i < length; ++i )
+				{
+					final int index = binMapper.map( c.next() );
+					if ( index >= 0 && index < partial.length )
+						++partial[ index ];
+				}
+				return partial;
+			} );
+		}
+
+		for ( final Future< int[] > f : es.invokeAll( tasks ) )
+		{
+			final int[] partial = f.get();
+			for ( int i = 0; i < histogram.length; ++i )
+				histogram[ i ] += partial[ i ];
+		}
+
+		pTime = System.currentTimeMillis() - startTime;
+		return true;
+	}
+
 	@Override
 	public long getProcessingTime()
 	{
@@ -223,10 +223,11 @@ public class ParallelizeOverBlocks
 	{
 		final ArrayList< Future< List< T > > > futures = new ArrayList<>();
 		final int taskSize = Math.max( blocks.size() / numTasks, 1 );
-		for ( int i = 0; i < blocks.size(); ++i )
+		for ( int i = 0; i < blocks.size(); i += taskSize )
 		{
 			final int finalI = i;
-			futures.add( es.submit( () -> blocks.subList( finalI, finalI + taskSize ).stream().map( func ).collect( Collectors.toList() ) ) );
+			final int finalEnd = Math.min( i + taskSize, blocks.size() );
+			futures.add( es.submit( () -> blocks.subList( finalI, finalEnd ).stream().map( func ).collect( Collectors.toList() ) ) );
 		}
 
 		return futures;
@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.binary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.algorithm.binary.AutoThreshold.Method;
+import net.imglib2.algorithm.stats.Histogram;
+import net.imglib2.algorithm.stats.IntBinMapper;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AutoThresholdTest
+{
+	private final ExecutorService es = Executors.newFixedThreadPool( 3 );
+
+	private final Random random = new Random( 17l );
+
+	@After
+	public void tearDown()
+	{
+		es.shutdown();
+	}
+
+	@Test
+	public void testParallelHistogram() throws InterruptedException, ExecutionException
+	{
+		final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( 101l, 37l );
+		for ( final UnsignedByteType t : img )
+			t.set( random.nextInt( 256 ) );
+
+		final Histogram< UnsignedByteType > sequential = new Histogram<>( new IntBinMapper<>( new UnsignedByteType() ), img );
+		sequential.process();
+		final Histogram< UnsignedByteType > parallel = new Histogram<>( new IntBinMapper<>( new UnsignedByteType() ), img );
+		parallel.process( es, 4 );
+		assertArrayEquals( sequential.getHistogram(), parallel.getHistogram() );
+	}
+
+	@Test
+	public void testBimodal() throws InterruptedException, ExecutionException
+	{
+		final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( 64l, 64l );
+		int i = 0;
+		for ( final UnsignedByteType t : img )
+			t.set( ( i++ % 3 == 0 ? 160 : 40 ) + random.nextInt( 41 ) );
+
+		for ( final Method method : new Method[] { Method.OTSU, Method.LI, Method.ISODATA, Method.MAX_ENTROPY } )
+		{
+			final double threshold = AutoThreshold.getThreshold( method, img, es, 3 );
+			assertTrue( method + " threshold " + threshold, threshold > 80 && threshold < 160 );
+		}
+	}
+
+	@Test
+	public void testFullRangeUnsignedShort() throws InterruptedException, ExecutionException
+	{
+		// the last bin would extend beyond the maximum of the type
+		final Img< UnsignedShortType > img = ArrayImgs.unsignedShorts( 64l, 64l );
+		int i = 0;
+		for ( final UnsignedShortType t : img )
+			t.set( ( i++ % 3 == 0 ? 40960 : 10240 ) + random.nextInt( 10241 ) );
+		img.firstElement().set( 0 );
+		final Cursor< UnsignedShortType > c = img.cursor();
+		c.jumpFwd( 2 );
+		c.get().set( 65535 );
+
+		for ( final Method method : new Method[] { Method.OTSU, Method.LI, Method.ISODATA, Method.MAX_ENTROPY } )
+		{
+			final double threshold = AutoThreshold.getThreshold( method, img, es, 3 );
+			assertTrue( method + " threshold " + threshold, threshold > 20480 && threshold < 40960 );
+		}
+	}
+
+	@Test
+	public void testFewerBinsThanValues() throws InterruptedException, ExecutionException
+	{
+		final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( 64l, 64l );
+		int i = 0;
+		for ( final UnsignedByteType t : img )
+			t.set( ( i++ % 3 == 0 ? 160 : 40 ) + random.nextInt( 41 ) );
+		img.firstElement().set( 0 );
+		final Cursor< UnsignedByteType > c = img.cursor();
+		c.jumpFwd( 2 );
+		c.get().set( 255 );
+
+		for ( final Method method : new Method[] { Method.OTSU, Method.LI, Method.ISODATA, Method.MAX_ENTROPY } )
+		{
+			final double threshold = AutoThreshold.getThreshold( method, img, 100, es, 3 );
+			assertTrue( method + " threshold " + threshold, threshold > 80 && threshold < 160 );
+		}
+	}
+
+	@Test
+	public void testTriangle() throws InterruptedException, ExecutionException
+	{
+		// large dark background peak and a long bright tail
+		final Img< FloatType > img = ArrayImgs.floats( 100l, 100l );
+		for ( final FloatType t : img )
+			t.set( random.nextInt( 10 ) == 0 ? 20 + 80 * random.nextFloat() : ( float ) Math.abs( 5 * random.nextGaussian() ) );
+
+		final double threshold = AutoThreshold.getThreshold( Method.TRIANGLE, img, es, 3 );
+		assertTrue( "Triangle threshold " + threshold, threshold > 5 && threshold < 30 );
+
+		// mirrored image: the threshold is mirrored as well
+		for ( final FloatType t : img )
+			t.set( 100 - t.get() );
+		final double mirrored = AutoThreshold.getThreshold( Method.TRIANGLE, img, es, 3 );
+		assertTrue( "Mirrored triangle threshold " + mirrored, mirrored > 70 && mirrored < 95 );
+	}
+}
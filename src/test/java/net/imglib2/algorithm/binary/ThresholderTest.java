@@ -0,0 +1,135 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.binary;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.logic.BoolType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ThresholderTest
+{
+	private final ExecutorService es = Executors.newFixedThreadPool( 3 );
+
+	private final Random random = new Random( 13l );
+
+	@After
+	public void tearDown()
+	{
+		es.shutdown();
+	}
+
+	@Test
+	public void testThresholdPacked() throws InterruptedException, ExecutionException
+	{
+		// 1000 pixels: not a multiple of 64
+		final Img< UnsignedByteType > source = ArrayImgs.unsignedBytes( 40l, 25l );
+		for ( final UnsignedByteType t : source )
+			t.set( random.nextInt( 256 ) );
+
+		final Img< BitType > above = ArrayImgs.bits( 40l, 25l );
+		Thresholder.threshold( source, above, 200, true, es, 4 );
+		assertThreshold( source, above, 200, true );
+
+		final Img< BitType > below = ArrayImgs.bits( 40l, 25l );
+		Thresholder.threshold( source, below, 200, false, es, 4 );
+		assertThreshold( source, below, 200, false );
+	}
+
+	@Test
+	public void testThresholdGeneric() throws InterruptedException, ExecutionException
+	{
+		final Img< FloatType > source = ArrayImgs.floats( 33l, 17l );
+		for ( final FloatType t : source )
+			t.set( random.nextFloat() );
+
+		// non-primitive source view, non-packed target
+		final RandomAccessibleInterval< FloatType > view = Views.translate( source, 5, -3 );
+		final Img< BoolType > target = new ListImgFactory<>( new BoolType() ).create( 33l, 17l );
+		Thresholder.threshold( view, target, 0.5, true, es, 3 );
+		assertThreshold( source, target, 0.5, true );
+
+		final Img< BitType > bits = ArrayImgs.bits( 33l, 17l );
+		Thresholder.threshold( view, bits, 0.5, true, es, 3 );
+		assertThreshold( source, bits, 0.5, true );
+	}
+
+	@Test
+	public void testThresholdLevels() throws InterruptedException, ExecutionException
+	{
+		final Img< FloatType > source = ArrayImgs.floats( 20l, 10l );
+		for ( final FloatType t : source )
+			t.set( random.nextInt( 10 ) );
+		final Img< UnsignedShortType > labels = ArrayImgs.unsignedShorts( 20l, 10l );
+		Thresholder.thresholdLevels( source, labels, new double[] { 6, 2 }, es, 2 );
+
+		final Cursor< FloatType > c = source.cursor();
+		final Cursor< UnsignedShortType > l = labels.cursor();
+		while ( c.hasNext() )
+		{
+			final float v = c.next().get();
+			assertEquals( v <= 2 ? 0 : v <= 6 ? 1 : 2, l.next().get() );
+		}
+	}
+
+	private static < B extends BooleanType< B > > void assertThreshold( final Img< ? extends RealType< ? > > source, final Img< B > target, final double threshold, final boolean above )
+	{
+		final Cursor< ? extends RealType< ? > > c = source.cursor();
+		final Cursor< B > t = target.cursor();
+		while ( c.hasNext() )
+		{
+			final double v = c.next().getRealDouble();
+			assertEquals( above ? v > threshold : v < threshold, t.next().get() );
+		}
+	}
+}
@@ -34,18 +34,30 @@
 
 package net.imglib2.algorithm.labeling;
 
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.LongUnaryOperator;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import gnu.trove.map.hash.TLongLongHashMap;
+import net.imglib2.Cursor;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.neighborhood.DiamondShape;
 import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.algorithm.util.unionfind.IntArrayRankedUnionFind;
 import net.imglib2.algorithm.util.unionfind.IntArrayUnionFind;
 import net.imglib2.algorithm.util.unionfind.UnionFind;
+import net.imglib2.cache.img.DiskCachedCellImg;
+import net.imglib2.cache.img.DiskCachedCellImgFactory;
+import net.imglib2.cache.img.DiskCachedCellImgOptions;
+import net.imglib2.cache.img.DiskCachedCellImgOptions.CacheType;
 import net.imglib2.converter.Converters;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgs;
@@ -54,6 +66,7 @@ import net.imglib2.type.logic.BitType;
 import net.imglib2.type.logic.BoolType;
 import net.imglib2.type.numeric.integer.ByteType;
 import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 import net.imglib2.view.composite.RealComposite;
 
@@ -217,6 +230,169 @@ public class ConnectedComponentAnalysisTest
 		testDefault3D();
 	}
 
+	@Test
+	public void testParallel() throws InterruptedException, ExecutionException
+	{
+		final ExecutorService es = Executors.newFixedThreadPool( 3 );
+		final Random rng = new Random( 100 );
+		final Shape[] shapes = { new DiamondShape( 1 ), new RectangleShape( 1, true ), new DiamondShape( 2 ) };
+		for ( final Shape shape : shapes )
+		{
+			testParallel( randomMask( rng, 37, 29 ), shape, new int[] { 5, 4 }, es );
+			testParallel( randomMask( rng, 13, 11, 9 ), shape, new int[] { 4, 3, 5 }, es );
+		}
+		es.shutdown();
+	}
+
+	@Test
+	public void testBlockBased()
+	{
+		final Random rng = new Random( 100 );
+		testBlockBased( randomMask( rng, 37, 29 ) );
+		testBlockBased( randomMask( rng, 36, 1 ) );
+		testBlockBased( randomMask( rng, 13, 11, 9 ) );
+		testBlockBased( randomMask( rng, 12, 1, 7 ) );
+	}
+
+	private static void testBlockBased( final RandomAccessibleInterval< BitType > mask )
+	{
+		final int numElements = ( int ) Intervals.numElements( mask );
+		final long[] dims = Intervals.dimensionsAsLongArray( mask );
+		final long[] offset = Intervals.minAsLongArray( mask );
+		final Shape shape = new RectangleShape( 1, true );
+
+		final long[] labelingStore = new long[ numElements ];
+		final RandomAccessibleInterval< UnsignedLongType > labeling = Views.translate( ArrayImgs.unsignedLongs( labelingStore, dims ), offset );
+		ConnectedComponentAnalysis.connectedComponents( mask, labeling, shape );
+
+		// general shape implementation
+		final long[] generalLabelingStore = new long[ numElements ];
+		final RandomAccessibleInterval< UnsignedLongType > generalLabeling = Views.translate( ArrayImgs.unsignedLongs( generalLabelingStore, dims ), offset );
+		ConnectedComponentAnalysis.connectedComponents(
+				mask,
+				generalLabeling,
+				shape,
+				n -> new IntArrayRankedUnionFind( ( int ) n ),
+				ConnectedComponentAnalysis.idFromIntervalIndexer( generalLabeling ),
+				new LongUnaryOperator()
+				{
+					private final TLongLongHashMap setMappings = new TLongLongHashMap();
+
+					@Override
+					public long applyAsLong( final long root )
+					{
+						if ( !setMappings.containsKey( root ) )
+						{
+							setMappings.put( root, setMappings.size() + 1 );
+						}
+						return setMappings.get( root );
+					}
+				} );
+
+		Assert.assertArrayEquals( generalLabelingStore, labelingStore );
+	}
+
+	@Test
+	public void testLazy() throws InterruptedException, ExecutionException
+	{
+		final ExecutorService es = Executors.newFixedThreadPool( 3 );
+		final Random rng = new Random( 100 );
+		final Shape[] shapes = { new DiamondShape( 1 ), new RectangleShape( 1, true ), new DiamondShape( 2 ) };
+		for ( final Shape shape : shapes )
+		{
+			testLazy( randomMask( rng, 37, 29 ), shape, new int[] { 5, 4 }, es );
+			testLazy( randomMask( rng, 13, 11, 9 ), shape, new int[] { 4, 3, 5 }, es );
+		}
+		es.shutdown();
+	}
+
+	private static void testLazy( final RandomAccessibleInterval< BitType > mask, final Shape shape, final int[] blockSize, final ExecutorService es ) throws InterruptedException, ExecutionException
+	{
+		final int numElements = ( int ) Intervals.numElements( mask );
+		final long[] labelingStore = new long[ numElements ];
+		ConnectedComponentAnalysis.connectedComponents( mask, Views.translate( ArrayImgs.unsignedLongs( labelingStore, Intervals.dimensionsAsLongArray( mask ) ), Intervals.minAsLongArray( mask ) ), shape );
+
+		final RandomAccessibleInterval< UnsignedLongType > lazy = ConnectedComponentAnalysis.lazyConnectedComponents( mask, shape, blockSize, es, 4 );
+		Assert.assertArrayEquals( Intervals.minAsLongArray( mask ), Intervals.minAsLongArray( lazy ) );
+		Assert.assertArrayEquals( Intervals.maxAsLongArray( mask ), Intervals.maxAsLongArray( lazy ) );
+
+		// each component is labeled with the index of its first pixel plus one
+		final TLongLongHashMap expectedIds = new TLongLongHashMap();
+		int index = 0;
+		for ( final UnsignedLongType l : Views.flatIterable( lazy ) )
+		{
+			final long expected = labelingStore[ index ];
+			if ( expected == 0 )
+			{
+				Assert.assertEquals( 0, l.get() );
+			}
+			else
+			{
+				if ( !expectedIds.containsKey( expected ) )
+				{
+					expectedIds.put( expected, index + 1 );
+				}
+				Assert.assertEquals( expectedIds.get( expected ), l.get() );
+			}
+			++index;
+		}
+	}
+
+	@Test
+	public void testEvictedCells() throws InterruptedException, ExecutionException
+	{
+		// only two cells are kept in memory, all others are evicted and
+		// loaded again whenever they are accessed
+		final long[] dims = { 41, 37 };
+		final int[] cellSize = { 6, 5 };
+		final DiskCachedCellImg< BitType, ? > mask = new DiskCachedCellImgFactory<>(
+				new BitType(),
+				DiskCachedCellImgOptions.options().cellDimensions( cellSize ).cacheType( CacheType.BOUNDED ).maxCacheSize( 2 ) ).create(
+						dims,
+						cell -> {
+							final Cursor< BitType > c = cell.localizingCursor();
+							while ( c.hasNext() )
+							{
+								c.fwd();
+								long h = ( c.getLongPosition( 0 ) + dims[ 0 ] * c.getLongPosition( 1 ) ) * 0x9E3779B97F4A7C15L;
+								h ^= h >>> 29;
+								c.get().set( ( h & 0xff ) < 102 );
+							}
+						} );
+
+		final ExecutorService es = Executors.newFixedThreadPool( 3 );
+		for ( final Shape shape : new Shape[] { new DiamondShape( 1 ), new RectangleShape( 1, true ) } )
+		{
+			testParallel( mask, shape, cellSize, es );
+			testLazy( mask, shape, cellSize, es );
+		}
+		es.shutdown();
+	}
+
+	private static RandomAccessibleInterval< BitType > randomMask( final Random rng, final long... dims )
+	{
+		final ArrayImg< BitType, LongArray > mask = ArrayImgs.bits( dims );
+		mask.forEach( b -> b.set( rng.nextDouble() < 0.4 ) );
+		final long[] offset = new long[ dims.length ];
+		Arrays.fill( offset, 3 );
+		return Views.translate( mask, offset );
+	}
+
+	private static void testParallel( final RandomAccessibleInterval< BitType > mask, final Shape shape, final int[] blockSize, final ExecutorService es ) throws InterruptedException, ExecutionException
+	{
+		final int numElements = ( int ) Intervals.numElements( mask );
+		final long[] dims = Intervals.dimensionsAsLongArray( mask );
+		final long[] offset = Intervals.minAsLongArray( mask );
+
+		final long[] labelingStore = new long[ numElements ];
+		ConnectedComponentAnalysis.connectedComponents( mask, Views.translate( ArrayImgs.unsignedLongs( labelingStore, dims ), offset ), shape );
+
+		final long[] parallelLabelingStore = new long[ numElements ];
+		ConnectedComponentAnalysis.connectedComponents( mask, Views.translate( ArrayImgs.unsignedLongs( parallelLabelingStore, dims ), offset ), shape, blockSize, es, 4 );
+
+		Assert.assertArrayEquals( labelingStore, parallelLabelingStore );
+	}
+
 	private void testDiamondShapeUnitRadius2DWithOffset( final long offX, final long offY )
 	{
 		final long[] offset = { offX, offY };
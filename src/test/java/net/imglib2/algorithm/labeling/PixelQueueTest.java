@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.labeling;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.imglib2.img.array.ArrayImgs;
+
+public class PixelQueueTest
+{
+
+	private static final class Entry implements Comparable< Entry >
+	{
+		private final long index;
+
+		private final double priority;
+
+		private final long age;
+
+		private Entry( final long index, final double priority, final long age )
+		{
+			this.index = index;
+			this.priority = priority;
+			this.age = age;
+		}
+
+		@Override
+		public int compareTo( final Entry other )
+		{
+			final int result = Double.compare( priority, other.priority );
+			return result == 0 ? Long.compare( age, other.age ) : result;
+		}
+	}
+
+	@Test
+	public void testHierarchicalQueue()
+	{
+		final Random rng = new Random( 100 );
+		test( new PixelQueue.HierarchicalQueue( -3, 20 ), () -> rng.nextInt( 24 ) - 3, rng );
+	}
+
+	@Test
+	public void testBinaryHeap()
+	{
+		final Random rng = new Random( 100 );
+		test( new PixelQueue.BinaryHeap(), () -> rng.nextInt( 24 ) - 3, rng );
+		test( new PixelQueue.BinaryHeap(), () -> rng.nextGaussian(), rng );
+	}
+
+	@Test
+	public void testForImage()
+	{
+		Assert.assertTrue( PixelQueue.forImage( ArrayImgs.unsignedBytes( 3, 4 ) ) instanceof PixelQueue.HierarchicalQueue );
+		Assert.assertTrue( PixelQueue.forImage( ArrayImgs.ints( 3, 4 ) ) instanceof PixelQueue.HierarchicalQueue );
+		Assert.assertTrue( PixelQueue.forImage( ArrayImgs.ints( new int[] { 0, Integer.MAX_VALUE }, 2 ) ) instanceof PixelQueue.BinaryHeap );
+		Assert.assertTrue( PixelQueue.forImage( ArrayImgs.floats( 3, 4 ) ) instanceof PixelQueue.BinaryHeap );
+	}
+
+	private static void test( final PixelQueue queue, final DoubleSupplier priorities, final Random rng )
+	{
+		final PriorityQueue< Entry > reference = new PriorityQueue<>();
+		long age = 0;
+		for ( int i = 0; i < 10000; ++i )
+		{
+			if ( reference.isEmpty() || rng.nextDouble() < 0.6 )
+			{
+				final double priority = priorities.getAsDouble();
+				queue.push( i, priority );
+				reference.add( new Entry( i, priority, age++ ) );
+			}
+			else
+			{
+				Assert.assertEquals( reference.remove().index, queue.pop() );
+			}
+			Assert.assertEquals( reference.isEmpty(), queue.isEmpty() );
+		}
+		while ( !reference.isEmpty() )
+		{
+			Assert.assertEquals( reference.remove().index, queue.pop() );
+		}
+		Assert.assertTrue( queue.isEmpty() );
+	}
+}
@@ -0,0 +1,364 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.labeling;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.map.hash.TLongLongHashMap;
+import net.imglib2.RandomAccess;
+import net.imglib2.algorithm.neighborhood.DiamondShape;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.roi.labeling.ImgLabeling;
+import net.imglib2.roi.labeling.LabelingType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.IntervalIndexer;
+
+public class SeededWatershedTest
+{
+
+	private static final Shape SHAPE = new DiamondShape( 1 );
+
+	@Test
+	public void testWatershed()
+	{
+		final long[] labels = { 1, 0, 0, 0, 2 };
+		SeededWatershed.watershed( ArrayImgs.ints( new int[] { 0, 1, 2, 1, 0 }, 5 ), ArrayImgs.unsignedLongs( labels, 5 ), SHAPE );
+		Assert.assertArrayEquals( new long[] { 1, 1, 1, 2, 2 }, labels );
+
+		final long[] realLabels = { 1, 0, 0, 0, 2 };
+		SeededWatershed.watershed( ArrayImgs.doubles( new double[] { 0.5, 1.5, 1.0, 0.5, 0.0 }, 5 ), ArrayImgs.unsignedLongs( realLabels, 5 ), SHAPE );
+		Assert.assertArrayEquals( new long[] { 1, 1, 2, 2, 2 }, realLabels );
+	}
+
+	@Test
+	public void testWatershedLines()
+	{
+		final long[] labels = { 1, 0, 0, 0, 2 };
+		SeededWatershed.watershed( ArrayImgs.ints( new int[] { 0, 1, 2, 1, 0 }, 5 ), ArrayImgs.unsignedLongs( labels, 5 ), ArrayImgs.bits( 5 ), SHAPE, true, 0.0 );
+		// empty mask
+		Assert.assertArrayEquals( new long[] { 1, 0, 0, 0, 2 }, labels );
+
+		final ArrayImg< BitType, LongArray > mask = ArrayImgs.bits( 5 );
+		mask.forEach( BitType::setOne );
+		SeededWatershed.watershed( ArrayImgs.ints( new int[] { 0, 1, 2, 1, 0 }, 5 ), ArrayImgs.unsignedLongs( labels, 5 ), mask, SHAPE, true, 0.0 );
+		Assert.assertArrayEquals( new long[] { 1, 1, 0, 2, 2 }, labels );
+	}
+
+	@Test
+	public void testMask()
+	{
+		final long[] labels = { 1, 0, 0, 0, 0 };
+		final ArrayImg< BitType, LongArray > mask = ArrayImgs.bits( 5 );
+		mask.forEach( BitType::setOne );
+		final RandomAccess< BitType > access = mask.randomAccess();
+		access.setPosition( 2, 0 );
+		access.get().setZero();
+		SeededWatershed.watershed( ArrayImgs.ints( 5 ), ArrayImgs.unsignedLongs( labels, 5 ), mask, SHAPE, false, 0.0 );
+		Assert.assertArrayEquals( new long[] { 1, 1, 0, 0, 0 }, labels );
+	}
+
+	@Test
+	public void testCompactness()
+	{
+		final double[] image = new double[ 10 ];
+		Arrays.setAll( image, i -> 0.1 * i );
+		final ArrayImg< BitType, LongArray > mask = ArrayImgs.bits( 10 );
+		mask.forEach( BitType::setOne );
+
+		final long[] labels = { 1, 0, 0, 0, 0, 0, 0, 0, 0, 2 };
+		SeededWatershed.watershed( ArrayImgs.doubles( image, 10 ), ArrayImgs.unsignedLongs( labels, 10 ), mask, SHAPE, false, 0.0 );
+		Assert.assertArrayEquals( new long[] { 1, 1, 1, 1, 1, 1, 1, 1, 1, 2 }, labels );
+
+		final long[] compactLabels = { 1, 0, 0, 0, 0, 0, 0, 0, 0, 2 };
+		SeededWatershed.watershed( ArrayImgs.doubles( image, 10 ), ArrayImgs.unsignedLongs( compactLabels, 10 ), mask, SHAPE, false, 1.0 );
+		Assert.assertArrayEquals( new long[] { 1, 1, 1, 1, 1, 2, 2, 2, 2, 2 }, compactLabels );
+	}
+
+	@Test
+	public void testImgLabeling()
+	{
+		final ImgLabeling< String, UnsignedShortType > labeling = new ImgLabeling<>( ArrayImgs.unsignedShorts( 5 ) );
+		final RandomAccess< LabelingType< String > > access = labeling.randomAccess();
+		access.setPosition( 0, 0 );
+		access.get().add( "a" );
+		access.setPosition( 4, 0 );
+		access.get().add( "b" );
+		SeededWatershed.watershed( ArrayImgs.ints( new int[] { 0, 1, 2, 1, 0 }, 5 ), labeling, SHAPE );
+		final String[] expected = { "a", "a", "a", "b", "b" };
+		for ( int i = 0; i < expected.length; ++i )
+		{
+			access.setPosition( i, 0 );
+			Assert.assertEquals( 1, access.get().size() );
+			Assert.assertTrue( access.get().contains( expected[ i ] ) );
+		}
+	}
+
+	@Test
+	public void testParallel() throws InterruptedException, ExecutionException
+	{
+		final ExecutorService es = Executors.newFixedThreadPool( 3 );
+		final long[] dims = { 41, 29 };
+		final int numElements = ( int ) ( dims[ 0 ] * dims[ 1 ] );
+		final Random rng = new Random( 100 );
+		final ArrayImg< DoubleType, DoubleArray > image = ArrayImgs.doubles( dims );
+		image.forEach( t -> t.set( rng.nextDouble() ) );
+		final ArrayImg< BitType, LongArray > mask = ArrayImgs.bits( dims );
+		mask.forEach( BitType::setOne );
+		// seeds are not adjacent
+		final long[] seeds = new long[ numElements ];
+		for ( int i = 1; i <= 12; ++i )
+		{
+			seeds[ ( int ) IntervalIndexer.positionToIndex( new long[] { 3 * rng.nextInt( 14 ), 3 * rng.nextInt( 10 ) }, dims ) ] = i;
+		}
+
+		for ( final Shape shape : new Shape[] { new DiamondShape( 1 ), new RectangleShape( 1, true ) } )
+		{
+			for ( final boolean watershedLines : new boolean[] { false, true } )
+			{
+				// a single block is identical to the sequential watershed
+				final long[] labels = seeds.clone();
+				SeededWatershed.watershed( image, ArrayImgs.unsignedLongs( labels, dims ), mask, shape, watershedLines, 0.0 );
+				final long[] singleBlockLabels = seeds.clone();
+				SeededWatershed.watershed( image, ArrayImgs.unsignedLongs( singleBlockLabels, dims ), mask, shape, watershedLines, 0.0, new int[] { 64, 64 }, es, 4 );
+				Assert.assertArrayEquals( labels, singleBlockLabels );
+
+				final long[] blockLabels = seeds.clone();
+				SeededWatershed.watershed( image, ArrayImgs.unsignedLongs( blockLabels, dims ), mask, shape, watershedLines, 0.0, new int[] { 7, 6 }, es, 4 );
+				checkBasins( seeds, blockLabels, dims, ConnectedComponentAnalysis.neighborhoodOffsets( image, shape ), watershedLines );
+			}
+		}
+		es.shutdown();
+	}
+
+	@Test
+	public void testParallelInteriorBasins() throws InterruptedException, ExecutionException
+	{
+		final ExecutorService es = Executors.newFixedThreadPool( 3 );
+		final long[] dims = { 42, 30 };
+		final int[] blockSize = { 7, 6 };
+		final int numElements = ( int ) ( dims[ 0 ] * dims[ 1 ] );
+		final Random rng = new Random( 100 );
+		final ArrayImg< DoubleType, DoubleArray > image = ArrayImgs.doubles( dims );
+		image.forEach( t -> t.set( rng.nextDouble() ) );
+
+		// one island with two seeds strictly inside each block, so no basin
+		// touches a block face
+		final ArrayImg< BitType, LongArray > mask = ArrayImgs.bits( dims );
+		final RandomAccess< BitType > access = mask.randomAccess();
+		final long[] seeds = new long[ numElements ];
+		long label = 0;
+		for ( int x = 0; x < dims[ 0 ]; x += blockSize[ 0 ] )
+		{
+			for ( int y = 0; y < dims[ 1 ]; y += blockSize[ 1 ] )
+			{
+				for ( int dx = 1; dx < blockSize[ 0 ] - 1; ++dx )
+				{
+					for ( int dy = 1; dy < blockSize[ 1 ] - 1; ++dy )
+					{
+						access.setPosition( new long[] { x + dx, y + dy } );
+						access.get().setOne();
+					}
+				}
+				seeds[ ( int ) IntervalIndexer.positionToIndex( new long[] { x + 1, y + 1 }, dims ) ] = ++label;
+				seeds[ ( int ) IntervalIndexer.positionToIndex( new long[] { x + blockSize[ 0 ] - 2, y + blockSize[ 1 ] - 2 }, dims ) ] = ++label;
+			}
+		}
+
+		for ( final Shape shape : new Shape[] { new DiamondShape( 1 ), new RectangleShape( 1, true ) } )
+		{
+			for ( final boolean watershedLines : new boolean[] { false, true } )
+			{
+				final long[] labels = seeds.clone();
+				SeededWatershed.watershed( image, ArrayImgs.unsignedLongs( labels, dims ), mask, shape, watershedLines, 0.0 );
+				final long[] blockLabels = seeds.clone();
+				SeededWatershed.watershed( image, ArrayImgs.unsignedLongs( blockLabels, dims ), mask, shape, watershedLines, 0.0, blockSize, es, 4 );
+				Assert.assertArrayEquals( labels, blockLabels );
+			}
+		}
+		es.shutdown();
+	}
+
+	@Test
+	public void testTiled() throws InterruptedException, ExecutionException
+	{
+		final ExecutorService es = Executors.newFixedThreadPool( 3 );
+		final long[] dims = { 41, 29 };
+		final int numElements = ( int ) ( dims[ 0 ] * dims[ 1 ] );
+		final Random rng = new Random( 100 );
+		final ArrayImg< DoubleType, DoubleArray > image = ArrayImgs.doubles( dims );
+		image.forEach( t -> t.set( rng.nextDouble() ) );
+
+		// 2x2 and 5x2 markers on a grid, some of them cross block faces
+		final ArrayImg< BitType, LongArray > markers = ArrayImgs.bits( dims );
+		final RandomAccess< BitType > access = markers.randomAccess();
+		for ( int x = 1; x < dims[ 0 ] - 1; x += 6 )
+		{
+			for ( int y = 1; y < dims[ 1 ] - 1; y += 6 )
+			{
+				final int width = rng.nextBoolean() ? 2 : 5;
+				for ( int dx = 0; dx < width && x + dx < dims[ 0 ]; ++dx )
+				{
+					for ( int dy = 0; dy < 2; ++dy )
+					{
+						access.setPosition( new long[] { x + dx, y + dy } );
+						access.get().setOne();
+					}
+				}
+			}
+		}
+
+		final Shape shape = new RectangleShape( 1, true );
+		final long[] labels = new long[ numElements ];
+		ConnectedComponentAnalysis.connectedComponents( markers, ArrayImgs.unsignedLongs( labels, dims ), shape );
+		final long[] markerLabels = labels.clone();
+		SeededWatershed.watershed( image, ArrayImgs.unsignedLongs( labels, dims ), shape );
+
+		// a halo that covers the entire image is identical to the global
+		// watershed
+		final long[] tiledLabels = new long[ numElements ];
+		SeededWatershed.tiledWatershed( image, markers, ArrayImgs.unsignedLongs( tiledLabels, dims ), shape, new int[] { 10, 8 }, new long[] { 41, 29 }, es, 4 );
+		Assert.assertArrayEquals( labels, tiledLabels );
+
+		// every marker component is a single seed across blocks
+		final long[] haloLabels = new long[ numElements ];
+		SeededWatershed.tiledWatershed( image, markers, ArrayImgs.unsignedLongs( haloLabels, dims ), shape, new int[] { 10, 8 }, new long[] { 4, 4 }, es, 4 );
+		final TLongLongHashMap markerToLabel = new TLongLongHashMap();
+		final TLongLongHashMap labelToMarker = new TLongLongHashMap();
+		for ( int i = 0; i < numElements; ++i )
+		{
+			Assert.assertNotEquals( 0, haloLabels[ i ] );
+			if ( markerLabels[ i ] != 0 )
+			{
+				if ( !markerToLabel.containsKey( markerLabels[ i ] ) )
+				{
+					markerToLabel.put( markerLabels[ i ], haloLabels[ i ] );
+					labelToMarker.put( haloLabels[ i ], markerLabels[ i ] );
+				}
+				Assert.assertEquals( markerToLabel.get( markerLabels[ i ] ), haloLabels[ i ] );
+				Assert.assertEquals( labelToMarker.get( haloLabels[ i ] ), markerLabels[ i ] );
+			}
+		}
+		es.shutdown();
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testTiledHaloSmallerThanShape() throws InterruptedException, ExecutionException
+	{
+		final long[] dims = { 12, 10 };
+		final ExecutorService es = Executors.newFixedThreadPool( 2 );
+		try
+		{
+			SeededWatershed.tiledWatershed( ArrayImgs.doubles( dims ), ArrayImgs.bits( dims ), ArrayImgs.unsignedLongs( dims ), new DiamondShape( 2 ), new int[] { 6, 5 }, new long[] { 2, 1 }, es, 2 );
+		}
+		finally
+		{
+			es.shutdown();
+		}
+	}
+
+	/**
+	 * Check that seeds are preserved, that every basin is connected to a seed
+	 * of the same label, and that basins are separated by watershed lines if
+	 * requested or cover the entire image otherwise.
+	 */
+	private static void checkBasins( final long[] seeds, final long[] labels, final long[] dims, final long[][] offsets, final boolean watershedLines )
+	{
+		final boolean[] reached = new boolean[ labels.length ];
+		final ArrayDeque< Integer > queue = new ArrayDeque<>();
+		for ( int i = 0; i < seeds.length; ++i )
+		{
+			if ( seeds[ i ] != 0 )
+			{
+				Assert.assertEquals( seeds[ i ], labels[ i ] );
+				reached[ i ] = true;
+				queue.add( i );
+			}
+		}
+		final long[] position = new long[ dims.length ];
+		final long[] neighbor = new long[ dims.length ];
+		while ( !queue.isEmpty() )
+		{
+			final int index = queue.remove();
+			IntervalIndexer.indexToPosition( index, dims, position );
+			for ( final long[] offset : offsets )
+			{
+				boolean inside = true;
+				for ( int d = 0; d < dims.length; ++d )
+				{
+					neighbor[ d ] = position[ d ] + offset[ d ];
+					inside &= neighbor[ d ] >= 0 && neighbor[ d ] < dims[ d ];
+				}
+				if ( !inside )
+				{
+					continue;
+				}
+				final int n = ( int ) IntervalIndexer.positionToIndex( neighbor, dims );
+				if ( watershedLines )
+				{
+					Assert.assertTrue( labels[ n ] == 0 || labels[ n ] == labels[ index ] );
+				}
+				if ( !reached[ n ] && labels[ n ] == labels[ index ] )
+				{
+					reached[ n ] = true;
+					queue.add( n );
+				}
+			}
+		}
+		for ( int i = 0; i < labels.length; ++i )
+		{
+			Assert.assertEquals( labels[ i ] != 0, reached[ i ] );
+			if ( !watershedLines )
+			{
+				Assert.assertNotEquals( 0, labels[ i ] );
+			}
+		}
+	}
+}
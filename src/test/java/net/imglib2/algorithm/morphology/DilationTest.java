@@ -34,6 +34,7 @@
 package net.imglib2.algorithm.morphology;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.List;
 import java.util.Random;
@@ -43,6 +44,7 @@ import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
 import net.imglib2.algorithm.neighborhood.DiamondShape;
+import net.imglib2.algorithm.neighborhood.HyperSphereShape;
 import net.imglib2.algorithm.neighborhood.Neighborhood;
 import net.imglib2.algorithm.neighborhood.Shape;
 import net.imglib2.img.Img;
@@ -234,4 +236,118 @@ public class DilationTest
 					randomAccess3.get().get(), cursor1.get().get() );
 		}
 	}
+
+	@Test
+	public void testDilateDecomposedBall()
+	{
+		final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( 21l, 21l, 21l );
+		final RandomAccess< UnsignedByteType > randomAccess = img.randomAccess();
+		randomAccess.setPosition( new int[] { 10, 10, 10 } );
+		randomAccess.get().set( 255 );
+
+		assertEquals( "Expected the exact 3D ball by default.", 1, StructuringElements.disk( 8, 3 ).size() );
+
+		final List< Shape > strel = StructuringElements.disk( 8, 3, 1 );
+		assertTrue( "Expected the 3D ball to be decomposed.", strel.size() > 1 );
+
+		final Img< UnsignedByteType > decomposed = Dilation.dilate( img, strel, 1 );
+		final Img< UnsignedByteType > ball = Dilation.dilate( img, new HyperSphereShape( 8 ), 1 );
+
+		int ballCount = 0;
+		int mismatches = 0;
+		final Cursor< UnsignedByteType > cursor = ball.cursor();
+		final Cursor< UnsignedByteType > cursorDecomposed = decomposed.cursor();
+		while ( cursor.hasNext() )
+		{
+			final boolean inBall = cursor.next().get() > 0;
+			final boolean inDecomposed = cursorDecomposed.next().get() > 0;
+			if ( inBall )
+				++ballCount;
+			if ( inBall != inDecomposed )
+				++mismatches;
+		}
+		assertTrue( "Decomposed ball differs from the ball by " + mismatches + " out of " + ballCount + " pixels.", mismatches < ballCount / 5 );
+
+		// exact extent along the axes
+		final RandomAccess< UnsignedByteType > ra = decomposed.randomAccess();
+		for ( int d = 0; d < 3; d++ )
+		{
+			ra.setPosition( new int[] { 10, 10, 10 } );
+			ra.setPosition( 18, d );
+			assertEquals( 255, ra.get().get() );
+			ra.setPosition( 19, d );
+			assertEquals( 0, ra.get().get() );
+		}
+	}
+
+	@Test
+	public void testDilateFullStrelList()
+	{
+		final Random random = new Random( 11l );
+		final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( 17l, 12l );
+		for ( final UnsignedByteType t : img )
+			t.set( random.nextInt( 256 ) );
+
+		final List< Shape > strels = StructuringElements.disk( 6, 2, 4 );
+		assertTrue( strels.size() > 1 );
+
+		Img< UnsignedByteType > expected = img;
+		for ( final Shape strel : strels )
+			expected = Dilation.dilateFull( expected, strel, 1 );
+		final Img< UnsignedByteType > actual = Dilation.dilateFull( img, strels, 2 );
+
+		for ( int d = 0; d < img.numDimensions(); d++ )
+			assertEquals( expected.dimension( d ), actual.dimension( d ) );
+		final Cursor< UnsignedByteType > ce = expected.cursor();
+		final Cursor< UnsignedByteType > ca = actual.cursor();
+		while ( ce.hasNext() )
+			assertEquals( ce.next().get(), ca.next().get() );
+
+		final Img< UnsignedByteType > eroded = Erosion.erodeFull( img, strels, 2 );
+		Img< UnsignedByteType > expectedEroded = img;
+		for ( final Shape strel : strels )
+			expectedEroded = Erosion.erodeFull( expectedEroded, strel, 1 );
+		final Cursor< UnsignedByteType > cee = expectedEroded.cursor();
+		final Cursor< UnsignedByteType > cae = eroded.cursor();
+		while ( cee.hasNext() )
+			assertEquals( cee.next().get(), cae.next().get() );
+	}
+
+	@Test
+	public void testDilateFullStrelListBitType()
+	{
+		final Random random = new Random( 23l );
+		final Img< BitType > img = ArrayImgs.bits( 31l, 24l );
+		for ( final BitType t : img )
+			t.set( random.nextInt( 12 ) == 0 );
+
+		final List< Shape > strels = StructuringElements.disk( 5, 2 );
+		assertTrue( strels.size() > 2 );
+
+		Img< BitType > expected = img;
+		for ( final Shape strel : strels )
+			expected = Dilation.dilateFull( expected, strel, 1 );
+		final Img< BitType > actual = Dilation.dilateFull( img, strels, 2 );
+
+		for ( int d = 0; d < img.numDimensions(); d++ )
+			assertEquals( expected.dimension( d ), actual.dimension( d ) );
+		final Cursor< BitType > ce = expected.cursor();
+		final Cursor< BitType > ca = actual.cursor();
+		while ( ce.hasNext() )
+			assertEquals( ce.next().get(), ca.next().get() );
+
+		for ( final BitType t : img )
+			t.set( random.nextInt( 12 ) != 0 );
+		Img< BitType > expectedEroded = img;
+		for ( final Shape strel : strels )
+			expectedEroded = Erosion.erodeFull( expectedEroded, strel, 1 );
+		final Img< BitType > eroded = Erosion.erodeFull( img, strels, 2 );
+
+		for ( int d = 0; d < img.numDimensions(); d++ )
+			assertEquals( expectedEroded.dimension( d ), eroded.dimension( d ) );
+		final Cursor< BitType > cee = expectedEroded.cursor();
+		final Cursor< BitType > cae = eroded.cursor();
+		while ( cee.hasNext() )
+			assertEquals( cee.next().get(), cae.next().get() );
+	}
 }
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.morphology;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.algorithm.neighborhood.HyperSphereShape;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MorphologicalGradientTest
+{
+	private Img< UnsignedByteType > img;
+
+	@Before
+	public void setUp()
+	{
+		final Random random = new Random( 3l );
+		img = ArrayImgs.unsignedBytes( 31l, 23l );
+		for ( final UnsignedByteType pixel : img )
+			pixel.set( random.nextInt( 256 ) );
+	}
+
+	@Test
+	public void testGradient()
+	{
+		final Shape strel = new RectangleShape( 2, false );
+		final Img< UnsignedByteType > gradient = MorphologicalGradient.gradient( img, strel, 3 );
+		final Img< UnsignedByteType > dilated = Dilation.dilate( img, strel, 1 );
+		final Img< UnsignedByteType > eroded = Erosion.erode( img, strel, 1 );
+
+		final Cursor< UnsignedByteType > cg = gradient.cursor();
+		final Cursor< UnsignedByteType > cd = dilated.cursor();
+		final Cursor< UnsignedByteType > ce = eroded.cursor();
+		while ( cg.hasNext() )
+			assertEquals( cd.next().get() - ce.next().get(), cg.next().get() );
+	}
+
+	@Test
+	public void testLaplacian()
+	{
+		final Shape strel = new HyperSphereShape( 2 );
+		final Img< FloatType > laplacian = ArrayImgs.floats( 31l, 23l );
+		MorphologicalGradient.laplacian( Views.extendBorder( img ), laplacian, strel, 2 );
+		final Img< UnsignedByteType > dilated = Dilation.dilate( img, strel, 1 );
+		final Img< UnsignedByteType > eroded = Erosion.erode( img, strel, 1 );
+
+		final Cursor< FloatType > cl = laplacian.cursor();
+		final Cursor< UnsignedByteType > c = img.cursor();
+		final Cursor< UnsignedByteType > cd = dilated.cursor();
+		final Cursor< UnsignedByteType > ce = eroded.cursor();
+		while ( cl.hasNext() )
+			assertEquals( cd.next().get() + ce.next().get() - 2 * c.next().get(), cl.next().get(), 0 );
+	}
+
+	@Test
+	public void testAlternatingSequentialFilter()
+	{
+		final List< Shape > strels = Arrays.asList( new RectangleShape( 1, false ), new RectangleShape( 2, false ), new RectangleShape( 3, false ) );
+		Img< UnsignedByteType > expected = img;
+		for ( final Shape strel : strels )
+			expected = Closing.close( Opening.open( expected, strel, 1 ), strel, 1 );
+		assertImgEquals( expected, AlternatingSequentialFilter.openClose( img, strels, 2 ) );
+
+		expected = img;
+		for ( final Shape strel : strels )
+			expected = Opening.open( Closing.close( expected, strel, 1 ), strel, 1 );
+		assertImgEquals( expected, AlternatingSequentialFilter.closeOpen( img, strels, 2 ) );
+	}
+
+	@Test
+	public void testAlternatingSequentialFilterBitType()
+	{
+		final Random random = new Random( 5l );
+		final Img< BitType > bits = ArrayImgs.bits( 31l, 23l );
+		for ( final BitType pixel : bits )
+			pixel.set( random.nextInt( 3 ) > 0 );
+		final List< Shape > strels = Arrays.asList( new RectangleShape( 1, false ), new RectangleShape( 2, false ) );
+
+		Img< BitType > expected = bits;
+		for ( final Shape strel : strels )
+			expected = Closing.close( Opening.open( expected, strel, 1 ), strel, 1 );
+		assertImgEquals( expected, AlternatingSequentialFilter.openClose( bits, strels, 1 ) );
+	}
+
+	private static < T extends Comparable< T > > void assertImgEquals( final Img< T > expected, final Img< T > actual )
+	{
+		final Cursor< T > ce = expected.cursor();
+		final Cursor< T > ca = actual.cursor();
+		while ( ce.hasNext() )
+			assertEquals( 0, ce.next().compareTo( ca.next() ) );
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.morphology;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.algorithm.neighborhood.HyperSphereShape;
+import net.imglib2.algorithm.neighborhood.Neighborhood;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class RankFilterTest
+{
+	private final Random random = new Random( 7l );
+
+	@Test
+	public void testMedianUnsignedShort()
+	{
+		final Img< UnsignedShortType > img = ArrayImgs.unsignedShorts( 25l, 18l, 5l );
+		for ( final UnsignedShortType t : img )
+			t.set( random.nextInt( 4096 ) );
+		final Shape strel = new HyperSphereShape( 2 );
+		assertRank( img, RankFilter.median( img, strel, 3 ), strel, 0.5 );
+	}
+
+	@Test
+	public void testPercentileFloat()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 30l, 21l );
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() );
+		final Shape strel = new RectangleShape( 2, false );
+		assertRank( img, RankFilter.percentile( img, strel, 10, 2 ), strel, 0.1 );
+	}
+
+	@Test
+	public void testPercentileWideIntegerRange()
+	{
+		final Img< IntType > img = ArrayImgs.ints( 30l, 21l );
+		for ( final IntType t : img )
+			t.set( random.nextInt() );
+		final Shape strel = new RectangleShape( 1, false );
+		assertRank( img, RankFilter.percentile( img, strel, 90, 2 ), strel, 0.9 );
+	}
+
+	@Test
+	public void testPercentileFullLongRange()
+	{
+		final Img< LongType > img = ArrayImgs.longs( 30l, 21l );
+		for ( final LongType t : img )
+			t.set( random.nextLong() );
+		img.firstElement().set( Long.MIN_VALUE );
+		final Cursor< LongType > cursor = img.cursor();
+		cursor.jumpFwd( 2 );
+		cursor.get().set( Long.MAX_VALUE );
+		final Shape strel = new RectangleShape( 1, false );
+		assertRank( img, RankFilter.percentile( img, strel, 50, 2 ), strel, 0.5 );
+	}
+
+	private static < T extends RealType< T > > void assertRank( final Img< T > img, final Img< T > result, final Shape strel, final double fraction )
+	{
+		final RandomAccessible< Neighborhood< T > > neighborhoods = strel.neighborhoodsRandomAccessible( Views.extendBorder( img ) );
+		final RandomAccess< Neighborhood< T > > access = neighborhoods.randomAccess();
+		final Cursor< T > cursor = result.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			access.setPosition( cursor );
+			final Neighborhood< T > neighborhood = access.get();
+			final double[] values = new double[ ( int ) neighborhood.size() ];
+			int i = 0;
+			for ( final T t : neighborhood )
+				values[ i++ ] = t.getRealDouble();
+			Arrays.sort( values );
+			assertEquals( values[ ( int ) Math.round( fraction * ( values.length - 1 ) ) ], cursor.get().getRealDouble(), 0 );
+		}
+	}
+}
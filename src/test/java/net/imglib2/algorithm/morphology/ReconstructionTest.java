@@ -0,0 +1,195 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.morphology;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.algorithm.neighborhood.DiamondShape;
+import net.imglib2.algorithm.neighborhood.RectangleShape;
+import net.imglib2.algorithm.neighborhood.Shape;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.util.Util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReconstructionTest
+{
+	private Img< UnsignedByteType > mask;
+
+	private Img< UnsignedByteType > marker;
+
+	@Before
+	public void setUp()
+	{
+		final Random random = new Random( 1l );
+		mask = ArrayImgs.unsignedBytes( 40l, 30l );
+		for ( final UnsignedByteType pixel : mask )
+			pixel.set( random.nextInt( 256 ) );
+
+		marker = ArrayImgs.unsignedBytes( 40l, 30l );
+		final RandomAccess< UnsignedByteType > access = marker.randomAccess();
+		access.setPosition( new int[] { 5, 7 } );
+		access.get().set( 255 );
+		access.setPosition( new int[] { 33, 21 } );
+		access.get().set( 200 );
+	}
+
+	@Test
+	public void testByDilationMatchesIteratedGeodesicDilation()
+	{
+		testByDilation( new RectangleShape( 1, true ), new RectangleShape( 1, false ) );
+		testByDilation( new DiamondShape( 1 ), new DiamondShape( 1 ) );
+	}
+
+	@Test
+	public void testByErosionMatchesIteratedGeodesicErosion()
+	{
+		for ( final UnsignedByteType pixel : marker )
+			pixel.set( 255 - pixel.get() );
+
+		final Img< UnsignedByteType > result = Reconstruction.byErosion( marker, mask, new RectangleShape( 1, true ) );
+
+		Img< UnsignedByteType > expected = marker;
+		while ( true )
+		{
+			final Img< UnsignedByteType > next = Erosion.erode( expected, new RectangleShape( 1, false ), 1 );
+			for ( final Cursor< UnsignedByteType > c = next.localizingCursor(); c.hasNext(); )
+			{
+				final UnsignedByteType t = c.next();
+				final RandomAccess< UnsignedByteType > m = mask.randomAccess();
+				m.setPosition( c );
+				if ( t.compareTo( m.get() ) < 0 )
+					t.set( m.get() );
+			}
+			if ( equal( expected, next ) )
+				break;
+			expected = next;
+		}
+		assertImgEquals( expected, result );
+	}
+
+	@Test
+	public void testFillHoles()
+	{
+		final Img< BitType > img = ArrayImgs.bits( 7l, 7l );
+		final RandomAccess< BitType > access = img.randomAccess();
+		// a ring with a hole in the middle, and an open U
+		for ( int i = 1; i <= 3; ++i )
+			for ( int j = 1; j <= 3; ++j )
+			{
+				access.setPosition( new int[] { i, j } );
+				access.get().set( i != 2 || j != 2 );
+			}
+		access.setPosition( new int[] { 5, 4 } );
+		access.get().set( true );
+		access.setPosition( new int[] { 5, 5 } );
+		access.get().set( true );
+		access.setPosition( new int[] { 5, 6 } );
+		access.get().set( true );
+
+		final Img< BitType > filled = Reconstruction.fillHoles( img, new DiamondShape( 1 ) );
+		final Cursor< BitType > c = filled.localizingCursor();
+		final RandomAccess< BitType > ra = img.randomAccess();
+		while ( c.hasNext() )
+		{
+			final boolean value = c.next().get();
+			ra.setPosition( c );
+			final boolean expected = ra.get().get() || ( c.getIntPosition( 0 ) == 2 && c.getIntPosition( 1 ) == 2 );
+			assertEquals( "Mismatch at " + Util.printCoordinates( c ), expected, value );
+		}
+	}
+
+	@Test
+	public void testHMaxima()
+	{
+		final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( new byte[] { 10, 12, 10, 10, 30, 10, 10, 20, 10 }, 9 );
+		final Img< UnsignedByteType > hmax = Reconstruction.hMaxima( img, 5, new RectangleShape( 1, true ) );
+		final int[] expected = { 10, 10, 10, 10, 25, 10, 10, 15, 10 };
+		int i = 0;
+		for ( final UnsignedByteType t : hmax )
+			assertEquals( expected[ i++ ], t.get() );
+	}
+
+	private void testByDilation( final Shape connectivity, final Shape geodesicStrel )
+	{
+		final Img< UnsignedByteType > result = Reconstruction.byDilation( marker, mask, connectivity );
+
+		Img< UnsignedByteType > expected = marker;
+		while ( true )
+		{
+			final Img< UnsignedByteType > next = Dilation.dilate( expected, geodesicStrel, 1 );
+			for ( final Cursor< UnsignedByteType > c = next.localizingCursor(); c.hasNext(); )
+			{
+				final UnsignedByteType t = c.next();
+				final RandomAccess< UnsignedByteType > m = mask.randomAccess();
+				m.setPosition( c );
+				if ( t.compareTo( m.get() ) > 0 )
+					t.set( m.get() );
+			}
+			if ( equal( expected, next ) )
+				break;
+			expected = next;
+		}
+		assertImgEquals( expected, result );
+	}
+
+	private static boolean equal( final Img< UnsignedByteType > a, final Img< UnsignedByteType > b )
+	{
+		final Cursor< UnsignedByteType > ca = a.cursor();
+		final Cursor< UnsignedByteType > cb = b.cursor();
+		while ( ca.hasNext() )
+			if ( ca.next().get() != cb.next().get() )
+				return false;
+		return true;
+	}
+
+	private static void assertImgEquals( final Img< UnsignedByteType > expected, final Img< UnsignedByteType > actual )
+	{
+		final Cursor< UnsignedByteType > ce = expected.localizingCursor();
+		final Cursor< UnsignedByteType > ca = actual.cursor();
+		while ( ce.hasNext() )
+		{
+			final int e = ce.next().get();
+			assertEquals( "Mismatch at " + Util.printCoordinates( ce ), e, ca.next().get() );
+		}
+	}
+}
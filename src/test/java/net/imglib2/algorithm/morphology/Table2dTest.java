@@ -34,13 +34,18 @@
 package net.imglib2.algorithm.morphology;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Random;
+
+import net.imglib2.Cursor;
 import net.imglib2.algorithm.morphology.table2d.Branchpoints;
 import net.imglib2.algorithm.morphology.table2d.Bridge;
 import net.imglib2.algorithm.morphology.table2d.Clean;
 import net.imglib2.algorithm.morphology.table2d.Endpoints;
 import net.imglib2.algorithm.morphology.table2d.Fill;
 import net.imglib2.algorithm.morphology.table2d.Hbreak;
+import net.imglib2.algorithm.morphology.table2d.IterateToConvergence;
 import net.imglib2.algorithm.morphology.table2d.Life;
 import net.imglib2.algorithm.morphology.table2d.Majority;
 import net.imglib2.algorithm.morphology.table2d.Remove;
@@ -502,6 +507,35 @@ public class Table2dTest
 		assertImgEquals( expected, out );
 	}
 
+	@Test
+	public void testIterateToConvergence()
+	{
+		final Random random = new Random( 42 );
+		final boolean[] data = new boolean[ 64 * 48 ];
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = random.nextInt( 4 ) != 0;
+
+		Img< BitType > expected = initImg( data, 64, 48 );
+		int expectedIterations = 0;
+		while ( true )
+		{
+			final Img< BitType > next = Thin.thin( expected );
+			if ( imgEquals( expected, next ) )
+				break;
+			expected = next;
+			++expectedIterations;
+		}
+
+		final Img< BitType > img = initImg( data, 64, 48 );
+		final int iterations = IterateToConvergence.thin( img, -1 );
+		assertEquals( expectedIterations, iterations );
+		assertTrue( imgEquals( expected, img ) );
+
+		final Img< BitType > once = initImg( data, 64, 48 );
+		assertEquals( 1, IterateToConvergence.thin( once, 1 ) );
+		assertTrue( imgEquals( Thin.thin( initImg( data, 64, 48 ) ), once ) );
+	}
+
 	private Img< BitType > initImg( final boolean[] data, final long... dim )
 	{
 		final Img< BitType > img = ArrayImgs.bits( dim );
@@ -517,4 +551,14 @@ public class Table2dTest
 		for ( final BitType px : img )
 			assertEquals( px.get(), expected[ i++ ] );
 	}
+
+	private boolean imgEquals( final Img< BitType > expected, final Img< BitType > img )
+	{
+		final Cursor< BitType > c1 = expected.cursor();
+		final Cursor< BitType > c2 = img.cursor();
+		while ( c1.hasNext() )
+			if ( c1.next().get() != c2.next().get() )
+				return false;
+		return true;
+	}
 }
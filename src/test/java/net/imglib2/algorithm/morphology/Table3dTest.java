@@ -0,0 +1,175 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.algorithm.morphology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.algorithm.morphology.table3d.Branchpoints;
+import net.imglib2.algorithm.morphology.table3d.Endpoints;
+import net.imglib2.algorithm.morphology.table3d.Thin;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.logic.BitType;
+
+import org.junit.Test;
+
+/**
+ * Tests 3d morphology operations on 3x3x3 neighborhoods.
+ */
+public class Table3dTest
+{
+	@Test
+	public void testSkeletonizeRod()
+	{
+		final Img< BitType > img = ArrayImgs.bits( 20, 7, 7 );
+		final RandomAccess< BitType > access = img.randomAccess();
+		for ( int z = 1; z < 6; ++z )
+			for ( int y = 1; y < 6; ++y )
+				for ( int x = 2; x < 18; ++x )
+				{
+					access.setPosition( new int[] { x, y, z } );
+					access.get().set( true );
+				}
+
+		assertTrue( Thin.skeletonize( img ) > 0 );
+
+		final Cursor< BitType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			final boolean value = cursor.next().get();
+			final boolean expected = cursor.getIntPosition( 1 ) == 3 && cursor.getIntPosition( 2 ) == 3 &&
+					cursor.getIntPosition( 0 ) >= 4 && cursor.getIntPosition( 0 ) <= 15;
+			assertEquals( expected, value );
+		}
+
+		assertEquals( 2, count( Endpoints.endpoints( img ) ) );
+		assertEquals( 0, count( Branchpoints.branchpoints( img ) ) );
+	}
+
+	@Test
+	public void testBranchpoints()
+	{
+		// three arms meeting at (2,2,2)
+		final Img< BitType > img = ArrayImgs.bits( 5, 5, 5 );
+		final RandomAccess< BitType > access = img.randomAccess();
+		for ( int i = 0; i < 3; ++i )
+		{
+			access.setPosition( new int[] { i, 2, 2 } );
+			access.get().set( true );
+			access.setPosition( new int[] { 2, 2 + i, 2 } );
+			access.get().set( true );
+			access.setPosition( new int[] { 2, 2, 2 + i } );
+			access.get().set( true );
+		}
+
+		final Img< BitType > branchpoints = Branchpoints.branchpoints( img );
+		final RandomAccess< BitType > branchAccess = branchpoints.randomAccess();
+		branchAccess.setPosition( new int[] { 2, 2, 2 } );
+		assertTrue( branchAccess.get().get() );
+
+		assertEquals( 3, count( Endpoints.endpoints( img ) ) );
+	}
+
+	@Test
+	public void testBranchpointsYJunction()
+	{
+		// three diagonal and straight arms meeting at (5,5,5)
+		final Img< BitType > img = ArrayImgs.bits( 11, 11, 11 );
+		set( img, 5, 5, 5 );
+		for ( int i = 1; i < 4; ++i )
+		{
+			set( img, 5 + i, 5, 5 );
+			set( img, 5 - i, 5 - i, 5 );
+			set( img, 5 - i, 5 + i, 5 );
+		}
+		final Img< BitType > branchpoints = Branchpoints.branchpoints( img );
+		assertEquals( 1, count( branchpoints ) );
+		final RandomAccess< BitType > branchAccess = branchpoints.randomAccess();
+		branchAccess.setPosition( new int[] { 5, 5, 5 } );
+		assertTrue( branchAccess.get().get() );
+	}
+
+	@Test
+	public void testNoBranchpoints()
+	{
+		// straight line
+		final Img< BitType > line = ArrayImgs.bits( 11, 11, 11 );
+		for ( int x = 1; x < 10; ++x )
+			set( line, x, 5, 5 );
+		assertEquals( 0, count( Branchpoints.branchpoints( line ) ) );
+
+		// 6-connected staircase
+		final Img< BitType > staircase = ArrayImgs.bits( 15, 15, 11 );
+		for ( int i = 1; i < 7; ++i )
+		{
+			set( staircase, i, i, 5 );
+			set( staircase, i + 1, i, 5 );
+		}
+		assertEquals( 0, count( Branchpoints.branchpoints( staircase ) ) );
+
+		// 26-connected diagonal
+		final Img< BitType > diagonal = ArrayImgs.bits( 11, 11, 11 );
+		for ( int i = 1; i < 10; ++i )
+			set( diagonal, i, i, i );
+		assertEquals( 0, count( Branchpoints.branchpoints( diagonal ) ) );
+
+		// two voxel thick segment
+		final Img< BitType > thick = ArrayImgs.bits( 11, 11, 11 );
+		for ( int x = 1; x < 10; ++x )
+		{
+			set( thick, x, 4, 5 );
+			set( thick, x, 5, 5 );
+		}
+		assertEquals( 0, count( Branchpoints.branchpoints( thick ) ) );
+	}
+
+	private static void set( final Img< BitType > img, final int... position )
+	{
+		final RandomAccess< BitType > access = img.randomAccess();
+		access.setPosition( position );
+		access.get().set( true );
+	}
+
+	private static int count( final Img< BitType > img )
+	{
+		int count = 0;
+		for ( final BitType t : img )
+			if ( t.get() )
+				++count;
+		return count;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.morphology.distance;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.morphology.distance.DistanceTransform.DISTANCE_TYPE;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+public class BlockwiseDistanceTransformTest
+{
+
+	private final long[] dimensions = { 23, 17, 9 };
+
+	private final int[] blockSize = { 5, 4, 3 };
+
+	private final double[] weights = { 1.0, 2.0, 4.0 };
+
+	private final ExecutorService es = Executors.newFixedThreadPool( 3 );
+
+	@After
+	public void shutdown()
+	{
+		es.shutdown();
+	}
+
+	@Test
+	public void testBlockwise() throws InterruptedException, ExecutionException
+	{
+		final ArrayImg< BitType, LongArray > mask = createMask();
+		for ( final DISTANCE_TYPE distanceType : DISTANCE_TYPE.values() )
+		{
+			final ArrayImg< DoubleType, DoubleArray > reference = ArrayImgs.doubles( dimensions );
+			DistanceTransform.binaryTransform( mask, reference, distanceType, weights );
+
+			final ArrayImg< DoubleType, DoubleArray > target = ArrayImgs.doubles( dimensions );
+			BlockwiseDistanceTransform.binaryTransform( mask, target, distanceType, blockSize, es, 4, weights );
+			assertEquals( reference, target );
+
+			final RandomAccessibleInterval< DoubleType > cached = BlockwiseDistanceTransform.binaryTransform( mask, new FinalInterval( mask ), distanceType, blockSize, es, 4, weights );
+			assertEquals( reference, cached );
+		}
+	}
+
+	@Test
+	public void testLazy()
+	{
+		final ArrayImg< BitType, LongArray > mask = createMask();
+		final double maxDistance = 10.0;
+		final ArrayImg< DoubleType, DoubleArray > reference = ArrayImgs.doubles( dimensions );
+		DistanceTransform.binaryTransform( mask, reference, DISTANCE_TYPE.EUCLIDIAN, weights );
+
+		final RandomAccessibleInterval< DoubleType > lazy = BlockwiseDistanceTransform.lazyBinaryTransform( mask, mask, DISTANCE_TYPE.EUCLIDIAN, blockSize, maxDistance, weights );
+		final Cursor< DoubleType > r = reference.localizingCursor();
+		final RandomAccess< DoubleType > l = lazy.randomAccess();
+		boolean hasInexact = false;
+		while ( r.hasNext() )
+		{
+			final double expected = r.next().get();
+			l.setPosition( r );
+			final double actual = l.get().get();
+			if ( expected <= maxDistance )
+			{
+				Assert.assertEquals( expected, actual, 0.0 );
+			}
+			else
+			{
+				Assert.assertTrue( actual >= expected );
+				hasInexact |= actual > expected;
+			}
+		}
+		// make sure that the halo does not cover the whole image
+		Assert.assertTrue( hasInexact );
+	}
+
+	private ArrayImg< BitType, LongArray > createMask()
+	{
+		final Random rng = new Random( 100 );
+		final ArrayImg< BitType, LongArray > mask = ArrayImgs.bits( dimensions );
+		for ( final BitType b : mask )
+		{
+			b.set( rng.nextDouble() < 0.002 );
+		}
+		final RandomAccess< BitType > access = mask.randomAccess();
+		access.setPosition( new long[] { 11, 8, 4 } );
+		access.get().set( true );
+		return mask;
+	}
+
+	private static void assertEquals( final RandomAccessibleInterval< DoubleType > expected, final RandomAccessibleInterval< DoubleType > actual )
+	{
+		final Cursor< DoubleType > e = Views.flatIterable( expected ).cursor();
+		final Cursor< DoubleType > a = Views.flatIterable( actual ).cursor();
+		while ( e.hasNext() )
+		{
+			Assert.assertEquals( e.next().get(), a.next().get(), 0.0 );
+		}
+	}
+
+}
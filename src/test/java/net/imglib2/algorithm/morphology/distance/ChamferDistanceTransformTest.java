@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.morphology.distance;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.morphology.distance.ChamferDistanceTransform.Mask;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+
+public class ChamferDistanceTransformTest
+{
+
+	private final Random rng = new Random( 100 );
+
+	@Test
+	public void testCityBlock()
+	{
+		final ToLongFunction< long[] > distance = diff -> Arrays.stream( diff ).map( Math::abs ).sum();
+		test( Mask.CITY_BLOCK, distance, 31 );
+		test( Mask.CITY_BLOCK, distance, 13, 11, 7 );
+		test( Mask.CITY_BLOCK, distance, 6, 5, 4, 3 );
+	}
+
+	@Test
+	public void testChessboard()
+	{
+		final ToLongFunction< long[] > distance = diff -> Arrays.stream( diff ).map( Math::abs ).max().getAsLong();
+		test( Mask.CHESSBOARD, distance, 31 );
+		test( Mask.CHESSBOARD, distance, 13, 11, 7 );
+		test( Mask.CHESSBOARD, distance, 6, 5, 4, 3 );
+	}
+
+	@Test
+	public void testChamfer345()
+	{
+		final ToLongFunction< long[] > distance = diff -> {
+			final long[] sorted = Arrays.stream( diff ).map( Math::abs ).sorted().toArray();
+			final long c = sorted.length > 2 ? sorted[ sorted.length - 3 ] : 0;
+			final long b = sorted.length > 1 ? sorted[ sorted.length - 2 ] : 0;
+			final long a = sorted[ sorted.length - 1 ];
+			return 5 * c + 4 * ( b - c ) + 3 * ( a - b );
+		};
+		test( Mask.CHAMFER_3_4_5, distance, 23, 17 );
+		test( Mask.CHAMFER_3_4_5, distance, 13, 11, 7 );
+	}
+
+	@Test
+	public void testChamfer5711()
+	{
+		final ToLongFunction< long[] > distance = diff -> {
+			final long a = Math.max( Math.abs( diff[ 0 ] ), Math.abs( diff[ 1 ] ) );
+			final long b = Math.min( Math.abs( diff[ 0 ] ), Math.abs( diff[ 1 ] ) );
+			return a >= 2 * b ? 11 * b + 5 * ( a - 2 * b ) : 11 * ( a - b ) + 7 * ( 2 * b - a );
+		};
+		test( Mask.CHAMFER_5_7_11, distance, 23, 17 );
+		test( Mask.CHAMFER_5_7_11, distance, 3, 17 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testChamfer5711Dimensions()
+	{
+		ChamferDistanceTransform.binaryTransform( ArrayImgs.bits( 3, 3, 3 ), ArrayImgs.unsignedShorts( 3, 3, 3 ), Mask.CHAMFER_5_7_11 );
+	}
+
+	@Test
+	public void testSaturation()
+	{
+		final ArrayImg< BitType, LongArray > mask = ArrayImgs.bits( 5, 4 );
+		final ArrayImg< UnsignedShortType, ? > target = ArrayImgs.unsignedShorts( 5, 4 );
+		ChamferDistanceTransform.binaryTransform( mask, target, Mask.CHAMFER_3_4_5 );
+		for ( final UnsignedShortType t : target )
+		{
+			Assert.assertEquals( 65535, t.get() );
+		}
+	}
+
+	private void test( final Mask m, final ToLongFunction< long[] > distance, final long... dimensions )
+	{
+		final ArrayImg< BitType, LongArray > mask = ArrayImgs.bits( dimensions );
+		for ( final BitType b : mask )
+		{
+			b.set( rng.nextDouble() < 0.01 );
+		}
+		mask.firstElement().set( true );
+
+		final RandomAccessibleInterval< UnsignedShortType > unsignedShorts = ArrayImgs.unsignedShorts( dimensions );
+		ChamferDistanceTransform.binaryTransform( mask, unsignedShorts, m );
+		check( mask, unsignedShorts, distance );
+
+		final long[] offset = new long[ dimensions.length ];
+		Arrays.fill( offset, 3 );
+		final RandomAccessibleInterval< IntType > ints = Views.translate( ArrayImgs.ints( dimensions ), offset );
+		ChamferDistanceTransform.binaryTransform( Views.translate( mask, offset ), ints, m );
+		check( mask, ints, distance );
+	}
+
+	private static void check( final ArrayImg< BitType, LongArray > mask, final RandomAccessibleInterval< ? extends IntegerType< ? > > result, final ToLongFunction< long[] > distance )
+	{
+		final int nDim = mask.numDimensions();
+		final long[] p = new long[ nDim ];
+		final long[] q = new long[ nDim ];
+		final long[] diff = new long[ nDim ];
+		final Cursor< ? extends IntegerType< ? > > r = Views.flatIterable( result ).localizingCursor();
+		while ( r.hasNext() )
+		{
+			r.fwd();
+			r.localize( p );
+			long expected = Long.MAX_VALUE;
+			for ( final Cursor< BitType > c = mask.localizingCursor(); c.hasNext(); )
+			{
+				if ( c.next().get() )
+				{
+					c.localize( q );
+					for ( int d = 0; d < nDim; ++d )
+					{
+						diff[ d ] = p[ d ] - q[ d ] - result.min( d );
+					}
+					expected = Math.min( expected, distance.applyAsLong( diff ) );
+				}
+			}
+			Assert.assertEquals( expected, r.get().getIntegerLong() );
+		}
+	}
+
+}
@@ -52,14 +52,19 @@ import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.morphology.distance.DistanceTransform.DISTANCE_TYPE;
+import net.imglib2.converter.Converters;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
 import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
 import net.imglib2.view.Views;
@@ -123,6 +128,131 @@ public class DistanceTransformTest
 		testBinary( DISTANCE_TYPE.L1, DistanceTransformTest::calcL1Dist );
 	}
 
+	@Test
+	public void testBinaryFeatures() throws InterruptedException, ExecutionException
+	{
+		for ( int numDimensions = minNumDimensions; numDimensions <= maxNumDimensions; ++numDimensions )
+		{
+			final long[] dim = LongStream.generate( () -> dimensionSize ).limit( numDimensions ).toArray();
+			final long[] offset = LongStream.range( 0, numDimensions ).map( d -> 3 - 2 * d ).toArray();
+			final double[] weights = IntStream.range( 1, numDimensions + 1 ).asDoubleStream().toArray();
+
+			final RandomAccessibleInterval< BitType > mask = Views.translate( ArrayImgs.bits( dim ), offset );
+			for ( final BitType b : Views.iterable( mask ) )
+			{
+				b.set( rng.nextDouble() < 0.1 );
+			}
+			// guarantee at least one foreground pixel
+			getAt( mask, new Point( offset ) ).set( true );
+
+			final RandomAccessibleInterval< DoubleType > dist = Views.translate( ArrayImgs.doubles( dim ), offset );
+			final RandomAccessibleInterval< LongType > features = Views.translate( ArrayImgs.longs( dim ), offset );
+			final RandomAccessibleInterval< DoubleType > distParallel = Views.translate( ArrayImgs.doubles( dim ), offset );
+			final RandomAccessibleInterval< LongType > featuresParallel = Views.translate( ArrayImgs.longs( dim ), offset );
+
+			final EuclidianDistanceAnisotropic d = new EuclidianDistanceAnisotropic( weights );
+			DistanceTransform.binaryTransform( mask, dist, features, d );
+			DistanceTransform.binaryTransform( mask, distParallel, featuresParallel, d, es, 3 * nThreads );
+
+			compareRAIofRealType( dist, distParallel, 0.0 );
+			compareRAIofRealType( features, featuresParallel, 0.0 );
+
+			final long[] min = Intervals.minAsLongArray( mask );
+			final long[] featurePosition = new long[ numDimensions ];
+			final RandomAccess< BitType > maskAccess = mask.randomAccess();
+			final Cursor< DoubleType > distCursor = Views.flatIterable( dist ).localizingCursor();
+			final Cursor< LongType > featureCursor = Views.flatIterable( features ).cursor();
+			while ( distCursor.hasNext() )
+			{
+				distCursor.fwd();
+				featureCursor.fwd();
+
+				double minDist = Double.POSITIVE_INFINITY;
+				for ( final Cursor< BitType > c = Views.iterable( mask ).localizingCursor(); c.hasNext(); )
+				{
+					if ( c.next().get() )
+					{
+						minDist = Math.min( minDist, calcSquaredEuclidianDist( c, distCursor, weights ) );
+					}
+				}
+				Assert.assertEquals( minDist, distCursor.get().get(), 1e-10 );
+
+				IntervalIndexer.indexToPositionWithOffset( featureCursor.get().get(), dim, min, featurePosition );
+				final Point feature = new Point( featurePosition );
+				maskAccess.setPosition( feature );
+				Assert.assertTrue( maskAccess.get().get() );
+				Assert.assertEquals( minDist, calcSquaredEuclidianDist( feature, distCursor, weights ), 1e-10 );
+			}
+		}
+	}
+
+	@Test
+	public void testSignedBinary() throws InterruptedException, ExecutionException
+	{
+		for ( int numDimensions = minNumDimensions; numDimensions <= maxNumDimensions; ++numDimensions )
+		{
+			final long[] dim = LongStream.generate( () -> dimensionSize ).limit( numDimensions ).toArray();
+			final double[] weights = IntStream.range( 1, numDimensions + 1 ).asDoubleStream().toArray();
+
+			final ArrayImg< BitType, LongArray > mask = ArrayImgs.bits( dim );
+			for ( final BitType b : mask )
+			{
+				b.set( rng.nextDouble() < 0.3 );
+			}
+			final RandomAccessibleInterval< BitType > inverted = Converters.convert( ( RandomAccessibleInterval< BitType > ) mask, ( s, t ) -> t.set( !s.get() ), new BitType() );
+
+			for ( final DISTANCE_TYPE dt : DISTANCE_TYPE.values() )
+			{
+				final ArrayImg< DoubleType, DoubleArray > outside = ArrayImgs.doubles( dim );
+				final ArrayImg< DoubleType, DoubleArray > inside = ArrayImgs.doubles( dim );
+				DistanceTransform.binaryTransform( mask, outside, dt, weights );
+				DistanceTransform.binaryTransform( inverted, inside, dt, weights );
+				final ArrayImg< DoubleType, DoubleArray > reference = ArrayImgs.doubles( dim );
+				for ( Cursor< DoubleType > r = reference.cursor(), o = outside.cursor(), i = inside.cursor(); r.hasNext(); )
+				{
+					r.next().set( o.next().get() - i.next().get() );
+				}
+
+				final ArrayImg< DoubleType, DoubleArray > signed = ArrayImgs.doubles( dim );
+				DistanceTransform.signedBinaryTransform( mask, signed, dt, weights );
+				compareRAIofRealType( reference, signed, 1e-10 );
+
+				final ArrayImg< DoubleType, DoubleArray > signedParallel = ArrayImgs.doubles( dim );
+				DistanceTransform.signedBinaryTransform( mask, signedParallel, dt, es, 3 * nThreads, weights );
+				compareRAIofRealType( reference, signedParallel, 1e-10 );
+			}
+		}
+	}
+
+	@Test
+	public void testBinarySinglePrecision()
+	{
+		final long[] dim = { 97, 53, 7 };
+		final double[] weights = { 1.0, 4.0, 9.0 };
+		final ArrayImg< BitType, LongArray > mask = ArrayImgs.bits( dim );
+		for ( final BitType b : mask )
+		{
+			b.set( rng.nextDouble() < 0.001 );
+		}
+		mask.randomAccess().get().set( true );
+
+		for ( final DISTANCE_TYPE dt : DISTANCE_TYPE.values() )
+		{
+			final ArrayImg< DoubleType, DoubleArray > reference = ArrayImgs.doubles( dim );
+			DistanceTransform.binaryTransform( mask, reference, dt, weights );
+
+			// all distances are integers below 2^24 and therefore exact
+			final ArrayImg< FloatType, FloatArray > singlePrecision = ArrayImgs.floats( dim );
+			DistanceTransform.binaryTransform( mask, singlePrecision, dt, weights );
+			compareRAIofRealType( reference, singlePrecision, 0.0 );
+
+			final ArrayImg< FloatType, FloatArray > tmp = ArrayImgs.floats( dim );
+			final ArrayImg< DoubleType, DoubleArray > target = ArrayImgs.doubles( dim );
+			DistanceTransform.binaryTransform( mask, tmp, target, dt, weights );
+			compareRAIofRealType( reference, target, 0.0 );
+		}
+	}
+
 	private void testBinary( final DISTANCE_TYPE dt, final DistanceCalculator distanceCalculator )
 	{
 		for ( int numDimensions = minNumDimensions; numDimensions <= maxNumDimensions; ++numDimensions )
@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.morphology.distance;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+public class LabelDistanceTransformTest
+{
+
+	private final Random rng = new Random( 100 );
+
+	private final double[] weights = { 1.0, 4.0, 2.25 };
+
+	private final long[] dimensions = { 17, 11, 7 };
+
+	@Test
+	public void testVoronoi() throws InterruptedException, ExecutionException
+	{
+		final ArrayImg< IntType, IntArray > labels = createLabels();
+		final ArrayImg< IntType, IntArray > target = ArrayImgs.ints( dimensions );
+		final ArrayImg< DoubleType, DoubleArray > distance = ArrayImgs.doubles( dimensions );
+		LabelDistanceTransform.voronoi( labels, target, distance, 0, weights );
+		check( labels, target, distance, Double.POSITIVE_INFINITY );
+
+		final ExecutorService es = Executors.newFixedThreadPool( 3 );
+		final ArrayImg< IntType, IntArray > targetParallel = ArrayImgs.ints( dimensions );
+		final ArrayImg< DoubleType, DoubleArray > distanceParallel = ArrayImgs.doubles( dimensions );
+		LabelDistanceTransform.voronoi( labels, targetParallel, distanceParallel, 0, es, 5, weights );
+		es.shutdown();
+		assertEquals( target, targetParallel );
+	}
+
+	@Test
+	public void testExpandLabels() throws InterruptedException, ExecutionException
+	{
+		final double maxDistance = 3.5;
+		final ArrayImg< IntType, IntArray > labels = createLabels();
+		final ArrayImg< IntType, IntArray > target = ArrayImgs.ints( dimensions );
+		LabelDistanceTransform.expandLabels( labels, target, 0, maxDistance, weights );
+		check( labels, target, null, maxDistance * maxDistance );
+
+		final ExecutorService es = Executors.newFixedThreadPool( 3 );
+		final ArrayImg< IntType, IntArray > inPlace = createLabels();
+		LabelDistanceTransform.expandLabels( inPlace, inPlace, 0, maxDistance, es, 5, weights );
+		es.shutdown();
+		assertEquals( target, inPlace );
+	}
+
+	@Test
+	public void testWeights()
+	{
+		final ArrayImg< IntType, IntArray > labels = createLabels();
+		final ArrayImg< IntType, IntArray > target = ArrayImgs.ints( dimensions );
+		final ArrayImg< DoubleType, DoubleArray > distance = ArrayImgs.doubles( dimensions );
+		LabelDistanceTransform.voronoi( labels, target, distance, 0, 1.0 );
+		final ArrayImg< IntType, IntArray > targetDefault = ArrayImgs.ints( dimensions );
+		final ArrayImg< DoubleType, DoubleArray > distanceDefault = ArrayImgs.doubles( dimensions );
+		LabelDistanceTransform.voronoi( labels, targetDefault, distanceDefault, 0 );
+		assertEquals( target, targetDefault );
+		final Cursor< DoubleType > d = distance.cursor();
+		final Cursor< DoubleType > dd = distanceDefault.cursor();
+		while ( d.hasNext() )
+			Assert.assertEquals( d.next().get(), dd.next().get(), 0.0 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testWrongNumberOfWeights()
+	{
+		final ArrayImg< IntType, IntArray > labels = createLabels();
+		LabelDistanceTransform.expandLabels( labels, labels, 0, 2.0, 1.0, 2.0 );
+	}
+
+	private ArrayImg< IntType, IntArray > createLabels()
+	{
+		rng.setSeed( 100 );
+		final ArrayImg< IntType, IntArray > labels = ArrayImgs.ints( dimensions );
+		for ( final IntType l : labels )
+		{
+			l.set( rng.nextDouble() < 0.02 ? 1 + rng.nextInt( 5 ) : 0 );
+		}
+		return labels;
+	}
+
+	private void check(
+			final ArrayImg< IntType, IntArray > labels,
+			final ArrayImg< IntType, IntArray > target,
+			final ArrayImg< DoubleType, DoubleArray > distance,
+			final double maxSquaredDistance )
+	{
+		final Cursor< IntType > t = target.localizingCursor();
+		final RandomAccess< DoubleType > d = distance == null ? null : distance.randomAccess();
+		while ( t.hasNext() )
+		{
+			t.fwd();
+			double minDistance = Double.POSITIVE_INFINITY;
+			for ( final Cursor< IntType > l = labels.localizingCursor(); l.hasNext(); )
+			{
+				if ( l.next().get() != 0 )
+				{
+					minDistance = Math.min( minDistance, squaredDistance( l, t ) );
+				}
+			}
+
+			if ( d != null )
+			{
+				d.setPosition( t );
+				Assert.assertEquals( minDistance, d.get().get(), 1e-10 );
+			}
+
+			final int label = t.get().get();
+			if ( minDistance > maxSquaredDistance )
+			{
+				Assert.assertEquals( 0, label );
+				continue;
+			}
+
+			// ties may be resolved either way, so check that the assigned label
+			// is one of the closest labels
+			boolean found = false;
+			for ( final Cursor< IntType > l = labels.localizingCursor(); l.hasNext(); )
+			{
+				if ( l.next().get() == label && squaredDistance( l, t ) == minDistance )
+				{
+					found = true;
+				}
+			}
+			Assert.assertTrue( found );
+		}
+	}
+
+	private double squaredDistance( final Localizable l1, final Localizable l2 )
+	{
+		double sum = 0;
+		for ( int d = 0; d < weights.length; ++d )
+		{
+			final long diff = l1.getLongPosition( d ) - l2.getLongPosition( d );
+			sum += weights[ d ] * diff * diff;
+		}
+		return sum;
+	}
+
+	private static void assertEquals( final ArrayImg< IntType, IntArray > expected, final ArrayImg< IntType, IntArray > actual )
+	{
+		final Cursor< IntType > e = expected.cursor();
+		final Cursor< IntType > a = actual.cursor();
+		while ( e.hasNext() )
+		{
+			Assert.assertEquals( e.next().get(), a.next().get() );
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.algorithm.morphology.distance;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.type.numeric.real.DoubleType;
+
+public class ParabolicMorphologyTest
+{
+
+	private final Random rng = new Random( 100 );
+
+	private final double[] weights = { 0.5, 2.0 };
+
+	@Test
+	public void testDilate() throws InterruptedException, ExecutionException
+	{
+		final ArrayImg< DoubleType, DoubleArray > source = createRandomImage();
+		final ArrayImg< DoubleType, DoubleArray > target = ArrayImgs.doubles( 13, 9 );
+		ParabolicMorphology.dilate( source, target, weights );
+		compare( bruteForce( source, true ), target );
+
+		final ExecutorService es = Executors.newFixedThreadPool( 3 );
+		final ArrayImg< DoubleType, DoubleArray > targetParallel = ArrayImgs.doubles( 13, 9 );
+		ParabolicMorphology.dilate( source, targetParallel, es, 3, weights );
+		es.shutdown();
+		compare( target, targetParallel );
+	}
+
+	@Test
+	public void testErode()
+	{
+		final ArrayImg< DoubleType, DoubleArray > source = createRandomImage();
+		final ArrayImg< DoubleType, DoubleArray > reference = bruteForce( source, false );
+		ParabolicMorphology.erodeInPlace( source, weights );
+		compare( reference, source );
+	}
+
+	private ArrayImg< DoubleType, DoubleArray > createRandomImage()
+	{
+		final ArrayImg< DoubleType, DoubleArray > img = ArrayImgs.doubles( 13, 9 );
+		for ( final DoubleType t : img )
+			t.set( 100 * rng.nextDouble() );
+		return img;
+	}
+
+	private ArrayImg< DoubleType, DoubleArray > bruteForce( final ArrayImg< DoubleType, DoubleArray > source, final boolean dilate )
+	{
+		final ArrayImg< DoubleType, DoubleArray > result = ArrayImgs.doubles( 13, 9 );
+		final Cursor< DoubleType > r = result.localizingCursor();
+		final RandomAccess< DoubleType > s = source.randomAccess();
+		while ( r.hasNext() )
+		{
+			r.fwd();
+			double best = dilate ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			for ( long y = 0; y < source.dimension( 1 ); ++y )
+				for ( long x = 0; x < source.dimension( 0 ); ++x )
+				{
+					s.setPosition( new long[] { x, y } );
+					final double dx = x - r.getLongPosition( 0 );
+					final double dy = y - r.getLongPosition( 1 );
+					final double k = weights[ 0 ] * dx * dx + weights[ 1 ] * dy * dy;
+					final double v = s.get().get();
+					best = dilate ? Math.max( best, v - k ) : Math.min( best, v + k );
+				}
+			r.get().set( best );
+		}
+		return result;
+	}
+
+	private static void compare( final ArrayImg< DoubleType, DoubleArray > expected, final ArrayImg< DoubleType, DoubleArray > actual )
+	{
+		final Cursor< DoubleType > e = expected.cursor();
+		final Cursor< DoubleType > a = actual.cursor();
+		while ( e.hasNext() )
+			Assert.assertEquals( e.next().get(), a.next().get(), 1e-9 );
+	}
+
+}
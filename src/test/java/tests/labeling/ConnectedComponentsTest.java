@@ -34,23 +34,33 @@
 
 package tests.labeling;
 
+import static net.imglib2.algorithm.labeling.ConnectedComponents.StructuringElement.EIGHTEEN_CONNECTED;
 import static net.imglib2.algorithm.labeling.ConnectedComponents.StructuringElement.EIGHT_CONNECTED;
 import static net.imglib2.algorithm.labeling.ConnectedComponents.StructuringElement.FOUR_CONNECTED;
+import static net.imglib2.algorithm.labeling.ConnectedComponents.StructuringElement.SIX_CONNECTED;
+import static net.imglib2.algorithm.labeling.ConnectedComponents.StructuringElement.TWENTY_SIX_CONNECTED;
 import static org.junit.Assert.assertEquals;
 
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Random;
 
 import net.imglib2.Cursor;
 import net.imglib2.algorithm.labeling.ConnectedComponents;
 import net.imglib2.algorithm.labeling.ConnectedComponents.StructuringElement;
 import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.roi.labeling.ImgLabeling;
 import net.imglib2.roi.labeling.LabelingType;
 import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
 import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.IntervalIndexer;
 
 import org.junit.Test;
 
@@ -228,4 +238,81 @@ public class ConnectedComponentsTest
 		final int[][] expected8 = new int[][] { { 0, 0, 0, 0, 0 }, { 0, 1, 1, 1, 0 }, { 1, 0, 0, 0, 0 }, { 0, 1, 1, 1, 0 }, { 0, 0, 0, 0, 1 } };
 		test2D( input, expected8, EIGHT_CONNECTED, 1, 0 );
 	}
+
+	/**
+	 * Label a random 3D mask with face, edge, and vertex connectivity and
+	 * compare against a brute force union-find over all neighbors that differ
+	 * in at most {@code maxNonZero} coordinates.
+	 */
+	private void test3D( final StructuringElement se, final int maxNonZero )
+	{
+		final long[] dims = { 17, 13, 23 };
+		final ArrayImg< UnsignedLongType, LongArray > mask = ArrayImgs.unsignedLongs( dims );
+		final Random rng = new Random( 100 );
+		for ( final UnsignedLongType m : mask )
+			m.set( rng.nextDouble() < 0.3 ? 1 : 0 );
+		final ArrayImg< UnsignedIntType, IntArray > labels = ArrayImgs.unsignedInts( dims );
+		ConnectedComponents.labelAllConnectedComponents( mask, labels, se );
+
+		final int size = ( int ) labels.size();
+		final long[] m = mask.update( null ).getCurrentStorageArray();
+		final int[] parents = new int[ size ];
+		for ( int i = 0; i < size; ++i )
+			parents[ i ] = i;
+		final long[] pos = new long[ 3 ];
+		final long[] neighbor = new long[ 3 ];
+		for ( int i = 0; i < size; ++i )
+		{
+			if ( m[ i ] == 0 )
+				continue;
+			IntervalIndexer.indexToPosition( i, dims, pos );
+			for ( int o = 0; o < 27; ++o )
+			{
+				int nonZero = 0;
+				boolean inside = true;
+				for ( int d = 0, r = o; d < 3; ++d, r /= 3 )
+				{
+					neighbor[ d ] = pos[ d ] + r % 3 - 1;
+					nonZero += r % 3 == 1 ? 0 : 1;
+					inside &= neighbor[ d ] >= 0 && neighbor[ d ] < dims[ d ];
+				}
+				if ( !inside || nonZero == 0 || nonZero > maxNonZero )
+					continue;
+				final int j = ( int ) IntervalIndexer.positionToIndex( neighbor, dims );
+				if ( m[ j ] != 0 )
+					parents[ find( parents, i ) ] = find( parents, j );
+			}
+		}
+
+		final int[] l = labels.update( null ).getCurrentStorageArray();
+		final HashMap< Integer, Integer > labelToRoot = new HashMap<>();
+		final HashMap< Integer, Integer > rootToLabel = new HashMap<>();
+		for ( int i = 0; i < size; ++i )
+		{
+			if ( m[ i ] == 0 )
+			{
+				assertEquals( 0, l[ i ] );
+				continue;
+			}
+			final int root = find( parents, i );
+			final int label = l[ i ];
+			assertEquals( root, labelToRoot.computeIfAbsent( label, k -> root ).intValue() );
+			assertEquals( label, rootToLabel.computeIfAbsent( root, k -> label ).intValue() );
+		}
+	}
+
+	private static int find( final int[] parents, int i )
+	{
+		while ( parents[ i ] != i )
+			i = parents[ i ] = parents[ parents[ i ] ];
+		return i;
+	}
+
+	@Test
+	public void test3DConnectivity()
+	{
+		test3D( SIX_CONNECTED, 1 );
+		test3D( EIGHTEEN_CONNECTED, 2 );
+		test3D( TWENTY_SIX_CONNECTED, 3 );
+	}
 }